@@ -2,9 +2,11 @@ package com.zg.ai;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan(basePackages = "com.zg.ai.config.properties")
 @EnableR2dbcRepositories(basePackages = "com.zg.ai.repository")
 public class ChatLibraryApplication {
 
@@ -0,0 +1,269 @@
+package com.zg.ai.cache;
+
+import com.zg.ai.config.properties.EmbeddingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * 持久化向量缓存：以 SHA-256(模型名 + 文本) 的前 16 字节为键，向量存放在内存映射文件中，不占堆内存，重启后保留；
+ * 文件为定长槽位的组相联表，每个键只落在一组 ways 个槽位中，组满时按轮换位置替换；
+ * 文件头记录向量维度，首次写入时按向量长度创建文件，维度不一致的向量不缓存
+ */
+@Slf4j
+@Component
+public class EmbeddingCache {
+
+    private static final int MAGIC = 0x454d4243;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int KEY_BYTES = 16;
+    private static final long MAX_FILE_BYTES = Integer.MAX_VALUE;
+    private static final int LOCK_STRIPES = 64;
+
+    private final EmbeddingProperties.Cache config;
+    private final Path path;
+    private final int sets;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter skipped;
+    // 按组分段加锁，同一组的读写互斥，避免读到写了一半的槽位
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private volatile boolean enabled;
+    private FileChannel channel;
+    private volatile MappedByteBuffer buffer;
+    private int dimensions;
+    private int slotBytes;
+    // 每组的下一个替换位置，不持久化
+    private byte[] victims;
+
+    public EmbeddingCache(EmbeddingProperties properties, MeterRegistry meterRegistry) {
+        this.config = properties.getCache();
+        this.path = Paths.get(config.getPath());
+        this.sets = Math.max(1, config.getCapacity() / config.getWays());
+        this.hits = meterRegistry.counter("embedding.cache", "result", "hit");
+        this.misses = meterRegistry.counter("embedding.cache", "result", "miss");
+        this.skipped = meterRegistry.counter("embedding.cache.skipped");
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        this.enabled = config.isEnabled();
+        if (enabled && Files.exists(path)) {
+            open();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 缓存键：模型名与文本的 SHA-256 前 16 字节
+     */
+    public static byte[] keyOf(String model, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            return Arrays.copyOf(digest.digest(), KEY_BYTES);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public float[] get(byte[] key) {
+        MappedByteBuffer mapped = buffer;
+        if (mapped == null) {
+            misses.increment();
+            return null;
+        }
+        int set = setOf(key);
+        synchronized (lockOf(set)) {
+            for (int way = 0; way < config.getWays(); way++) {
+                int offset = slotOffset(set, way);
+                if (keyEquals(mapped, offset, key)) {
+                    float[] vector = new float[dimensions];
+                    mapped.slice(offset + KEY_BYTES, dimensions * Float.BYTES).asFloatBuffer().get(vector);
+                    hits.increment();
+                    return vector;
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(byte[] key, float[] vector) {
+        MappedByteBuffer mapped = buffer;
+        if (!enabled) {
+            return;
+        }
+        if (mapped == null) {
+            mapped = create(vector.length);
+            if (mapped == null) {
+                return;
+            }
+        }
+        if (vector.length != dimensions) {
+            skipped.increment();
+            return;
+        }
+        int set = setOf(key);
+        synchronized (lockOf(set)) {
+            int target = -1;
+            boolean sameKey = false;
+            for (int way = 0; way < config.getWays() && target < 0; way++) {
+                int offset = slotOffset(set, way);
+                sameKey = keyEquals(mapped, offset, key);
+                if (sameKey || isEmpty(mapped, offset)) {
+                    target = offset;
+                }
+            }
+            if (target < 0) {
+                int way = victims[set] & 0xff;
+                victims[set] = (byte) ((way + 1) % config.getWays());
+                target = slotOffset(set, way);
+            }
+            // 先清空旧键，再写向量，最后写新键：进程在任意两步之间退出时，
+            // 槽位要么为空，要么仍是旧键对应旧向量，不会出现某个键对应另一段文本的向量
+            if (!sameKey) {
+                mapped.put(target, new byte[KEY_BYTES]);
+            }
+            mapped.slice(target + KEY_BYTES, dimensions * Float.BYTES).asFloatBuffer().put(vector);
+            mapped.put(target, key);
+        }
+    }
+
+    private synchronized void open() {
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < 16 || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("文件格式不匹配");
+            }
+            int fileDimensions = header.getInt();
+            int fileSets = header.getInt();
+            if (fileSets != sets) {
+                throw new IOException("容量配置已变更");
+            }
+            map(fileDimensions);
+            log.info("已加载向量缓存 {}（维度 {}，容量 {}）", path, fileDimensions, sets * config.getWays());
+        } catch (IOException e) {
+            log.warn("向量缓存文件 {} 无法使用，将重新创建: {}", path, e.getMessage());
+            closeQuietly();
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException deleteError) {
+                log.warn("删除向量缓存文件失败: {}", deleteError.getMessage());
+            }
+        }
+    }
+
+    // 首次写入时按向量维度创建文件
+    private synchronized MappedByteBuffer create(int vectorDimensions) {
+        if (buffer != null || !enabled) {
+            return buffer;
+        }
+        long fileBytes = HEADER_BYTES + (long) sets * config.getWays() * (KEY_BYTES + vectorDimensions * Float.BYTES);
+        if (fileBytes > MAX_FILE_BYTES) {
+            log.warn("向量缓存文件将超过 2GB（容量 {}，维度 {}），不启用缓存", config.getCapacity(), vectorDimensions);
+            enabled = false;
+            return null;
+        }
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC).putInt(VERSION).putInt(vectorDimensions).putInt(sets);
+            header.rewind();
+            channel.write(header, 0);
+            map(vectorDimensions);
+            log.info("已创建向量缓存 {}（维度 {}，容量 {}）", path, vectorDimensions, sets * config.getWays());
+            return buffer;
+        } catch (IOException e) {
+            log.warn("创建向量缓存文件 {} 失败，不启用缓存: {}", path, e.getMessage());
+            closeQuietly();
+            enabled = false;
+            return null;
+        }
+    }
+
+    private void map(int vectorDimensions) throws IOException {
+        this.dimensions = vectorDimensions;
+        this.slotBytes = KEY_BYTES + vectorDimensions * Float.BYTES;
+        this.victims = new byte[sets];
+        long fileBytes = HEADER_BYTES + (long) sets * config.getWays() * slotBytes;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+    }
+
+    private int setOf(byte[] key) {
+        int hash = ((key[0] & 0xff) << 24) | ((key[1] & 0xff) << 16) | ((key[2] & 0xff) << 8) | (key[3] & 0xff);
+        return Math.floorMod(hash, sets);
+    }
+
+    private int slotOffset(int set, int way) {
+        return HEADER_BYTES + (set * config.getWays() + way) * slotBytes;
+    }
+
+    private Object lockOf(int set) {
+        return locks[set & (LOCK_STRIPES - 1)];
+    }
+
+    private static boolean keyEquals(ByteBuffer mapped, int offset, byte[] key) {
+        for (int i = 0; i < KEY_BYTES; i++) {
+            if (mapped.get(offset + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isEmpty(ByteBuffer mapped, int offset) {
+        for (int i = 0; i < KEY_BYTES; i++) {
+            if (mapped.get(offset + i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (buffer != null) {
+            buffer.force();
+        }
+        closeQuietly();
+    }
+
+    private void closeQuietly() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.debug("关闭向量缓存文件失败: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.zg.ai.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zg.ai.common.DocumentMetadata;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.zg.ai.config.properties.RetrievalProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * RAG 检索结果缓存：基于 Caffeine（W-TinyLFU 准入），按权重限界、按 TTL 过期，
+ * 支持按用户或按文档失效，命中/未命中/淘汰指标注册到 Micrometer（rag.retrieval）
+ */
+@Slf4j
+@Component
+public class RetrievalCache {
+
+    // 每个条目的固定权重（键及列表本身的开销），保证条目数同样有上限
+    private static final int ENTRY_BASE_WEIGHT = 256;
+
+    private final boolean enabled;
+    private final Cache<RetrievalKey, List<Document>> cache;
+
+    public RetrievalCache(RetrievalProperties properties, MeterRegistry meterRegistry) {
+        RetrievalProperties.Cache config = properties.getCache();
+        this.enabled = config.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(config.getMaximumWeight())
+                .weigher((RetrievalKey key, List<Document> docs) -> ENTRY_BASE_WEIGHT + weightOf(docs))
+                .expireAfter(new Expiry<RetrievalKey, List<Document>>() {
+                    @Override
+                    public long expireAfterCreate(RetrievalKey key, List<Document> docs, long currentTime) {
+                        return (docs.isEmpty() ? config.getEmptyResultTtl() : config.getTtl()).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(RetrievalKey key, List<Document> docs, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(key, docs, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(RetrievalKey key, List<Document> docs, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "rag.retrieval");
+    }
+
+    public List<Document> get(RetrievalKey key) {
+        return enabled ? cache.getIfPresent(key) : null;
+    }
+
+    public void put(RetrievalKey key, List<Document> documents) {
+        if (enabled) {
+            cache.put(key, List.copyOf(documents));
+        }
+    }
+
+    // 失效某个用户范围内的全部检索结果（如该用户上传了新文档）
+    public void invalidateUser(String userId) {
+        cache.asMap().keySet().removeIf(key -> Objects.equals(key.userId(), userId));
+        log.debug("已失效用户 {} 的检索缓存", userId);
+    }
+
+    // 失效包含指定文档分块的检索结果（如文档被删除），vectorIds 用于匹配缺少 documentId 元数据的旧分块
+    public void invalidateDocument(String documentId, Collection<String> vectorIds) {
+        cache.asMap().values().removeIf(docs -> docs.stream().anyMatch(doc ->
+                documentId.equals(doc.getMetadata().get(DocumentMetadata.DOCUMENT_ID))
+                        || vectorIds.contains(doc.getId())));
+        log.debug("已失效文档 {} 相关的检索缓存", documentId);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static int weightOf(List<Document> docs) {
+        int weight = 0;
+        for (Document doc : docs) {
+            if (doc.getText() != null) {
+                weight += doc.getText().length();
+            }
+        }
+        return weight;
+    }
+}
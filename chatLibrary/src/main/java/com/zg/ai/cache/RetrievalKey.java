@@ -0,0 +1,38 @@
+package com.zg.ai.cache;
+
+import java.text.Normalizer;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * 检索缓存键：归一化后的查询文本 + 检索参数 + 用户范围
+ *
+ * @param query               归一化后的查询文本
+ * @param topK                返回的最大文档数
+ * @param similarityThreshold 相似度阈值
+ * @param userId              检索范围所属用户
+ * @param documentIds         用户指定的文档范围（已排序去重，为空表示不限）
+ */
+public record RetrievalKey(String query, int topK, double similarityThreshold, String userId,
+                           List<String> documentIds) {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    public static RetrievalKey of(String prompt, int topK, double similarityThreshold, String userId,
+            List<String> documentIds) {
+        List<String> scope = documentIds == null ? List.of() : documentIds.stream().distinct().sorted().toList();
+        return new RetrievalKey(normalize(prompt), topK, similarityThreshold, userId, scope);
+    }
+
+    /**
+     * 归一化查询文本：NFKC（全角转半角）、合并空白、转小写
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim().toLowerCase(Locale.ROOT);
+    }
+}
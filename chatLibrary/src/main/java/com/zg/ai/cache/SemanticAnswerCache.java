@@ -0,0 +1,160 @@
+package com.zg.ai.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zg.ai.common.DocumentMetadata;
+import com.zg.ai.config.properties.SemanticCacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * 语义答案缓存：以提问向量为键，相似度超过阈值、生成模型相同且检索到的分块集合一致时复用历史答案；
+ * 没有检索到分块的提问不缓存（答案只取决于提问本身，可能含有提问者的个人信息，不能跨用户复用）。
+ * 指标 rag.semantic.hits/misses/hit.ratio 及 rag.semantic.latency.saved
+ */
+@Slf4j
+@Component
+public class SemanticAnswerCache {
+
+    private final SemanticCacheProperties properties;
+    private final EmbeddingModel embeddingModel;
+    private final Cache<String, CachedAnswer> cache;
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer latencySaved;
+
+    public SemanticAnswerCache(SemanticCacheProperties properties, EmbeddingModel embeddingModel,
+            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.embeddingModel = embeddingModel;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+        this.hits = meterRegistry.counter("rag.semantic.hits");
+        this.misses = meterRegistry.counter("rag.semantic.misses");
+        this.latencySaved = Timer.builder("rag.semantic.latency.saved")
+                .description("命中缓存时省去的生成耗时")
+                .register(meterRegistry);
+        Gauge.builder("rag.semantic.hit.ratio", this, SemanticAnswerCache::hitRatio)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    // 计算提问向量并归一化（阻塞调用，需在 boundedElastic 线程池执行）
+    public float[] embed(String prompt) {
+        return normalize(embeddingModel.embed(RetrievalKey.normalize(prompt)));
+    }
+
+    /**
+     * 查找同一模型生成、分块集合一致且相似度最高的答案，未命中（或没有检索到分块）返回 null
+     */
+    public CachedAnswer lookup(float[] embedding, String model, List<Document> documents) {
+        if (documents.isEmpty()) {
+            return null;
+        }
+        Set<String> chunkIds = chunkIdsOf(documents);
+        CachedAnswer best = null;
+        double bestScore = properties.getSimilarityThreshold();
+        for (CachedAnswer candidate : cache.asMap().values()) {
+            if (!candidate.model().equals(model) || !candidate.chunkIds().equals(chunkIds)) {
+                continue;
+            }
+            double score = dot(embedding, candidate.embedding());
+            if (score >= bestScore) {
+                best = candidate;
+                bestScore = score;
+            }
+        }
+        if (best == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        latencySaved.record(best.generationTime());
+        log.debug("语义缓存命中，相似度 {}", bestScore);
+        return best;
+    }
+
+    public void put(float[] embedding, String model, List<Document> documents, String answer,
+            Duration generationTime) {
+        if (answer.isBlank() || documents.isEmpty()) {
+            return;
+        }
+        Set<String> documentIds = documents.stream()
+                .map(doc -> doc.getMetadata().get(DocumentMetadata.DOCUMENT_ID))
+                .filter(Objects::nonNull)
+                .map(Object::toString)
+                .collect(Collectors.toUnmodifiableSet());
+        cache.put(UUID.randomUUID().toString(),
+                new CachedAnswer(embedding, model, chunkIdsOf(documents), documentIds, answer, generationTime));
+    }
+
+    // 失效引用了指定文档分块的答案
+    public void invalidateDocument(String documentId, Collection<String> vectorIds) {
+        cache.asMap().values().removeIf(answer -> answer.documentIds().contains(documentId)
+                || answer.chunkIds().stream().anyMatch(vectorIds::contains));
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    private static Set<String> chunkIdsOf(List<Document> documents) {
+        return documents.stream().map(Document::getId).collect(Collectors.toUnmodifiableSet());
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = Math.sqrt(dot(vector, vector));
+        if (norm == 0) {
+            return vector;
+        }
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 缓存的答案
+     *
+     * @param embedding      归一化后的提问向量
+     * @param chunkIds       生成时使用的分块 ID 集合
+     * @param documentIds    分块所属文档 ID 集合
+     * @param answer         答案全文
+     * @param generationTime 原始生成耗时
+     */
+    public record CachedAnswer(float[] embedding, String model, Set<String> chunkIds, Set<String> documentIds,
+                               String answer, Duration generationTime) {
+    }
+}
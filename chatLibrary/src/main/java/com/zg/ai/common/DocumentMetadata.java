@@ -0,0 +1,15 @@
+package com.zg.ai.common;
+
+/**
+ * 文档分块元数据键（同时作为向量库 payload 字段名）
+ */
+public final class DocumentMetadata {
+    public static final String DOCUMENT_ID = "documentId";
+    public static final String USER_ID = "userId";
+    public static final String SHARED = "shared";
+    public static final String VECTOR_ID = "vectorId";
+    public static final String ORIGINAL_FILENAME = "originalFilename";
+
+    private DocumentMetadata() {
+    }
+}
@@ -1,34 +1,52 @@
 package com.zg.ai.config;
 
+import com.zg.ai.config.properties.ChatProperties;
+import com.zg.ai.context.ContextBuilder;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.InMemoryChatMemoryRepository;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.ollama.OllamaChatModel;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.ollama.api.OllamaChatOptions;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 @Configuration
 public class CommonConfiguration {
+    // 对话记忆由 ChatService 按 token 预算裁剪后显式传入，不再使用记忆顾问
     @Bean
-    public ChatClient chatClient(OllamaChatModel model, ChatMemory chatMemory, VectorStore vectorStore) {
+    @Primary
+    public ChatClient chatClient(OllamaChatModel model) {
+        return knowledgeBaseChatClient(model);
+    }
+
+    // 知识库问答客户端：默认系统提示词与前缀稳定布局的固定系统提示词一致
+    public static ChatClient knowledgeBaseChatClient(ChatModel model) {
+        return ChatClient
+                .builder(model)
+                .defaultSystem(ContextBuilder.SYSTEM_PREAMBLE)
+                .defaultAdvisors(new SimpleLoggerAdvisor())
+                .build();
+    }
+
+    // 生成对话滚动摘要用的较小模型
+    @Bean
+    public ChatClient summaryChatClient(OllamaChatModel model, ChatProperties chatProperties) {
         return ChatClient
                 .builder(model)
-                .defaultSystem("你是本地知识库问答机器人，你的名字叫加藤惠，用户可以上传文件作为你回答问题的相关依据")
-                .defaultAdvisors(
-                        new SimpleLoggerAdvisor(),
-                        MessageChatMemoryAdvisor.builder(chatMemory).build())
+                .defaultOptions(OllamaChatOptions.builder().model(chatProperties.getSummary().getModel()).build())
                 .build();
     }
 
+    // 记忆窗口以 chat_message 为准，热层有界（见 PersistentChatMemoryRepository）
     @Bean
-    public ChatMemory chatMemory() {
+    public ChatMemory chatMemory(ChatMemoryRepository chatMemoryRepository, ChatProperties chatProperties) {
         return MessageWindowChatMemory.builder()
-                .chatMemoryRepository(new InMemoryChatMemoryRepository())
-                .maxMessages(10)
+                .chatMemoryRepository(chatMemoryRepository)
+                .maxMessages(chatProperties.getMemory().getMaxMessages())
                 .build();
     }
 
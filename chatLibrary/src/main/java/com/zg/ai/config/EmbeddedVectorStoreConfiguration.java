@@ -0,0 +1,34 @@
+package com.zg.ai.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zg.ai.config.properties.VectorStoreProperties;
+import com.zg.ai.vectorstore.EmbeddedVectorStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SpringAIVectorStoreTypes;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 单机部署用的内嵌向量库：spring.ai.vectorstore.type=embedded 时启用，
+ * 此时 Qdrant 自动配置按同一开关关闭，业务代码仍只依赖 VectorStore 接口
+ */
+@Configuration
+@ConditionalOnProperty(name = SpringAIVectorStoreTypes.TYPE, havingValue = EmbeddedVectorStore.TYPE)
+public class EmbeddedVectorStoreConfiguration {
+
+    @Bean
+    public EmbeddedVectorStore vectorStore(EmbeddingModel embeddingModel, VectorStoreProperties properties,
+            ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            ObjectProvider<ObservationRegistry> observationRegistry) {
+        return EmbeddedVectorStore.builder(embeddingModel)
+                .properties(properties)
+                .objectMapper(objectMapper)
+                .meterRegistry(meterRegistry)
+                .observationRegistry(observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP))
+                .build();
+    }
+}
@@ -0,0 +1,50 @@
+package com.zg.ai.config;
+
+import com.zg.ai.common.DocumentMetadata;
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.grpc.Collections.PayloadSchemaType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.vectorstore.qdrant.autoconfigure.QdrantVectorStoreProperties;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 启动时为检索过滤字段创建 Qdrant payload 索引，使按用户/文档过滤在索引上完成而不是扫描全部向量
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class QdrantPayloadIndexInitializer {
+
+    private static final Map<String, PayloadSchemaType> INDEXED_FIELDS = Map.of(
+            DocumentMetadata.USER_ID, PayloadSchemaType.Keyword,
+            DocumentMetadata.DOCUMENT_ID, PayloadSchemaType.Keyword,
+            DocumentMetadata.SHARED, PayloadSchemaType.Bool);
+
+    private final ObjectProvider<QdrantClient> qdrantClient;
+    private final ObjectProvider<QdrantVectorStoreProperties> qdrantProperties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createPayloadIndexes() {
+        QdrantClient client = qdrantClient.getIfAvailable();
+        QdrantVectorStoreProperties properties = qdrantProperties.getIfAvailable();
+        if (client == null || properties == null) {
+            return;
+        }
+        String collection = properties.getCollectionName();
+        INDEXED_FIELDS.forEach((field, type) -> {
+            try {
+                // 索引已存在时 Qdrant 直接返回成功
+                client.createPayloadIndexAsync(collection, field, type, null, true, null, null).get();
+                log.info("已创建 Qdrant payload 索引: {}.{}", collection, field);
+            } catch (Exception e) {
+                log.warn("创建 Qdrant payload 索引失败: {}.{}", collection, field, e);
+            }
+        });
+    }
+}
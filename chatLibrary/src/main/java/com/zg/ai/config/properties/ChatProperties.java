@@ -0,0 +1,170 @@
+package com.zg.ai.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 对话配置：生成合并、模型路由、对话记忆及消息持久化
+ */
+@Data
+@ConfigurationProperties(prefix = "app.chat")
+public class ChatProperties {
+    /**
+     * 是否合并无对话记忆的相同提问，共享同一个上游生成流
+     */
+    private boolean coalesceGenerations = false;
+
+    /**
+     * 按问题难度选择模型
+     */
+    private Routing routing = new Routing();
+
+    /**
+     * 对话记忆
+     */
+    private Memory memory = new Memory();
+
+    /**
+     * 对话滚动摘要
+     */
+    private Summary summary = new Summary();
+
+    /**
+     * 聊天消息异步批量写入
+     */
+    private WriteBehind writeBehind = new WriteBehind();
+
+    @Data
+    public static class Routing {
+        /**
+         * 是否开启模型路由；关闭时全部使用推理模型（spring.ai.ollama.chat.model），请求中的档位提示仍然生效
+         */
+        private boolean enabled = true;
+
+        /**
+         * 简单问题使用的较小非推理模型
+         */
+        private String fastModel = "qwen2.5:3b";
+
+        /**
+         * 不超过该字数的提问视为短问题，倾向使用小模型
+         */
+        private int shortPromptChars = 30;
+
+        /**
+         * 超过该字数的提问视为长问题，倾向使用推理模型
+         */
+        private int longPromptChars = 120;
+
+        /**
+         * 最相关分块的得分不低于该值时，答案基本可以直接从参考文档得出，倾向使用小模型
+         */
+        private double confidentRetrievalScore = 0.8;
+
+        /**
+         * 提问中出现这些词时倾向使用推理模型；英文词按整词匹配，不区分大小写
+         */
+        private List<String> reasoningKeywords = new ArrayList<>(List.of(
+                "为什么", "如何", "怎么", "怎样", "比较", "对比", "区别", "分析", "推导", "证明", "计算", "步骤",
+                "原理", "评估", "优缺点", "why", "how", "compare", "comparison", "explain", "prove", "proof",
+                "analyze", "analyse", "analysis"));
+
+        /**
+         * 各项信号的得分之和不超过该值时使用小模型
+         */
+        private int fastScoreThreshold = 0;
+    }
+
+    @Data
+    public static class Memory {
+        /**
+         * 每个会话记忆窗口的最大消息数
+         */
+        private int maxMessages = 10;
+
+        /**
+         * 热层总权重上限（按消息字符数计），超出后按 W-TinyLFU 淘汰
+         */
+        private long maximumWeight = 20_000_000;
+
+        /**
+         * 热层会话空闲多久后淘汰，下次使用时从 chat_message 重新加载
+         */
+        private Duration idleTtl = Duration.ofMinutes(30);
+
+        /**
+         * 从数据库加载记忆窗口的超时时间
+         */
+        private Duration loadTimeout = Duration.ofSeconds(3);
+    }
+
+    @Data
+    public static class Summary {
+        /**
+         * 是否开启摘要记忆：较早的对话在后台压缩为摘要，提示词只携带摘要和最近几条消息
+         */
+        private boolean enabled = false;
+
+        /**
+         * 生成摘要使用的较小模型
+         */
+        private String model = "qwen2.5:1.5b";
+
+        /**
+         * 始终原样保留的最近消息数
+         */
+        private int recentMessages = 4;
+
+        /**
+         * 最近消息之外未压缩的消息达到该数量时触发摘要；与 recentMessages 之和不应超过记忆窗口
+         */
+        private int triggerMessages = 6;
+
+        /**
+         * 单次最多并入摘要的消息数，积压更多时分批进行
+         */
+        private int maxBatchMessages = 20;
+
+        /**
+         * 摘要最大字数
+         */
+        private int maxSummaryChars = 800;
+
+        /**
+         * 同时进行的摘要任务上限，超出时跳过，下一轮对话结束后再触发
+         */
+        private int maxConcurrent = 2;
+    }
+
+    @Data
+    public static class WriteBehind {
+        /**
+         * 单批最大消息数
+         */
+        private int batchSize = 100;
+
+        /**
+         * 最长攒批时间
+         */
+        private Duration flushInterval = Duration.ofMillis(50);
+
+        /**
+         * 缓冲区容量，已满时拒绝写入由调用方重试
+         */
+        private int capacity = 10000;
+
+        /**
+         * 批量写入失败的最大重试次数
+         */
+        private int maxRetries = 3;
+
+        /**
+         * 关闭时等待缓冲区写完的最长时间
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(10);
+    }
+}
@@ -0,0 +1,47 @@
+package com.zg.ai.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 提示词上下文打包配置：布局、token 预算、记忆窗口占比及分块去重
+ */
+@Data
+@ConfigurationProperties(prefix = "app.context")
+public class ContextProperties {
+    /**
+     * 提示词布局
+     */
+    private Layout layout = Layout.PREFIX_STABLE;
+
+    /**
+     * 单次请求提示词（系统提示词 + 参考文档 + 对话记忆 + 用户提问）的 token 上限
+     */
+    private int maxPromptTokens = 3072;
+
+    /**
+     * 对话记忆最多占用的 token 数，超出时从最早的消息开始裁剪
+     */
+    private int maxHistoryTokens = 1024;
+
+    /**
+     * 两个分块字符 n-gram 的 Jaccard 相似度达到该值视为近似重复，只保留得分高的一个
+     */
+    private double duplicateThreshold = 0.9;
+
+    /**
+     * 分块首尾重叠至少达到该字符数时，去掉后一个分块中的重叠部分
+     */
+    private int minOverlapChars = 20;
+
+    public enum Layout {
+        /**
+         * 固定系统提示词，摘要和历史按顺序追加，参考文档放在本轮用户消息中，便于 Ollama 复用 KV 缓存
+         */
+        PREFIX_STABLE,
+        /**
+         * 参考文档和摘要放在系统提示词中，每轮提示词开头都不同
+         */
+        SYSTEM_CONTEXT
+    }
+}
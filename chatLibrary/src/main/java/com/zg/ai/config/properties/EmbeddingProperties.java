@@ -0,0 +1,61 @@
+package com.zg.ai.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 向量计算配置：查询向量的微批合并及持久化向量缓存
+ */
+@Data
+@ConfigurationProperties(prefix = "app.embedding")
+public class EmbeddingProperties {
+    /**
+     * 攒批窗口，窗口内并发的单条向量请求合并为一次调用
+     */
+    private Duration batchWindow = Duration.ofMillis(5);
+
+    /**
+     * 单批最多合并的文本数，达到后立即发送
+     */
+    private int maxBatchSize = 32;
+
+    /**
+     * 同时进行的批量调用数
+     */
+    private int maxConcurrentBatches = 4;
+
+    /**
+     * 等待批量调用结果的超时时间
+     */
+    private Duration timeout = Duration.ofSeconds(30);
+
+    /**
+     * 持久化向量缓存
+     */
+    private Cache cache = new Cache();
+
+    @Data
+    public static class Cache {
+        /**
+         * 是否开启向量缓存
+         */
+        private boolean enabled = true;
+
+        /**
+         * 缓存文件路径（内存映射，重启后保留）
+         */
+        private String path = "data/embedding-cache.bin";
+
+        /**
+         * 最多缓存的向量数，文件大小约为 capacity ×（16 + 4 × 向量维度）字节，不超过 2GB
+         */
+        private int capacity = 50_000;
+
+        /**
+         * 组相联的路数：每个键只会落在同一组的这几个槽位中，组满时替换其中一个
+         */
+        private int ways = 8;
+    }
+}
@@ -0,0 +1,68 @@
+package com.zg.ai.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 文档入库配置：工作线程数、排队上限、失败重试，以及流式处理的分段、分批及批次向量化的并行与重试
+ */
+@Data
+@ConfigurationProperties(prefix = "app.ingestion")
+public class IngestionProperties {
+    /**
+     * 同时处理的文档数（解析、分块及向量化）
+     */
+    private int parallelism = 2;
+
+    /**
+     * 全局最多未完成的任务数（排队、等待重试及处理中），超出时拒绝上传
+     */
+    private int maxQueued = 100;
+
+    /**
+     * 单个用户最多未完成的任务数
+     */
+    private int maxQueuedPerUser = 20;
+
+    /**
+     * 每个任务最多执行的次数（含首次）
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * 首次重试前的等待时间，之后每次翻倍
+     */
+    private Duration initialBackoff = Duration.ofSeconds(10);
+
+    /**
+     * 重试等待时间上限
+     */
+    private Duration maxBackoff = Duration.ofMinutes(5);
+
+    /**
+     * 流式提取时每段的最少字符数，段在页或段落结束处切分后逐段分块
+     */
+    private int sectionChars = 8000;
+
+    /**
+     * 每批向量化并保存的分块数：即向量化请求的批大小，也是断点续传的粒度，一批存完即可检索
+     */
+    private int batchSize = 32;
+
+    /**
+     * 单个文档同时进行向量化的批次数（发往向量模型服务的并行请求数）
+     */
+    private int embeddingConcurrency = 2;
+
+    /**
+     * 单批向量化失败后的重试次数，用尽后整个任务按任务级退避重试（从断点继续）
+     */
+    private int batchRetries = 3;
+
+    /**
+     * 单批重试前的等待时间，之后每次翻倍
+     */
+    private Duration batchRetryBackoff = Duration.ofSeconds(2);
+}
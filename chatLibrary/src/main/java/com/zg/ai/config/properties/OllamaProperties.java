@@ -0,0 +1,55 @@
+package com.zg.ai.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ollama 实例池配置：负载均衡、健康检查、会话亲和及向量请求对冲
+ */
+@Data
+@ConfigurationProperties(prefix = "app.ollama")
+public class OllamaProperties {
+    /**
+     * 对话及向量模型实例地址；为空时只使用 spring.ai.ollama.base-url
+     */
+    private List<String> instances = new ArrayList<>();
+
+    /**
+     * 健康检查间隔（查询 /api/ps，同时获取各实例已加载的模型）
+     */
+    private Duration healthCheckInterval = Duration.ofSeconds(10);
+
+    /**
+     * 健康检查超时
+     */
+    private Duration healthCheckTimeout = Duration.ofSeconds(2);
+
+    /**
+     * 连续失败多少次后摘除实例，直到下一次健康检查通过
+     */
+    private int maxFailures = 3;
+
+    /**
+     * 会话亲和允许的负载差：亲和实例的进行中请求数比最空闲实例多出该值以上时改发最空闲实例
+     */
+    private int affinitySlack = 2;
+
+    /**
+     * 实例未加载所需模型时在负载上附加的惩罚值（加载模型需要较长时间）
+     */
+    private int coldStartPenalty = 4;
+
+    /**
+     * 是否对冲向量请求：首个实例在 hedgeDelay 内未返回时向另一实例再发一次，取先返回的结果
+     */
+    private boolean hedgeEmbeddings = true;
+
+    /**
+     * 发出对冲请求前的等待时间，宜取向量请求耗时的 p95 左右
+     */
+    private Duration hedgeDelay = Duration.ofMillis(150);
+}
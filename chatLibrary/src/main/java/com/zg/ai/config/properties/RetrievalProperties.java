@@ -0,0 +1,162 @@
+package com.zg.ai.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * RAG 检索配置：向量检索参数、词法（BM25）混合检索、小语料精确检索及检索结果缓存
+ */
+@Data
+@ConfigurationProperties(prefix = "app.retrieval")
+public class RetrievalProperties {
+    /**
+     * 返回的最大文档数
+     */
+    private int topK = 4;
+
+    /**
+     * 相似度阈值
+     */
+    private double similarityThreshold = 0.6;
+
+    /**
+     * 检索专用线程池的最大并发数（舱壁）
+     */
+    private int maxConcurrency = 8;
+
+    /**
+     * 并发已满时允许排队的检索数，超出则直接降级
+     */
+    private int maxQueued = 64;
+
+    /**
+     * 单次检索超时，超时后按无参考文档回答
+     */
+    private Duration timeout = Duration.ofSeconds(3);
+
+    /**
+     * 检索结果缓存
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * 词法索引及混合检索
+     */
+    private Lexical lexical = new Lexical();
+
+    /**
+     * 小语料精确检索
+     */
+    private Exact exact = new Exact();
+
+    @Data
+    public static class Cache {
+        /**
+         * 是否启用缓存
+         */
+        private boolean enabled = true;
+
+        /**
+         * 缓存总权重上限（按文档字符数计，每个条目另计固定开销）
+         */
+        private long maximumWeight = 20_000_000L;
+
+        /**
+         * 非空结果的存活时间
+         */
+        private Duration ttl = Duration.ofMinutes(10);
+
+        /**
+         * 空结果的存活时间（知识库更新后应尽快重新检索）
+         */
+        private Duration emptyResultTtl = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Lexical {
+        /**
+         * 是否启用词法索引（关闭后为纯向量检索）
+         */
+        private boolean enabled = true;
+
+        /**
+         * 索引快照及日志目录
+         */
+        private String path = "data/lexical-index";
+
+        /**
+         * 日志压缩成快照的间隔
+         */
+        private Duration snapshotInterval = Duration.ofMinutes(1);
+
+        /**
+         * BM25 词频饱和参数
+         */
+        private double k1 = 1.2;
+
+        /**
+         * BM25 长度归一化参数
+         */
+        private double b = 0.75;
+
+        /**
+         * 倒数排名融合的平滑常数
+         */
+        private int rrfK = 60;
+
+        /**
+         * 融合前两路各取 topK 的倍数作为候选
+         */
+        private int candidateMultiplier = 2;
+
+        /**
+         * 词法命中参与融合的最低查询词覆盖率，过滤只命中个别常见字词的分块
+         */
+        private double minCoverage = 0.3;
+
+        /**
+         * 是否启用词法快速路径（词法结果足够确定时跳过向量化和向量检索）
+         */
+        private boolean fastPathEnabled = true;
+
+        /**
+         * 快速路径要求首个命中的查询词覆盖率
+         */
+        private double fastPathCoverage = 0.9;
+
+        /**
+         * 快速路径要求首个命中的 BM25 得分至少为第二个的倍数
+         */
+        private double fastPathMargin = 1.5;
+    }
+
+    @Data
+    public static class Exact {
+        /**
+         * 是否启用（需词法索引，分块取自词法索引）
+         */
+        private boolean enabled = true;
+
+        /**
+         * 用户自己的分块加共享分块不超过此数时精确检索，否则走向量库
+         */
+        private int maxChunks = 5000;
+
+        /**
+         * 是否以 int8 量化存放向量（内存为浮点的四分之一，得分略有误差）
+         */
+        private boolean quantized = false;
+
+        /**
+         * 向量块占用的堆外内存上限（字节）
+         */
+        private long maximumBytes = 268_435_456L;
+
+        /**
+         * 向量块闲置多久后释放
+         */
+        private Duration idleTtl = Duration.ofMinutes(30);
+    }
+}
@@ -0,0 +1,43 @@
+package com.zg.ai.config.properties;
+
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * 模型请求调度配置：全局并发槽位、按用户公平排队及排队上限
+ */
+@Data
+@Validated
+@ConfigurationProperties(prefix = "app.scheduler")
+public class SchedulerProperties {
+    /**
+     * 是否启用调度；关闭时请求直接发往模型
+     */
+    private boolean enabled = true;
+
+    /**
+     * 同时进行的生成数，应与模型后端的并行槽位总数一致（Ollama 的 OLLAMA_NUM_PARALLEL × 实例数）
+     */
+    @Positive
+    private int maxConcurrent = 4;
+
+    /**
+     * 全局最多排队的请求数，超出时拒绝并给出重试建议
+     */
+    @Positive
+    private int maxQueued = 64;
+
+    /**
+     * 单个用户最多排队的请求数
+     */
+    @Positive
+    private int maxQueuedPerUser = 4;
+
+    /**
+     * 亏空轮询（DRR）每轮给每个用户增加的额度，按提示词 token 计；必须为正，否则分配循环无法推进
+     */
+    @Positive
+    private int quantum = 1024;
+}
@@ -0,0 +1,33 @@
+package com.zg.ai.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 语义答案缓存配置：按提问向量相似度复用历史答案
+ */
+@Data
+@ConfigurationProperties(prefix = "app.semantic-cache")
+public class SemanticCacheProperties {
+    /**
+     * 是否启用（默认关闭）
+     */
+    private boolean enabled = false;
+
+    /**
+     * 命中所需的最小余弦相似度
+     */
+    private double similarityThreshold = 0.95;
+
+    /**
+     * 最大缓存答案数
+     */
+    private long maximumSize = 2000;
+
+    /**
+     * 答案存活时间
+     */
+    private Duration ttl = Duration.ofHours(1);
+}
@@ -0,0 +1,53 @@
+package com.zg.ai.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 聊天 SSE 输出配置：片段合并、慢客户端缓冲、心跳及断线续传
+ */
+@Data
+@ConfigurationProperties(prefix = "app.sse")
+public class SseProperties {
+    /**
+     * 合并窗口，窗口内的模型片段合并为一帧发送
+     */
+    private Duration frameWindow = Duration.ofMillis(30);
+
+    /**
+     * 单帧最多合并的片段数，达到后立即发送
+     */
+    private int maxDeltasPerFrame = 64;
+
+    /**
+     * 每个客户端最多积压的帧数，超出视为慢客户端并断开（同时取消模型生成）
+     */
+    private int maxPendingFrames = 256;
+
+    /**
+     * 连接空闲多久后发送心跳注释
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(15);
+
+    /**
+     * 每次生成保留的最近帧数，断线重连时从中回放
+     */
+    private int replayCapacity = 1024;
+
+    /**
+     * 生成结束后回放缓冲的保留时间
+     */
+    private Duration replayTtl = Duration.ofMinutes(5);
+
+    /**
+     * 所有客户端断开后继续生成等待重连的时间，超时取消生成并释放调度槽位；只需覆盖一次带 Last-Event-ID 的重连
+     */
+    private Duration detachTimeout = Duration.ofSeconds(5);
+
+    /**
+     * 同时保留的回放缓冲数上限
+     */
+    private int maxStreams = 10000;
+}
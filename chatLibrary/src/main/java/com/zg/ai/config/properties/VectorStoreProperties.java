@@ -0,0 +1,48 @@
+package com.zg.ai.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 内嵌向量库配置（spring.ai.vectorstore.type=embedded 时生效，单机部署替代 Qdrant）
+ */
+@Data
+@ConfigurationProperties(prefix = "app.vector-store")
+public class VectorStoreProperties {
+    /**
+     * 索引文件目录
+     */
+    private String path = "data/vector-store";
+
+    /**
+     * HNSW 每层的邻居数（第 0 层为两倍），创建索引后不可修改
+     */
+    private int m = 16;
+
+    /**
+     * 建图时的候选规模，越大图质量越高、写入越慢
+     */
+    private int efConstruction = 128;
+
+    /**
+     * 检索时的候选规模（不小于 topK），越大召回率越高、检索越慢
+     */
+    private int efSearch = 64;
+
+    /**
+     * 后台压缩间隔：回收已删除节点、改写文档日志并刷盘
+     */
+    private Duration compactionInterval = Duration.ofMinutes(1);
+
+    /**
+     * 每次压缩最多回收的已删除节点数
+     */
+    private int compactionBatch = 1024;
+
+    /**
+     * 文档日志中废弃记录超过存活记录的该比例时改写
+     */
+    private double maxGarbageRatio = 0.5;
+}
@@ -0,0 +1,261 @@
+package com.zg.ai.context;
+
+import com.zg.ai.cache.RetrievalKey;
+import com.zg.ai.config.properties.ContextProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 提示词上下文打包：在 token 预算内依次放入用户提问、对话摘要、裁剪后的对话记忆和得分最高的参考分块，
+ * 丢弃近似重复的分块并去掉相邻分块的首尾重叠；token 按分块时使用的同一分词器（cl100k）估算。
+ * 前缀稳定布局下系统提示词固定，摘要和历史按顺序追加，参考文档随本轮用户消息放在最后，
+ * 同一会话相邻两轮的提示词前缀一致，Ollama 可以复用上一轮的 KV 缓存
+ */
+@Slf4j
+@Component
+public class ContextBuilder {
+
+    /**
+     * 固定的系统提示词（前缀稳定布局及对话客户端默认系统提示词）
+     */
+    public static final String SYSTEM_PREAMBLE = """
+            你是本地知识库问答机器人，你的名字叫加藤惠，用户可以上传文件作为你回答问题的相关依据。
+            请根据用户消息中附带的参考文档回答问题。
+            如果参考文档中没有相关信息，请根据你的知识回答，但要说明"文档中未找到相关信息"。
+            """;
+    private static final String USER_TEMPLATE = """
+            参考文档：
+            %s
+
+            问题：%s""";
+    private static final String NO_REFERENCES = "（无）";
+
+    private static final String SYSTEM_TEMPLATE = """
+            你是本地知识库问答机器人，你的名字叫加藤惠。
+            请根据以下参考文档回答用户的问题。
+            如果参考文档中没有相关信息，请根据你的知识回答，但要说明"文档中未找到相关信息"。
+
+            %s参考文档：
+            %s
+            """;
+    private static final String SUMMARY_SECTION = "此前对话摘要：\n%s\n\n";
+    private static final String CHUNK_SEPARATOR = "\n\n";
+    private static final int SHINGLE_SIZE = 3;
+
+    private final ContextProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final TokenCountEstimator tokenCounter = new JTokkitTokenCountEstimator();
+    private final int templateTokens;
+    private final int preambleTokens;
+    private final int separatorTokens;
+    private final DistributionSummary promptTokens;
+
+    public ContextBuilder(ContextProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.templateTokens = tokenCounter.estimate(String.format(SYSTEM_TEMPLATE, "", ""));
+        this.preambleTokens = tokenCounter.estimate(SYSTEM_PREAMBLE)
+                + tokenCounter.estimate(String.format(USER_TEMPLATE, "", ""));
+        this.separatorTokens = tokenCounter.estimate(CHUNK_SEPARATOR);
+        this.promptTokens = DistributionSummary.builder("chat.prompt.tokens")
+                .description("每次请求的提示词 token 数")
+                .tag("source", "estimated")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    public ContextProperties.Layout layout() {
+        return properties.getLayout();
+    }
+
+    /**
+     * @param history 尚未并入摘要的对话记忆
+     * @param summary 较早对话的滚动摘要，没有时为 null
+     */
+    public PackedContext build(String prompt, List<Document> documents, List<Message> history, String summary) {
+        boolean prefixStable = properties.getLayout() == ContextProperties.Layout.PREFIX_STABLE;
+        String summarySection = summary == null || summary.isBlank() ? "" : String.format(SUMMARY_SECTION, summary);
+        int used = (prefixStable ? preambleTokens : templateTokens) + tokenCounter.estimate(prompt)
+                + (summarySection.isEmpty() ? 0 : tokenCounter.estimate(summarySection));
+
+        List<Message> trimmedHistory = trimHistory(history,
+                Math.min(properties.getMaxHistoryTokens(), properties.getMaxPromptTokens() - used));
+        used += tokensOf(trimmedHistory);
+
+        List<Document> selected = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        List<Set<Integer>> shingles = new ArrayList<>();
+        List<Document> candidates = documents.stream()
+                .sorted(Comparator.comparing((Document doc) -> doc.getScore() == null ? 0 : doc.getScore())
+                        .reversed())
+                .toList();
+        for (Document candidate : candidates) {
+            String text = candidate.getText();
+            if (text == null || text.isBlank()) {
+                continue;
+            }
+            Set<Integer> candidateShingles = shinglesOf(text);
+            if (isNearDuplicate(candidateShingles, shingles)) {
+                dropped("duplicate");
+                continue;
+            }
+            text = stripOverlap(text, texts);
+            if (text.isBlank()) {
+                dropped("overlap");
+                continue;
+            }
+            int tokens = tokenCounter.estimate(text) + (texts.isEmpty() ? 0 : separatorTokens);
+            if (used + tokens > properties.getMaxPromptTokens()) {
+                dropped("budget");
+                continue;
+            }
+            used += tokens;
+            selected.add(candidate);
+            texts.add(text);
+            shingles.add(candidateShingles);
+        }
+
+        promptTokens.record(used);
+        log.debug("提示词约 {} token：参考分块 {}/{}，对话记忆 {}/{} 条",
+                used, selected.size(), documents.size(), trimmedHistory.size(), history.size());
+        String references = String.join(CHUNK_SEPARATOR, texts);
+        boolean firstTurn = history.isEmpty() && summarySection.isEmpty();
+        if (!prefixStable) {
+            return new PackedContext(String.format(SYSTEM_TEMPLATE, summarySection, references), trimmedHistory,
+                    prompt, references, List.copyOf(selected), used, firstTurn);
+        }
+        // 摘要只在后台压缩后才变化，作为第二条系统消息放在固定系统提示词之后、历史消息之前
+        List<Message> messages = new ArrayList<>();
+        if (!summarySection.isEmpty()) {
+            messages.add(new SystemMessage(summarySection.strip()));
+        }
+        messages.addAll(trimmedHistory);
+        String userMessage = String.format(USER_TEMPLATE, references.isEmpty() ? NO_REFERENCES : references, prompt);
+        return new PackedContext(SYSTEM_PREAMBLE, List.copyOf(messages), userMessage, references,
+                List.copyOf(selected), used, firstTurn);
+    }
+
+    // 从最早的消息开始裁剪到预算内，并保证窗口以用户消息开头
+    private List<Message> trimHistory(List<Message> history, int budget) {
+        int start = 0;
+        int tokens = tokensOf(history);
+        while (start < history.size() && (tokens > budget || !(history.get(start) instanceof UserMessage))) {
+            tokens -= tokensOf(history.get(start));
+            start++;
+        }
+        if (start > 0) {
+            meterRegistry.counter("chat.context.history.trimmed").increment(start);
+        }
+        return List.copyOf(history.subList(start, history.size()));
+    }
+
+    private int tokensOf(List<Message> messages) {
+        int tokens = 0;
+        for (Message message : messages) {
+            tokens += tokensOf(message);
+        }
+        return tokens;
+    }
+
+    private int tokensOf(Message message) {
+        return message.getText() == null ? 0 : tokenCounter.estimate(message.getText());
+    }
+
+    private void dropped(String reason) {
+        meterRegistry.counter("chat.context.chunks.dropped", "reason", reason).increment();
+    }
+
+    private boolean isNearDuplicate(Set<Integer> candidate, List<Set<Integer>> selected) {
+        for (Set<Integer> other : selected) {
+            if (jaccard(candidate, other) >= properties.getDuplicateThreshold()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 去掉与已选分块首尾重叠的部分（分块切分时相邻分块可能共享一段文本）
+    private String stripOverlap(String text, List<String> selected) {
+        for (String other : selected) {
+            int head = overlap(other, text);
+            if (head >= properties.getMinOverlapChars()) {
+                text = text.substring(head);
+            }
+            int tail = overlap(text, other);
+            if (tail >= properties.getMinOverlapChars()) {
+                text = text.substring(0, text.length() - tail);
+            }
+        }
+        return text;
+    }
+
+    // first 的后缀与 second 的前缀的最长重叠长度（KMP 前缀函数，线性时间）
+    private static int overlap(String first, String second) {
+        int limit = Math.min(first.length(), second.length());
+        if (limit == 0) {
+            return 0;
+        }
+        String pattern = second.substring(0, limit);
+        int[] prefix = new int[pattern.length()];
+        for (int i = 1, k = 0; i < pattern.length(); i++) {
+            while (k > 0 && pattern.charAt(i) != pattern.charAt(k)) {
+                k = prefix[k - 1];
+            }
+            if (pattern.charAt(i) == pattern.charAt(k)) {
+                k++;
+            }
+            prefix[i] = k;
+        }
+        int matched = 0;
+        for (int i = first.length() - limit; i < first.length(); i++) {
+            while (matched > 0 && first.charAt(i) != pattern.charAt(matched)) {
+                matched = prefix[matched - 1];
+            }
+            if (first.charAt(i) == pattern.charAt(matched)) {
+                matched++;
+            }
+            if (matched == pattern.length() && i < first.length() - 1) {
+                matched = prefix[matched - 1];
+            }
+        }
+        return matched;
+    }
+
+    private static Set<Integer> shinglesOf(String text) {
+        String normalized = RetrievalKey.normalize(text);
+        Set<Integer> shingles = new HashSet<>();
+        for (int i = 0; i + SHINGLE_SIZE <= normalized.length(); i++) {
+            shingles.add(normalized.substring(i, i + SHINGLE_SIZE).hashCode());
+        }
+        return shingles;
+    }
+
+    private static double jaccard(Set<Integer> a, Set<Integer> b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1;
+        }
+        Set<Integer> smaller = a.size() <= b.size() ? a : b;
+        Set<Integer> larger = smaller == a ? b : a;
+        int intersection = 0;
+        for (Integer shingle : smaller) {
+            if (larger.contains(shingle)) {
+                intersection++;
+            }
+        }
+        return (double) intersection / (a.size() + b.size() - intersection);
+    }
+}
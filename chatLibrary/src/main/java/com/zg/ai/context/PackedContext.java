@@ -0,0 +1,21 @@
+package com.zg.ai.context;
+
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+/**
+ * 打包后的提示词上下文
+ *
+ * @param systemPrompt 系统提示词
+ * @param messages     系统提示词与本轮用户消息之间的消息（摘要及裁剪后的对话记忆）
+ * @param userMessage  本轮用户消息
+ * @param references   放入提示词的参考文档文本
+ * @param documents    实际放入提示词的分块
+ * @param promptTokens 估算的提示词 token 数
+ * @param firstTurn    会话此前既没有记忆也没有摘要
+ */
+public record PackedContext(String systemPrompt, List<Message> messages, String userMessage, String references,
+                            List<Document> documents, int promptTokens, boolean firstTurn) {
+}
@@ -5,11 +5,14 @@ import com.zg.ai.entity.dto.chat.ChatHistoryDTO;
 import com.zg.ai.entity.dto.chat.ChatMessageDTO;
 import com.zg.ai.entity.dto.chat.ChatRequest;
 import com.zg.ai.service.ChatService;
+import com.zg.ai.sse.ChatStreamShaper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -24,12 +27,21 @@ import java.util.List;
 @RequestMapping("/ai")
 public class ChatController {
     private final ChatService chatService;
+    private final ChatStreamShaper chatStreamShaper;
 
     @Operation(summary = "开始聊天")
     @PostMapping(value = "/chat", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> chat(@RequestBody ChatRequest request) {
-        // 从请求体中获取参数并调用 AI 服务
-        return chatService.chat(request.getPrompt(), request.getChatId(), request.getUserId());
+    public Flux<ServerSentEvent<String>> chat(@RequestBody ChatRequest request,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            ServerWebExchange exchange) {
+        // 用户 ID 以认证过滤器从令牌中解析出的为准，忽略请求体中的值（检索范围按用户隔离）
+        request.setUserId(exchange.getAttribute("userId"));
+        // 断线重连时携带 Last-Event-ID，接回原生成从断点续传，不重新生成
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            return chatStreamShaper.resume(request.getChatId(), request.getUserId(), lastEventId);
+        }
+        // 从请求体中获取参数并调用 AI 服务，模型片段合并成帧后输出
+        return chatStreamShaper.shape(request.getChatId(), request.getUserId(), chatService.chat(request));
     }
 
     @Operation(summary = "创建会话")
@@ -0,0 +1,41 @@
+package com.zg.ai.entity.dto.chat;
+
+/**
+ * 聊天流中的一个片段：模型输出或排队状态
+ *
+ * @param type 片段类型
+ * @param text 片段内容
+ */
+public record ChatDelta(Type type, String text) {
+
+    public static ChatDelta answer(String text) {
+        return new ChatDelta(Type.ANSWER, text);
+    }
+
+    public static ChatDelta reasoning(String text) {
+        return new ChatDelta(Type.REASONING, text);
+    }
+
+    public static ChatDelta queued(int position) {
+        return new ChatDelta(Type.QUEUED, Integer.toString(position));
+    }
+
+    public boolean isAnswer() {
+        return type == Type.ANSWER;
+    }
+
+    public enum Type {
+        /**
+         * 回答正文
+         */
+        ANSWER,
+        /**
+         * 推理过程（deepseek-r1 的 <think> 段）
+         */
+        REASONING,
+        /**
+         * 等待模型槽位，内容为当前排队位置（从 1 开始）
+         */
+        QUEUED
+    }
+}
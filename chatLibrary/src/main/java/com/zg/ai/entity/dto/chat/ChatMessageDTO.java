@@ -9,4 +9,5 @@ import lombok.EqualsAndHashCode;
 public class ChatMessageDTO extends BaseDTO {
     private String messageType;
     private String content;
+    private String status;
 }
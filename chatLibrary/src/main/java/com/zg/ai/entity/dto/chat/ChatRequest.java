@@ -1,10 +1,28 @@
 package com.zg.ai.entity.dto.chat;
 
+import com.zg.ai.enums.ModelTier;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class ChatRequest {
     private String prompt;
     private String chatId;
+    /**
+     * 当前登录用户 ID：由服务端按令牌填充，请求体中的值被忽略
+     */
     private String userId;
+    /**
+     * 限定检索的文档ID（可选，为空时检索本人及共享文档）
+     */
+    private List<String> documentIds;
+    /**
+     * 是否在流中附带模型的推理过程（reasoning 事件），默认不附带
+     */
+    private boolean includeReasoning;
+    /**
+     * 模型档位提示（可选）：FAST 或 REASONING 时跳过路由规则，默认 AUTO
+     */
+    private ModelTier modelTier = ModelTier.AUTO;
 }
@@ -23,4 +23,9 @@ public class ChatMessage extends BaseEntity {
      * 消息内容
      */
     private String content;
+
+    /**
+     * 消息状态 (COMPLETED, CANCELLED)
+     */
+    private String status;
 }
\ No newline at end of file
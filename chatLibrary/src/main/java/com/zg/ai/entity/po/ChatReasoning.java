@@ -0,0 +1,31 @@
+package com.zg.ai.entity.po;
+
+import com.zg.ai.entity.po.base.BaseEntity;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+@Table("chat_message_reasoning")
+public class ChatReasoning extends BaseEntity {
+    /**
+     * 所属助手消息ID
+     */
+    private String messageId;
+
+    /**
+     * 会话ID
+     */
+    private String historyId;
+
+    /**
+     * gzip 压缩后的推理过程
+     */
+    private byte[] content;
+
+    /**
+     * 压缩前的字符数
+     */
+    private Integer originalLength;
+}
@@ -0,0 +1,33 @@
+package com.zg.ai.entity.po;
+
+import com.zg.ai.entity.po.base.BaseEntity;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+@Table("chat_summary")
+public class ChatSummary extends BaseEntity {
+    /**
+     * 会话ID
+     */
+    private String historyId;
+
+    /**
+     * 滚动摘要内容
+     */
+    private String summary;
+
+    /**
+     * 已并入摘要的最后一条消息的创建时间，之后的消息原样放入提示词
+     */
+    private LocalDateTime coveredUntil;
+
+    /**
+     * 已并入摘要的消息数
+     */
+    private Integer coveredMessages;
+}
@@ -0,0 +1,43 @@
+package com.zg.ai.entity.po;
+
+import com.zg.ai.entity.po.base.BaseEntity;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+@Table("ingestion_job")
+public class IngestionJob extends BaseEntity {
+    /**
+     * 待处理的文档ID
+     */
+    private String documentId;
+
+    /**
+     * 上传用户ID，用于按用户公平调度
+     */
+    private String userId;
+
+    /**
+     * 任务状态 (QUEUED, PROCESSING, COMPLETED, FAILED)
+     */
+    private String status;
+
+    /**
+     * 已开始执行的次数
+     */
+    private Integer attempts;
+
+    /**
+     * 失败后下次重试的时间
+     */
+    private LocalDateTime nextAttemptAt;
+
+    /**
+     * 最近一次失败的原因
+     */
+    private String lastError;
+}
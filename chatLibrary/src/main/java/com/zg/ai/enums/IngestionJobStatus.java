@@ -0,0 +1,26 @@
+package com.zg.ai.enums;
+
+/**
+ * 文档入库任务状态
+ */
+public enum IngestionJobStatus {
+    /**
+     * 排队等待执行（含失败后等待重试）
+     */
+    QUEUED,
+
+    /**
+     * 执行中；启动时仍处于此状态的任务视为被中断，重新排队
+     */
+    PROCESSING,
+
+    /**
+     * 执行结束（文档处理完成，或内容为空被标记为处理失败）
+     */
+    COMPLETED,
+
+    /**
+     * 重试次数用尽
+     */
+    FAILED
+}
@@ -0,0 +1,16 @@
+package com.zg.ai.enums;
+
+/**
+ * 聊天消息状态
+ */
+public enum MessageStatus {
+    /**
+     * 正常完成
+     */
+    COMPLETED,
+
+    /**
+     * 客户端断开，生成被取消，内容为部分回答
+     */
+    CANCELLED
+}
@@ -0,0 +1,21 @@
+package com.zg.ai.enums;
+
+/**
+ * 对话模型档位
+ */
+public enum ModelTier {
+    /**
+     * 由路由规则决定
+     */
+    AUTO,
+
+    /**
+     * 较小的非推理模型，用于寒暄和简单的事实查询
+     */
+    FAST,
+
+    /**
+     * 推理模型（默认对话模型），用于需要分析、推导的问题
+     */
+    REASONING
+}
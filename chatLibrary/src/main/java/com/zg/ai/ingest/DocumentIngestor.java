@@ -0,0 +1,268 @@
+package com.zg.ai.ingest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zg.ai.cache.RetrievalCache;
+import com.zg.ai.cache.SemanticAnswerCache;
+import com.zg.ai.common.DocumentMetadata;
+import com.zg.ai.config.properties.IngestionProperties;
+import com.zg.ai.entity.po.Document;
+import com.zg.ai.entity.po.DocumentChunk;
+import com.zg.ai.enums.DocumentStatus;
+import com.zg.ai.repository.DocumentChunkRepository;
+import com.zg.ai.repository.DocumentRepository;
+import com.zg.ai.repository.UserRepository;
+import com.zg.ai.search.LexicalIndex;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 文档入库：流式提取文本、分块，按批向量化并存储到向量库、词法索引及数据库，由入库队列的工作线程调用（阻塞执行）。
+ * 多个批次并行向量化，单批失败按退避重试；批次按顺序落库，数据库中已保存的分块即断点，
+ * 任务重试时重新解析、分块（结果确定），跳过断点之前的分块继续。
+ * 向量 ID 由文档 ID 与分块序号确定，重做的批次在向量库和词法索引中覆盖而不会重复
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DocumentIngestor {
+
+    private final VectorStore vectorStore;
+    private final DocumentRepository documentRepository;
+    private final DocumentChunkRepository documentChunkRepository;
+    private final UserRepository userRepository;
+    private final ObjectMapper objectMapper;
+    private final RetrievalCache retrievalCache;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final LexicalIndex lexicalIndex;
+    private final IngestionProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 处理文档；文档已被删除时直接返回。执行中文档被删除（cancelled 变为 true）时，在下一批存储前停止，
+     * 并清除本次已写入的分块
+     *
+     * @param retry     是否为重试（含启动时恢复被中断的任务），重试时从已保存的分块之后继续
+     * @param cancelled 文档是否已被删除
+     * @return 文档已删除（未入库）时返回 false
+     */
+    public boolean ingest(String documentId, boolean retry, BooleanSupplier cancelled) {
+        Document document = documentRepository.findById(documentId).block();
+        if (document == null) {
+            log.info("文档已删除，跳过入库: {}", documentId);
+            return false;
+        }
+        int checkpoint = retry ? storedChunks(documentId) : 0;
+        if (checkpoint > 0) {
+            log.info("文档 {} 从第 {} 个分块继续入库", documentId, checkpoint);
+        }
+
+        // 管理员上传的文档作为共享知识库，对所有用户可检索
+        boolean shared = isSharedOwner(document.getUserId());
+        Path file = Paths.get(document.getFilePath());
+        String source = file.getFileName().toString();
+        TokenTextSplitter splitter = new TokenTextSplitter();
+        long start = System.nanoTime();
+
+        // 1. 逐段提取文本（解析线程） -> 2. 逐段分块 -> 3. 按批并行向量化写入向量库 -> 4. 按顺序写入词法索引及数据库；
+        // 各阶段只预取有限的段/批，解析、向量化与存储并行进行，已存储的批次立即可检索
+        Integer stored;
+        try {
+            // 解析线程会阻塞在等待请求上，请求须直接送达而不能再排到该线程上执行
+            stored = SectionReader.read(file, properties.getSectionChars())
+                    .subscribeOn(Schedulers.boundedElastic(), false)
+                    .concatMapIterable(section -> splitter.apply(List.of(new org.springframework.ai.document.Document(
+                            section, Map.of(TikaDocumentReader.METADATA_SOURCE, source)))), 1)
+                    .filter(chunk -> chunk.getText() != null)
+                    .index()
+                    .filter(indexed -> indexed.getT1() >= checkpoint)
+                    .map(indexed -> toChunk(document, shared, indexed.getT1().intValue(), indexed.getT2()))
+                    .buffer(properties.getBatchSize())
+                    .flatMapSequential(this::embed, properties.getEmbeddingConcurrency(), 1)
+                    .concatMap(batch -> Mono.fromCallable(() -> {
+                        if (cancelled.getAsBoolean()) {
+                            throw new CancellationException("文档已删除");
+                        }
+                        return store(document, shared, batch);
+                    }).subscribeOn(Schedulers.boundedElastic()), 1)
+                    .reduce(checkpoint, Integer::sum)
+                    .block();
+        } catch (RuntimeException e) {
+            if (!cancelled.getAsBoolean()) {
+                throw e;
+            }
+            stored = null;
+        }
+        // 删除标记先于删除文档时的清理设置：存储某批后才看到标记时，由这里清除该批
+        if (cancelled.getAsBoolean()) {
+            log.info("文档 {} 在入库过程中被删除，停止入库并清除已写入的分块", documentId);
+            discard(documentId);
+            return false;
+        }
+        recordThroughput(documentId, stored == null ? 0 : stored - checkpoint, System.nanoTime() - start);
+
+        if (stored == null || stored == 0) {
+            updateStatus(document, DocumentStatus.FAILED);
+            return true;
+        }
+
+        // 4. 更新文档状态
+        document.setTotalChunks(stored);
+        updateStatus(document, DocumentStatus.PROCESSED);
+        return true;
+    }
+
+    // 构建分块的数据库记录及向量库文档
+    private PendingChunk toChunk(Document document, boolean shared, int index,
+            org.springframework.ai.document.Document chunk) {
+        DocumentChunk dbChunk = new DocumentChunk();
+        dbChunk.setDocumentId(document.getId());
+        dbChunk.setChunkIndex(index);
+        dbChunk.setContent(chunk.getText());
+        dbChunk.setTokenCount(chunk.getText().length());
+
+        Map<String, Object> metadata = chunk.getMetadata();
+        metadata.put(DocumentMetadata.ORIGINAL_FILENAME, document.getDocumentName());
+        metadata.put(DocumentMetadata.DOCUMENT_ID, document.getId());
+        metadata.put(DocumentMetadata.USER_ID, document.getUserId());
+        metadata.put(DocumentMetadata.SHARED, shared);
+        String vectorId = vectorIdOf(document.getId(), index);
+        metadata.put(DocumentMetadata.VECTOR_ID, vectorId);
+
+        try {
+            dbChunk.setMetadata(objectMapper.writeValueAsString(metadata));
+        } catch (JsonProcessingException e) {
+            log.error("文档分块元数据序列化失败", e);
+            dbChunk.setMetadata("{}");
+        }
+
+        // 构建 Spring AI 向量库文档对象
+        org.springframework.ai.document.Document docToStore = new org.springframework.ai.document.Document(
+                vectorId, chunk.getText(), metadata);
+        return new PendingChunk(dbChunk, docToStore);
+    }
+
+    // 分块的向量 ID：由文档与分块序号确定（UUID 格式，满足 Qdrant 的 ID 要求）
+    private static String vectorIdOf(String documentId, int index) {
+        return UUID.nameUUIDFromBytes((documentId + ":" + index).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    // 向量化一批分块并写入向量库（由向量库调用向量模型），失败时按退避重试
+    private Mono<List<PendingChunk>> embed(List<PendingChunk> batch) {
+        List<org.springframework.ai.document.Document> docsToStore = batch.stream()
+                .map(PendingChunk::document)
+                .toList();
+        Timer timer = meterRegistry.timer("ingestion.embedding.batch");
+        return Mono.fromRunnable(() -> timer.record(() -> vectorStore.add(docsToStore)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .retryWhen(Retry.backoff(properties.getBatchRetries(), properties.getBatchRetryBackoff())
+                        .doBeforeRetry(signal -> {
+                            meterRegistry.counter("ingestion.embedding.retries").increment();
+                            log.warn("分块批次向量化失败（第 {} 次重试）: {}", signal.totalRetries() + 1,
+                                    signal.failure().getMessage());
+                        })
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .thenReturn(batch);
+    }
+
+    // 按顺序保存一批已向量化的分块：先写词法索引，最后写数据库（数据库中的分块数即断点），返回分块数
+    private int store(Document document, boolean shared, List<PendingChunk> batch) {
+        lexicalIndex.addAll(batch.stream().map(PendingChunk::document).toList());
+        documentChunkRepository.saveAll(batch.stream().map(PendingChunk::row).toList()).collectList().block();
+        if (shared) {
+            retrievalCache.invalidateAll();
+        } else {
+            retrievalCache.invalidateUser(document.getUserId());
+        }
+        meterRegistry.counter("ingestion.embedding.chunks").increment(batch.size());
+        return batch.size();
+    }
+
+    // 本次执行向量化的分块数及吞吐量（分块/秒），用于评估向量模型服务的容量
+    private void recordThroughput(String documentId, int chunks, long nanos) {
+        if (chunks <= 0) {
+            return;
+        }
+        double perSecond = chunks / (nanos / 1e9);
+        DistributionSummary.builder("ingestion.embedding.throughput")
+                .description("每个文档入库时的向量化吞吐量")
+                .baseUnit("chunks/s")
+                .register(meterRegistry)
+                .record(perSecond);
+        log.info("文档 {} 入库 {} 个分块，耗时 {} ms（{} 分块/秒）", documentId, chunks, nanos / 1_000_000,
+                String.format("%.1f", perSecond));
+    }
+
+    /**
+     * 重试次数用尽，将文档标记为处理失败，并清除已写入的分块（含已写入向量库但未落库的批次）
+     */
+    public void markFailed(String documentId) {
+        Document document = documentRepository.findById(documentId).block();
+        if (document != null) {
+            discard(documentId);
+            updateStatus(document, DocumentStatus.FAILED);
+        }
+    }
+
+    // 清除文档已写入的全部分块（向量库、词法索引及数据库）
+    private void discard(String documentId) {
+        purge(documentId);
+        documentChunkRepository.deleteAll(documentChunkRepository.findByDocumentId(documentId)).block();
+    }
+
+    /**
+     * 按文档 ID 过滤删除向量库及词法索引中该文档的全部分块，并失效相关缓存；
+     * 并行向量化时后续批次可能先于失败批次写入向量库而没有数据库记录，因此不能只按数据库中的分块删除
+     */
+    public void purge(String documentId) {
+        vectorStore.delete(new FilterExpressionBuilder().eq(DocumentMetadata.DOCUMENT_ID, documentId).build());
+        lexicalIndex.removeDocument(documentId);
+        retrievalCache.invalidateDocument(documentId, List.of());
+        semanticAnswerCache.invalidateDocument(documentId, List.of());
+    }
+
+    // 已保存到数据库的分块数，即断点
+    private int storedChunks(String documentId) {
+        Long count = documentChunkRepository.countByDocumentId(documentId).block();
+        return count == null ? 0 : count.intValue();
+    }
+
+    // 判断文档所有者是否为管理员
+    private boolean isSharedOwner(String userId) {
+        if (userId == null) {
+            return false;
+        }
+        return Boolean.TRUE.equals(userRepository.findById(userId)
+                .map(user -> "ADMIN".equals(user.getRole()))
+                .block());
+    }
+
+    // 更新文档状态
+    private void updateStatus(Document document, DocumentStatus status) {
+        document.setStatus(status.getCode());
+        documentRepository.save(document).block();
+    }
+
+    private record PendingChunk(DocumentChunk row, org.springframework.ai.document.Document document) {
+    }
+}
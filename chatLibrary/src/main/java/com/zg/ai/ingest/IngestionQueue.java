@@ -0,0 +1,390 @@
+package com.zg.ai.ingest;
+
+import com.zg.ai.config.properties.IngestionProperties;
+import com.zg.ai.entity.po.Document;
+import com.zg.ai.entity.po.IngestionJob;
+import com.zg.ai.enums.IngestionJobStatus;
+import com.zg.ai.repository.DocumentRepository;
+import com.zg.ai.repository.IngestionJobRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文档入库队列：任务持久化在 ingestion_job 表中，由专用线程池（parallelism 个线程）执行，
+ * 排队的任务按用户轮询分配，单个用户批量上传不会阻塞其他用户的文档；失败后按指数退避重试，
+ * 次数用尽后将文档标记为处理失败；启动时重新排队上次未完成（含执行中被中断）的任务。
+ * 未完成的任务数达到上限时拒绝上传（429），由客户端稍后重试
+ */
+@Slf4j
+@Component
+public class IngestionQueue {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final IngestionJobRepository jobRepository;
+    private final DocumentRepository documentRepository;
+    private final DocumentIngestor ingestor;
+    private final IngestionProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Scheduler workers;
+    private final Timer queueWait;
+    private final Timer jobDuration;
+
+    // 按用户排队的就绪任务，及有就绪任务的用户（轮询顺序）
+    private final Map<String, ArrayDeque<Entry>> queues = new HashMap<>();
+    private final ArrayDeque<String> active = new ArrayDeque<>();
+    // 未完成的任务 ID（排队、等待重试及执行中），防止恢复时重复入队
+    private final Set<String> pending = new HashSet<>();
+    private final Map<String, Integer> pendingByUser = new HashMap<>();
+    // 未完成任务的文档 ID -> 任务 ID，及其中文档已被删除的（执行中的任务据此停止，工作线程无锁读取）
+    private final Map<String, String> pendingDocuments = new HashMap<>();
+    private final Set<String> cancelled = ConcurrentHashMap.newKeySet();
+    private int queued;
+    private int inFlight;
+
+    public IngestionQueue(IngestionJobRepository jobRepository, DocumentRepository documentRepository,
+            DocumentIngestor ingestor, IngestionProperties properties, MeterRegistry meterRegistry) {
+        this.jobRepository = jobRepository;
+        this.documentRepository = documentRepository;
+        this.ingestor = ingestor;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.workers = Schedulers.newBoundedElastic(properties.getParallelism(), Integer.MAX_VALUE, "ingestion");
+        this.queueWait = Timer.builder("ingestion.queue.wait")
+                .description("任务从就绪到开始执行的等待时间")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.jobDuration = Timer.builder("ingestion.job.duration")
+                .description("单次执行（解析、分块、向量化及存储）的耗时")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        meterRegistry.gauge("ingestion.queue.depth", this, queue -> queue.snapshot()[0]);
+        meterRegistry.gauge("ingestion.queue.in-flight", this, queue -> queue.snapshot()[1]);
+        meterRegistry.gauge("ingestion.queue.pending", this, queue -> queue.snapshot()[2]);
+    }
+
+    /**
+     * 上传前检查容量，队列已满时以 429 失败；并发上传可能使未完成任务数略超上限
+     */
+    public Mono<Void> checkCapacity(String userId) {
+        return Mono.defer(() -> {
+            String reason = rejectionReason(userId);
+            if (reason == null) {
+                return Mono.empty();
+            }
+            meterRegistry.counter("ingestion.rejected", "reason", reason).increment();
+            return Mono.error(new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                    "queue-full".equals(reason) ? "文档处理队列已满，请稍后再上传" : "当前用户待处理的文档过多，请稍后再上传"));
+        });
+    }
+
+    /**
+     * 为已保存的文档创建入库任务；在事务中调用时任务于提交后才排队，
+     * 避免工作线程读到未提交的文档，或事务回滚后仍执行任务
+     */
+    public Mono<IngestionJob> submit(Document document) {
+        return jobRepository.save(newJob(document))
+                .flatMap(job -> TransactionSynchronizationManager.forCurrentTransaction()
+                        .filter(TransactionSynchronizationManager::isSynchronizationActive)
+                        .doOnNext(synchronization -> synchronization.registerSynchronization(
+                                new TransactionSynchronization() {
+                                    @Override
+                                    public Mono<Void> afterCommit() {
+                                        return Mono.fromRunnable(() -> enqueue(job));
+                                    }
+                                }))
+                        .onErrorResume(NoTransactionException.class, e -> Mono.empty())
+                        .switchIfEmpty(Mono.fromRunnable(() -> enqueue(job)))
+                        .thenReturn(job));
+    }
+
+    private void enqueue(IngestionJob job) {
+        if (admit(job)) {
+            ready(job);
+        }
+    }
+
+    /**
+     * 启动时恢复：为处理中却没有任务的文档补建任务，再将未完成的任务重新排队
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        documentRepository.findProcessingWithoutJob()
+                .flatMap(document -> jobRepository.save(newJob(document)))
+                .thenMany(jobRepository.findByStatusInOrderByCreateAtAsc(
+                        List.of(IngestionJobStatus.QUEUED.name(), IngestionJobStatus.PROCESSING.name())))
+                .concatMap(job -> isExhausted(job) ? abandon(job).then(Mono.<IngestionJob>empty()) : Mono.just(job))
+                .filter(this::admit)
+                .collectList()
+                .subscribe(jobs -> {
+                    if (!jobs.isEmpty()) {
+                        log.info("恢复 {} 个未完成的文档入库任务", jobs.size());
+                    }
+                    for (IngestionJob job : jobs) {
+                        if (IngestionJobStatus.PROCESSING.name().equals(job.getStatus())) {
+                            log.warn("文档 {} 的入库任务在上次运行时被中断，重新排队", job.getDocumentId());
+                        }
+                        LocalDateTime next = job.getNextAttemptAt();
+                        Duration delay = next == null ? Duration.ZERO : Duration.between(LocalDateTime.now(), next);
+                        retryAfter(job, delay.isNegative() ? Duration.ZERO : delay);
+                    }
+                }, e -> log.error("恢复文档入库任务失败", e));
+    }
+
+    // 最后一次执行被中断（如解析该文件导致进程崩溃），不再重试，避免每次启动都重复崩溃
+    private boolean isExhausted(IngestionJob job) {
+        return IngestionJobStatus.PROCESSING.name().equals(job.getStatus())
+                && job.getAttempts() != null && job.getAttempts() >= properties.getMaxAttempts();
+    }
+
+    private Mono<Void> abandon(IngestionJob job) {
+        log.error("文档 {} 的入库任务已执行 {} 次且最后一次被中断，标记为失败", job.getDocumentId(), job.getAttempts());
+        meterRegistry.counter("ingestion.job", "result", "failed").increment();
+        job.setStatus(IngestionJobStatus.FAILED.name());
+        job.setLastError("执行被中断");
+        return jobRepository.save(job)
+                .then(Mono.fromRunnable(() -> ingestor.markFailed(job.getDocumentId())).subscribeOn(workers))
+                .then();
+    }
+
+    /**
+     * 文档删除时取消其入库任务：排队中的任务直接移除；等待重试的任务在就绪时丢弃；
+     * 执行中的任务在下一批存储前停止，并清除已写入的分块
+     */
+    public void cancel(String documentId) {
+        synchronized (this) {
+            if (!pendingDocuments.containsKey(documentId)) {
+                return;
+            }
+            cancelled.add(documentId);
+            for (Iterator<Map.Entry<String, ArrayDeque<Entry>>> it = queues.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, ArrayDeque<Entry>> user = it.next();
+                Iterator<Entry> entries = user.getValue().iterator();
+                while (entries.hasNext()) {
+                    IngestionJob job = entries.next().job;
+                    if (documentId.equals(job.getDocumentId())) {
+                        entries.remove();
+                        queued--;
+                        finish(job);
+                    }
+                }
+                if (user.getValue().isEmpty()) {
+                    it.remove();
+                    active.remove(user.getKey());
+                }
+            }
+        }
+        meterRegistry.counter("ingestion.job", "result", "cancelled").increment();
+    }
+
+    private IngestionJob newJob(Document document) {
+        IngestionJob job = new IngestionJob();
+        job.setDocumentId(document.getId());
+        job.setUserId(document.getUserId());
+        job.setStatus(IngestionJobStatus.QUEUED.name());
+        job.setAttempts(0);
+        return job;
+    }
+
+    private synchronized String rejectionReason(String userId) {
+        if (pending.size() >= properties.getMaxQueued()) {
+            return "queue-full";
+        }
+        if (pendingByUser.getOrDefault(userKey(userId), 0) >= properties.getMaxQueuedPerUser()) {
+            return "user-queue-full";
+        }
+        return null;
+    }
+
+    // 记为未完成；已在队列中的任务返回 false
+    private synchronized boolean admit(IngestionJob job) {
+        if (!pending.add(job.getId())) {
+            return false;
+        }
+        pendingByUser.merge(userKey(job.getUserId()), 1, Integer::sum);
+        pendingDocuments.put(job.getDocumentId(), job.getId());
+        return true;
+    }
+
+    // 任务就绪：加入所属用户的队列并尝试分配工作线程
+    private void ready(IngestionJob job) {
+        List<Entry> started;
+        synchronized (this) {
+            if (cancelled.contains(job.getDocumentId())) {
+                // 等待重试期间文档已被删除
+                finish(job);
+                return;
+            }
+            String user = userKey(job.getUserId());
+            ArrayDeque<Entry> queue = queues.get(user);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(user, queue);
+                active.addLast(user);
+            }
+            queue.addLast(new Entry(job, System.nanoTime()));
+            queued++;
+            started = dispatch();
+        }
+        started.forEach(this::run);
+    }
+
+    // 按用户轮询取出就绪任务，直到工作线程占满
+    private List<Entry> dispatch() {
+        List<Entry> started = new ArrayList<>();
+        while (inFlight < properties.getParallelism() && !active.isEmpty()) {
+            String user = active.pollFirst();
+            ArrayDeque<Entry> queue = queues.get(user);
+            started.add(queue.pollFirst());
+            queued--;
+            inFlight++;
+            if (queue.isEmpty()) {
+                queues.remove(user);
+            } else {
+                active.addLast(user);
+            }
+        }
+        return started;
+    }
+
+    private void run(Entry entry) {
+        IngestionJob job = entry.job;
+        queueWait.record(System.nanoTime() - entry.readyAt, TimeUnit.NANOSECONDS);
+        job.setStatus(IngestionJobStatus.PROCESSING.name());
+        job.setAttempts(job.getAttempts() == null ? 1 : job.getAttempts() + 1);
+        job.setNextAttemptAt(null);
+        long start = System.nanoTime();
+        String documentId = job.getDocumentId();
+        jobRepository.save(job)
+                .then(Mono.fromCallable(() -> ingestor.ingest(documentId, job.getAttempts() > 1,
+                                () -> cancelled.contains(documentId)))
+                        .subscribeOn(workers))
+                .flatMap(ingested -> {
+                    if (!ingested || cancelled.contains(documentId)) {
+                        // 文档已删除（含入库完成后、保存状态前删除），任务记录随之删除，无需保存状态
+                        log.info("文档 {} 已删除，入库任务结束", documentId);
+                        return Mono.empty();
+                    }
+                    job.setStatus(IngestionJobStatus.COMPLETED.name());
+                    job.setLastError(null);
+                    return jobRepository.save(job).doOnSuccess(saved -> {
+                        jobDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        meterRegistry.counter("ingestion.job", "result", "completed").increment();
+                        log.info("文档 {} 入库完成，第 {} 次执行", documentId, job.getAttempts());
+                    });
+                })
+                .then(Mono.<Duration>empty())
+                .onErrorResume(e -> failed(job, e))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .subscribe(retry -> {
+                    release(job, retry.isEmpty());
+                    retry.ifPresent(delay -> retryAfter(job, delay));
+                }, e -> {
+                    // 状态未能保存：任务在库中保持 PROCESSING，下次启动时恢复
+                    log.error("文档入库任务状态保存失败: {}", job.getId(), e);
+                    release(job, true);
+                });
+    }
+
+    // 执行失败：未到次数上限时保存重试时间并返回退避时长，否则将任务及文档标记为失败
+    private Mono<Duration> failed(IngestionJob job, Throwable e) {
+        String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        job.setLastError(error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        if (job.getAttempts() < properties.getMaxAttempts()) {
+            Duration delay = backoff(job.getAttempts());
+            log.warn("文档 {} 入库失败（第 {} 次），{} 后重试: {}", job.getDocumentId(), job.getAttempts(), delay,
+                    e.getMessage());
+            meterRegistry.counter("ingestion.job", "result", "retried").increment();
+            job.setStatus(IngestionJobStatus.QUEUED.name());
+            job.setNextAttemptAt(LocalDateTime.now().plus(delay));
+            return jobRepository.save(job).thenReturn(delay);
+        }
+        log.error("文档 {} 入库失败，已达最大重试次数 {}", job.getDocumentId(), job.getAttempts(), e);
+        meterRegistry.counter("ingestion.job", "result", "failed").increment();
+        job.setStatus(IngestionJobStatus.FAILED.name());
+        return jobRepository.save(job)
+                .then(Mono.fromRunnable(() -> ingestor.markFailed(job.getDocumentId())).subscribeOn(workers))
+                .then(Mono.empty());
+    }
+
+    private Duration backoff(int attempts) {
+        Duration delay = properties.getInitialBackoff().multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(properties.getMaxBackoff()) > 0 ? properties.getMaxBackoff() : delay;
+    }
+
+    private void retryAfter(IngestionJob job, Duration delay) {
+        if (delay.isZero()) {
+            ready(job);
+            return;
+        }
+        Mono.delay(delay).subscribe(tick -> ready(job));
+    }
+
+    // 释放工作线程；finished 表示任务结束（不再重试），不再计入未完成数
+    private void release(IngestionJob job, boolean finished) {
+        List<Entry> started;
+        synchronized (this) {
+            inFlight--;
+            if (finished) {
+                finish(job);
+            }
+            started = dispatch();
+        }
+        started.forEach(this::run);
+    }
+
+    // 任务结束，不再计入未完成数（调用方持有锁）
+    private void finish(IngestionJob job) {
+        pending.remove(job.getId());
+        pendingByUser.computeIfPresent(userKey(job.getUserId()), (user, count) -> count > 1 ? count - 1 : null);
+        if (pendingDocuments.remove(job.getDocumentId(), job.getId())) {
+            cancelled.remove(job.getDocumentId());
+        }
+    }
+
+    private static String userKey(String userId) {
+        return userId == null ? "" : userId;
+    }
+
+    // [就绪排队数, 执行中数, 未完成数]
+    private synchronized int[] snapshot() {
+        return new int[]{queued, inFlight, pending.size()};
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 执行中的任务在库中保持 PROCESSING，下次启动时恢复
+        workers.dispose();
+    }
+
+    private record Entry(IngestionJob job, long readyAt) {
+    }
+}
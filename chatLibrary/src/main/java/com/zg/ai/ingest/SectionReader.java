@@ -0,0 +1,153 @@
+package com.zg.ai.ingest;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.sax.BodyContentHandler;
+import org.springframework.ai.reader.ExtractedTextFormatter;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Operators;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * 流式文本提取：Tika 解析时在块级元素（PDF 的页、PPT 的幻灯片、段落、表格行等）结束处把文本切成不小于 sectionChars 的段，
+ * 逐段发出；解析线程在下游未请求时阻塞，内存中只保留当前段，与文件大小无关
+ */
+final class SectionReader {
+
+    // 块级元素（PDF 每页、PPT 每张幻灯片均为 div），段已足够长时在其结束处切分
+    private static final Set<String> BLOCK_ELEMENTS = Set.of("p", "div", "li", "tr", "table", "pre",
+            "h1", "h2", "h3", "h4", "h5", "h6");
+
+    private SectionReader() {
+    }
+
+    /**
+     * 在订阅线程上解析文件，逐段发出格式化后的文本（已跳过空白段）；
+     * 解析线程等待请求时会阻塞，因此须以 {@code subscribeOn(scheduler, false)} 订阅，否则后续请求被排到该线程上而死锁
+     */
+    static Flux<String> read(Path file, int sectionChars) {
+        ExtractedTextFormatter formatter = ExtractedTextFormatter.defaults();
+        return Flux.create(sink -> {
+            Demand demand = new Demand();
+            sink.onRequest(demand::add);
+            sink.onDispose(demand::cancel);
+            SectionHandler handler = new SectionHandler(sectionChars, section -> {
+                String text = formatter.format(section);
+                if (!text.isBlank()) {
+                    demand.take();
+                    sink.next(text);
+                }
+            });
+            try (InputStream in = Files.newInputStream(file)) {
+                new AutoDetectParser().parse(in, new BodyContentHandler(handler), new Metadata(), new ParseContext());
+                handler.flush();
+                sink.complete();
+            } catch (Exception e) {
+                // 下游取消时 take 抛出 Cancelled 中止解析（可能被 Tika 包装），不再上报
+                if (!sink.isCancelled()) {
+                    sink.error(e);
+                }
+            }
+        }, FluxSink.OverflowStrategy.ERROR);
+    }
+
+    /**
+     * 下游请求数；解析线程取不到请求时等待
+     */
+    private static final class Demand {
+        private long requested;
+        private boolean cancelled;
+
+        synchronized void add(long n) {
+            requested = Operators.addCap(requested, n);
+            notifyAll();
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            notifyAll();
+        }
+
+        synchronized void take() {
+            try {
+                while (requested == 0 && !cancelled) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Exceptions.propagate(e);
+            }
+            if (cancelled) {
+                throw new Cancelled();
+            }
+            if (requested != Long.MAX_VALUE) {
+                requested--;
+            }
+        }
+    }
+
+    private static final class Cancelled extends RuntimeException {
+        Cancelled() {
+            super(null, null, false, false);
+        }
+    }
+
+    private interface SectionConsumer {
+        void accept(String section);
+    }
+
+    /**
+     * 累积正文文本，块级元素结束且已达 sectionChars 时发出；超长的单个段落在 2 倍 sectionChars 处按换行切分
+     */
+    private static final class SectionHandler extends DefaultHandler {
+        private final int sectionChars;
+        private final SectionConsumer consumer;
+        private final StringBuilder buffer = new StringBuilder();
+
+        SectionHandler(int sectionChars, SectionConsumer consumer) {
+            this.sectionChars = sectionChars;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (BLOCK_ELEMENTS.contains(localName) && buffer.length() >= sectionChars) {
+                flush();
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            buffer.append(ch, start, length);
+            if (buffer.length() >= 2 * sectionChars) {
+                int cut = buffer.lastIndexOf("\n");
+                cut = cut < sectionChars ? buffer.length() : cut + 1;
+                String section = buffer.substring(0, cut);
+                buffer.delete(0, cut);
+                consumer.accept(section);
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            characters(ch, start, length);
+        }
+
+        void flush() {
+            if (!buffer.isEmpty()) {
+                String section = buffer.toString();
+                buffer.setLength(0);
+                consumer.accept(section);
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.zg.ai.llm;
+
+import com.zg.ai.cache.EmbeddingCache;
+import com.zg.ai.config.properties.EmbeddingProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 应用使用的向量模型（检索、文档入库及语义缓存都经由这里）：先查持久化向量缓存，
+ * 未命中的单条查询在 batchWindow 内攒批，相同文本只算一次，合并为一次批量调用；
+ * 入库等本身已分批的多条请求直接发出；结果写回缓存
+ */
+@Slf4j
+@Primary
+@Component
+public class BatchingEmbeddingModel implements EmbeddingModel {
+
+    private final PooledEmbeddingModel delegate;
+    private final EmbeddingCache cache;
+    private final EmbeddingProperties properties;
+    private final String defaultModel;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary batchSize;
+    // 已提交、尚未得到结果的查询；攒批管道异常终止时立即以失败结束，不让调用方等到超时
+    private final Set<Pending> outstanding = ConcurrentHashMap.newKeySet();
+    private volatile Sinks.Many<Pending> queue;
+    private volatile Disposable batches;
+    private volatile boolean closed;
+
+    public BatchingEmbeddingModel(PooledEmbeddingModel delegate, EmbeddingCache cache,
+            EmbeddingProperties properties, OllamaBackendPool pool, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.properties = properties;
+        this.defaultModel = pool.getEmbeddingModel();
+        this.meterRegistry = meterRegistry;
+        this.batchSize = DistributionSummary.builder("embedding.batch.size")
+                .description("每次合并调用包含的不同文本数")
+                .register(meterRegistry);
+        start();
+    }
+
+    // 建立攒批管道：bufferTimeout 使用公平背压，并发批次已满时窗口到期也不会溢出，而是等待下游请求；
+    // 管道仍因意外错误终止时，让滞留的查询失败并重建管道
+    private synchronized void start() {
+        if (closed) {
+            return;
+        }
+        Sinks.Many<Pending> sink = Sinks.many().unicast().onBackpressureBuffer();
+        queue = sink;
+        batches = sink.asFlux()
+                .bufferTimeout(properties.getMaxBatchSize(), properties.getBatchWindow(), true)
+                .flatMap(batch -> Mono.fromRunnable(() -> flush(batch)).subscribeOn(Schedulers.boundedElastic()),
+                        properties.getMaxConcurrentBatches())
+                .subscribe(null, e -> {
+                    log.error("查询向量攒批管道异常终止，重建管道", e);
+                    meterRegistry.counter("embedding.batch.restarts").increment();
+                    failOutstanding(e);
+                    start();
+                });
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        String model = modelOf(request.getOptions());
+        float[][] vectors = new float[texts.size()][];
+        byte[][] keys = new byte[texts.size()][];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            if (cache.isEnabled()) {
+                keys[i] = EmbeddingCache.keyOf(model, texts.get(i));
+                vectors[i] = cache.get(keys[i]);
+            }
+            if (vectors[i] == null) {
+                missing.add(i);
+            }
+        }
+        if (missing.size() == 1 && model.equals(defaultModel)) {
+            int index = missing.get(0);
+            vectors[index] = await(submit(texts.get(index)));
+            meterRegistry.counter("embedding.requests", "mode", "batched").increment();
+        } else if (!missing.isEmpty()) {
+            List<String> missingTexts = missing.stream().map(texts::get).toList();
+            List<Embedding> results = delegate.call(new EmbeddingRequest(missingTexts, request.getOptions()))
+                    .getResults();
+            for (int i = 0; i < missing.size(); i++) {
+                vectors[missing.get(i)] = results.get(i).getOutput();
+            }
+            meterRegistry.counter("embedding.requests", "mode", "direct").increment();
+        }
+        for (int index : missing) {
+            if (keys[index] != null) {
+                cache.put(keys[index], vectors[index]);
+            }
+        }
+        List<Embedding> embeddings = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings.add(new Embedding(vectors[i], i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    private CompletableFuture<float[]> submit(String text) {
+        Pending pending = new Pending(text, new CompletableFuture<>());
+        if (closed) {
+            pending.result().completeExceptionally(new IllegalStateException("向量模型已关闭"));
+            return pending.result();
+        }
+        outstanding.add(pending);
+        pending.result().whenComplete((vector, e) -> outstanding.remove(pending));
+        Sinks.EmitResult result;
+        while ((result = queue.tryEmitNext(pending)) == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+            Thread.onSpinWait();
+        }
+        if (result.isFailure()) {
+            // 管道已终止（正在重建或已关闭）：立即失败，不等到超时
+            pending.result().completeExceptionally(new IllegalStateException("查询向量攒批管道不可用: " + result));
+        }
+        return pending.result();
+    }
+
+    private void failOutstanding(Throwable cause) {
+        for (Pending pending : List.copyOf(outstanding)) {
+            pending.result().completeExceptionally(cause);
+        }
+    }
+
+    // 一批内相同文本只计算一次
+    private void flush(List<Pending> batch) {
+        Map<String, List<CompletableFuture<float[]>>> byText = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            byText.computeIfAbsent(pending.text(), text -> new ArrayList<>()).add(pending.result());
+        }
+        List<String> texts = List.copyOf(byText.keySet());
+        batchSize.record(texts.size());
+        try {
+            List<Embedding> results = delegate.call(new EmbeddingRequest(texts, EmbeddingOptions.builder().build()))
+                    .getResults();
+            for (int i = 0; i < texts.size(); i++) {
+                float[] vector = results.get(i).getOutput();
+                byText.get(texts.get(i)).forEach(future -> future.complete(vector));
+            }
+        } catch (RuntimeException e) {
+            log.warn("批量计算 {} 条查询向量失败: {}", texts.size(), e.getMessage());
+            byText.values().forEach(futures -> futures.forEach(future -> future.completeExceptionally(e)));
+        }
+    }
+
+    private float[] await(CompletableFuture<float[]> future) {
+        try {
+            return future.get(properties.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("等待查询向量超时", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String modelOf(EmbeddingOptions options) {
+        return options == null || options.getModel() == null ? defaultModel : options.getModel();
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        closed = true;
+        batches.dispose();
+        failOutstanding(new IllegalStateException("向量模型已关闭"));
+    }
+
+    private record Pending(String text, CompletableFuture<float[]> result) {
+    }
+}
@@ -0,0 +1,75 @@
+package com.zg.ai.llm;
+
+import com.zg.ai.config.properties.OllamaProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 按会话选择 Ollama 实例：同一会话优先路由到同一实例，使其上一轮留下的 KV 缓存可以被复用；
+ * 使用最高随机权重（rendezvous）哈希，增减或摘除实例时只有落在该实例上的会话会迁移；
+ * 亲和实例的负载明显高于最空闲实例时改发最空闲实例（进行中请求数最少，优先已加载模型的实例）
+ */
+@Component
+public class ChatClientRouter {
+
+    private final OllamaBackendPool pool;
+    private final int affinitySlack;
+    private final Counter affinityBroken;
+
+    public ChatClientRouter(OllamaBackendPool pool, OllamaProperties properties,
+            MeterRegistry meterRegistry) {
+        this.pool = pool;
+        this.affinitySlack = properties.getAffinitySlack();
+        this.affinityBroken = meterRegistry.counter("ollama.backend.affinity.broken");
+    }
+
+    /**
+     * 在选出的实例上执行一次流式调用，计入该实例的进行中请求数及失败数
+     *
+     * @param model 本次使用的模型，未加载该模型的实例负载较高
+     */
+    public <T> Flux<T> stream(String conversationId, String model, Function<ChatClient, Flux<T>> call) {
+        return Flux.defer(() -> {
+            OllamaBackend backend = select(conversationId, model);
+            return backend.track(call.apply(backend.getChatClient()));
+        });
+    }
+
+    OllamaBackend select(String conversationId, String model) {
+        List<OllamaBackend> candidates = pool.available();
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        OllamaBackend preferred = null;
+        long best = Long.MIN_VALUE;
+        for (OllamaBackend backend : candidates) {
+            long weight = mix(backend.getBaseUrl().hashCode() * 31L + conversationId.hashCode());
+            if (preferred == null || weight > best) {
+                preferred = backend;
+                best = weight;
+            }
+        }
+        OllamaBackend least = candidates.stream()
+                .min(Comparator.comparingInt(backend -> pool.load(backend, model)))
+                .orElse(preferred);
+        if (pool.load(preferred, model) - pool.load(least, model) > affinitySlack) {
+            affinityBroken.increment();
+            return least;
+        }
+        return preferred;
+    }
+
+    // SplitMix64 终结函数，打散 hashCode 的分布
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
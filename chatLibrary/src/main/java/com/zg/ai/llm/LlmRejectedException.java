@@ -0,0 +1,20 @@
+package com.zg.ai.llm;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 模型请求排队已满，携带建议的重试等待时间
+ */
+@Getter
+public class LlmRejectedException extends RejectedExecutionException {
+
+    private final Duration retryAfter;
+
+    public LlmRejectedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,289 @@
+package com.zg.ai.llm;
+
+import com.zg.ai.config.properties.SchedulerProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * 模型请求调度：全局并发数不超过后端并行槽位，槽位占满时按用户排队，
+ * 以亏空轮询（DRR，开销为提示词 token 数）在用户之间分配空出的槽位，单个用户的大量请求不会挤占其他用户；
+ * 排队期间向调用方推送排队位置，排队超过上限时拒绝并给出建议的重试等待时间
+ */
+@Slf4j
+@Component
+public class LlmScheduler {
+
+    private final SchedulerProperties properties;
+    private final Map<String, UserQueue> queues = new HashMap<>();
+    // 有排队请求的用户，按轮询顺序排列
+    private final ArrayDeque<UserQueue> active = new ArrayDeque<>();
+    private final Timer queueWait;
+    private final Timer slotHold;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedUserQueueFull;
+
+    private int inFlight;
+    private int queued;
+
+    public LlmScheduler(SchedulerProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.queueWait = Timer.builder("chat.scheduler.queue.wait")
+                .description("请求在调度队列中等待槽位的时间")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.slotHold = Timer.builder("chat.scheduler.slot.hold")
+                .description("每次生成占用槽位的时间")
+                .register(meterRegistry);
+        this.rejectedQueueFull = meterRegistry.counter("chat.scheduler.rejected", "reason", "queue-full");
+        this.rejectedUserQueueFull = meterRegistry.counter("chat.scheduler.rejected", "reason", "user-queue-full");
+        meterRegistry.gauge("chat.scheduler.slots.in-use", this, scheduler -> scheduler.snapshot()[0]);
+        meterRegistry.gauge("chat.scheduler.slots.utilization", this,
+                scheduler -> (double) scheduler.snapshot()[0] / properties.getMaxConcurrent());
+        meterRegistry.gauge("chat.scheduler.queued", this, scheduler -> scheduler.snapshot()[1]);
+    }
+
+    /**
+     * 在槽位内执行一次生成；需要排队时先以 positionEvent 发出排队位置（从 1 开始，前移时更新），
+     * 获得槽位后再订阅 work，生成结束或取消时释放槽位；排队已满时以 LlmRejectedException 失败
+     *
+     * @param cost 本次请求的开销（提示词 token 数），用于用户之间按量公平分配
+     */
+    public <T> Flux<T> schedule(String userId, int cost, Supplier<Flux<T>> work, IntFunction<T> positionEvent) {
+        if (!properties.isEnabled()) {
+            return Flux.defer(work);
+        }
+        return Flux.defer(() -> {
+            Ticket ticket = new Ticket(userId == null ? "" : userId, Math.max(1, cost));
+            notify(enqueue(ticket));
+            return Flux.concat(ticket.positions.asFlux().map(positionEvent::apply), Flux.defer(() -> {
+                        ticket.start();
+                        return work.get();
+                    }))
+                    .doFinally(signal -> notify(release(ticket)));
+        });
+    }
+
+    private synchronized Update enqueue(Ticket ticket) {
+        UserQueue queue = queues.get(ticket.userId);
+        if (inFlight < properties.getMaxConcurrent() && queued == 0) {
+            grant(ticket);
+            return new Update(List.of(ticket), List.of());
+        }
+        if (queued >= properties.getMaxQueued()) {
+            rejectedQueueFull.increment();
+            throw new LlmRejectedException("模型请求排队已满，请稍后重试", retryAfter());
+        }
+        if (queue != null && queue.tickets.size() >= properties.getMaxQueuedPerUser()) {
+            rejectedUserQueueFull.increment();
+            throw new LlmRejectedException("当前用户排队的请求过多，请稍后重试", retryAfter());
+        }
+        if (queue == null) {
+            queue = new UserQueue(ticket.userId);
+            queues.put(ticket.userId, queue);
+            active.addLast(queue);
+        }
+        queue.tickets.addLast(ticket);
+        queued++;
+        return new Update(List.of(), waiting());
+    }
+
+    // 生成结束、取消或排队中放弃时调用；释放槽位后按 DRR 分配给排队的请求
+    private synchronized Update release(Ticket ticket) {
+        switch (ticket.state) {
+            case WAITING -> {
+                UserQueue queue = queues.get(ticket.userId);
+                queue.tickets.remove(ticket);
+                queued--;
+                if (queue.tickets.isEmpty()) {
+                    removeUser(queue);
+                }
+            }
+            case GRANTED, RUNNING -> {
+                inFlight--;
+                if (ticket.state == State.RUNNING) {
+                    slotHold.record(System.nanoTime() - ticket.startedAt, TimeUnit.NANOSECONDS);
+                }
+            }
+            case DONE -> {
+                return new Update(List.of(), List.of());
+            }
+        }
+        ticket.state = State.DONE;
+        List<Ticket> granted = new ArrayList<>();
+        dispatch(granted);
+        return new Update(granted, waiting());
+    }
+
+    private void dispatch(List<Ticket> granted) {
+        while (inFlight < properties.getMaxConcurrent() && !active.isEmpty()) {
+            UserQueue queue = active.peekFirst();
+            Ticket head = queue.tickets.peekFirst();
+            if (queue.deficit < head.cost) {
+                // 额度不足时补一轮额度并轮到下一个用户
+                queue.deficit += properties.getQuantum();
+                active.addLast(active.pollFirst());
+                continue;
+            }
+            queue.deficit -= head.cost;
+            queue.tickets.pollFirst();
+            queued--;
+            if (queue.tickets.isEmpty()) {
+                removeUser(queue);
+            }
+            grant(head);
+            granted.add(head);
+        }
+    }
+
+    private void grant(Ticket ticket) {
+        inFlight++;
+        ticket.state = State.GRANTED;
+        queueWait.record(System.nanoTime() - ticket.enqueuedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private void removeUser(UserQueue queue) {
+        active.remove(queue);
+        queues.remove(queue.userId);
+    }
+
+    // 按轮询顺序复制排队中的请求及各用户额度，排队位置在锁外据此计算
+    private List<Waiting> waiting() {
+        if (queued == 0) {
+            return List.of();
+        }
+        List<Waiting> users = new ArrayList<>(active.size());
+        for (UserQueue queue : active) {
+            users.add(new Waiting(queue.deficit, queue.tickets.toArray(new Ticket[0])));
+        }
+        return users;
+    }
+
+    // 在锁外推送获得槽位的通知（结束排队位置流，随后开始生成），再按快照模拟 DRR 分配顺序推送排队位置
+    private void notify(Update update) {
+        for (Ticket ticket : update.granted) {
+            ticket.positions.emitComplete(Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+        }
+        if (update.waiting.isEmpty()) {
+            return;
+        }
+        ArrayDeque<Simulated> order = new ArrayDeque<>();
+        for (Waiting user : update.waiting) {
+            order.addLast(new Simulated(user));
+        }
+        int position = 0;
+        while (!order.isEmpty()) {
+            Simulated user = order.peekFirst();
+            if (user.deficit < user.head().cost) {
+                user.deficit += properties.getQuantum();
+                order.addLast(order.pollFirst());
+                continue;
+            }
+            user.deficit -= user.head().cost;
+            user.head().offerPosition(++position);
+            if (!user.advance()) {
+                order.pollFirst();
+            }
+        }
+    }
+
+    // 按排队请求数及平均占用时间估算重试等待时间
+    private Duration retryAfter() {
+        double holdSeconds = Math.max(1, slotHold.mean(TimeUnit.SECONDS));
+        long seconds = (long) Math.ceil((queued + 1) * holdSeconds / properties.getMaxConcurrent());
+        return Duration.ofSeconds(Math.max(1, seconds));
+    }
+
+    private synchronized int[] snapshot() {
+        return new int[]{inFlight, queued};
+    }
+
+    private enum State {
+        WAITING, GRANTED, RUNNING, DONE
+    }
+
+    private static final class UserQueue {
+        private final String userId;
+        private final ArrayDeque<Ticket> tickets = new ArrayDeque<>();
+        private long deficit;
+
+        private UserQueue(String userId) {
+            this.userId = userId;
+        }
+    }
+
+    // 一次更新中获得槽位的请求，及更新后排队中各用户的快照
+    private record Update(List<Ticket> granted, List<Waiting> waiting) {
+    }
+
+    private record Waiting(long deficit, Ticket[] tickets) {
+    }
+
+    private static final class Simulated {
+        private final Ticket[] tickets;
+        private long deficit;
+        private int next;
+
+        private Simulated(Waiting user) {
+            this.tickets = user.tickets();
+            this.deficit = user.deficit();
+        }
+
+        private Ticket head() {
+            return tickets[next];
+        }
+
+        private boolean advance() {
+            return ++next < tickets.length;
+        }
+    }
+
+    private final class Ticket {
+        private final String userId;
+        private final int cost;
+        private final long enqueuedAt = System.nanoTime();
+        private final Sinks.Many<Integer> positions = Sinks.many().replay().latest();
+        private State state = State.WAITING;
+        private int position;
+        private long startedAt;
+
+        private Ticket(String userId, int cost) {
+            this.userId = userId;
+            this.cost = cost;
+        }
+
+        private void start() {
+            synchronized (LlmScheduler.this) {
+                if (state == State.GRANTED) {
+                    state = State.RUNNING;
+                    startedAt = System.nanoTime();
+                }
+            }
+        }
+
+        /**
+         * 推送排队位置：只在位置前移时推送，之后新到的请求在 DRR 顺序中插到前面时不会让已显示的位置后退；
+         * 已获得槽位的请求位置流已结束，推送失败即忽略
+         */
+        private synchronized void offerPosition(int latest) {
+            if (position == 0 || latest < position) {
+                position = latest;
+                positions.tryEmitNext(latest);
+            }
+        }
+    }
+}
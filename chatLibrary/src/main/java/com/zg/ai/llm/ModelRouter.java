@@ -0,0 +1,121 @@
+package com.zg.ai.llm;
+
+import com.zg.ai.config.properties.ChatProperties;
+import com.zg.ai.context.PackedContext;
+import com.zg.ai.enums.ModelTier;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.model.ollama.autoconfigure.OllamaChatProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 按问题难度选择模型：只使用廉价信号（提问长度、关键词、代码或算式、检索得分、会话状态），
+ * 各信号打分求和，得分低的问题交给较小的非推理模型，其余使用推理模型；请求中明确给出档位时直接采用
+ */
+@Slf4j
+@Component
+public class ModelRouter {
+
+    /**
+     * 代码块、带空格的算式（12 * 7）、乘方等不会出现在日期或编号中的运算符（2^10）、两侧都是表达式的等式（x = y + 1）、
+     * 以花括号或分号结尾的代码行；不带空格的 - 和 / 不算，以免匹配日期（2024-05-01）、电话和型号（X1-200）
+     */
+    private static final Pattern CODE_OR_FORMULA = Pattern.compile(
+            "```|\\d\\s+[-+*/^]\\s+\\d|\\d\\s*[+*^]\\s*\\d|[\\p{L}\\p{N})]\\s*=\\s*[\\p{L}\\p{N}(-]|[{};]\\s*$");
+
+    private final ChatProperties.Routing config;
+    private final String reasoningModel;
+    private final MeterRegistry meterRegistry;
+    private final Pattern reasoningKeywords;
+
+    public ModelRouter(ChatProperties chatProperties, OllamaChatProperties ollamaChatProperties,
+            MeterRegistry meterRegistry) {
+        this.config = chatProperties.getRouting();
+        this.reasoningModel = ollamaChatProperties.getModel();
+        this.meterRegistry = meterRegistry;
+        this.reasoningKeywords = keywordPattern(config.getReasoningKeywords());
+    }
+
+    // 英文关键词按整词匹配（how 不匹配 show、however），中文没有词边界，按子串匹配
+    private static Pattern keywordPattern(List<String> keywords) {
+        String alternatives = keywords.stream()
+                .filter(keyword -> !keyword.isBlank())
+                .map(keyword -> keyword.chars().allMatch(c -> c < 128)
+                        ? "(?<![A-Za-z0-9])" + Pattern.quote(keyword) + "(?![A-Za-z0-9])"
+                        : Pattern.quote(keyword))
+                .collect(Collectors.joining("|"));
+        return alternatives.isEmpty() ? null
+                : Pattern.compile(alternatives, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    public ModelChoice route(String prompt, PackedContext context, ModelTier hint) {
+        ModelChoice choice;
+        if (hint == ModelTier.FAST || hint == ModelTier.REASONING) {
+            choice = choose(hint, "hint", 0);
+        } else if (!config.isEnabled()) {
+            choice = choose(ModelTier.REASONING, "disabled", 0);
+        } else {
+            int score = score(prompt, context);
+            choice = choose(score <= config.getFastScoreThreshold() ? ModelTier.FAST : ModelTier.REASONING,
+                    "rules", score);
+        }
+        meterRegistry.counter("chat.routing.decisions", "tier", choice.tier().name().toLowerCase(),
+                "reason", choice.reason()).increment();
+        log.debug("模型路由: {} ({}，得分 {})", choice.model(), choice.reason(), choice.score());
+        return choice;
+    }
+
+    private int score(String prompt, PackedContext context) {
+        int score = 0;
+        String text = prompt == null ? "" : prompt.strip();
+        if (text.length() > config.getLongPromptChars()) {
+            score += 2;
+        } else if (text.length() <= config.getShortPromptChars()) {
+            score -= 1;
+        }
+        if (reasoningKeywords != null && reasoningKeywords.matcher(text).find()) {
+            score += 2;
+        }
+        if (CODE_OR_FORMULA.matcher(text).find()) {
+            score += 2;
+        }
+        // 检索到高分分块时答案多可直接从文档得出；检索到的分块得分都不高时需要综合推断
+        double topScore = context.documents().stream()
+                .map(Document::getScore)
+                .filter(Objects::nonNull)
+                .mapToDouble(Double::doubleValue)
+                .max()
+                .orElse(-1);
+        if (topScore >= config.getConfidentRetrievalScore()) {
+            score -= 1;
+        } else if (topScore >= 0) {
+            score += 1;
+        }
+        // 进行中的多轮对话往往依赖上文，倾向保持推理模型
+        if (!context.firstTurn()) {
+            score += 1;
+        }
+        return score;
+    }
+
+    private ModelChoice choose(ModelTier tier, String reason, int score) {
+        return new ModelChoice(tier, tier == ModelTier.FAST ? config.getFastModel() : reasoningModel, reason, score);
+    }
+
+    /**
+     * 路由结果
+     *
+     * @param tier   模型档位
+     * @param model  模型名称
+     * @param reason 决策来源：hint（请求提示）、rules（路由规则）、disabled（未开启路由）
+     * @param score  路由规则的得分
+     */
+    public record ModelChoice(ModelTier tier, String model, String reason, int score) {
+    }
+}
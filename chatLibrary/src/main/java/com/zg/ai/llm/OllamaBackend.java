@@ -0,0 +1,135 @@
+package com.zg.ai.llm;
+
+import io.micrometer.core.instrument.Counter;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.embedding.EmbeddingModel;
+import reactor.core.publisher.Flux;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 一个 Ollama 实例：进行中请求数、连续失败数、同步调用的平均耗时、健康状态及已加载的模型
+ */
+@Slf4j
+public class OllamaBackend {
+
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    @Getter
+    private final String baseUrl;
+    @Getter
+    private final ChatClient chatClient;
+    @Getter
+    private final EmbeddingModel embeddingModel;
+    private final int maxFailures;
+    private final Counter ejections;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    // 同步调用耗时的指数加权平均
+    private volatile double latencyNanos;
+    private volatile boolean healthy = true;
+    // 为 null 表示尚未获取到，按已加载处理
+    private volatile Set<String> loadedModels;
+
+    public OllamaBackend(String baseUrl, ChatClient chatClient, EmbeddingModel embeddingModel, int maxFailures,
+            Counter ejections) {
+        this.baseUrl = baseUrl;
+        this.chatClient = chatClient;
+        this.embeddingModel = embeddingModel;
+        this.maxFailures = maxFailures;
+        this.ejections = ejections;
+    }
+
+    public int outstanding() {
+        return outstanding.get();
+    }
+
+    public double latencyNanos() {
+        return latencyNanos;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    public boolean hasLoaded(String model) {
+        Set<String> models = loadedModels;
+        return models == null || models.contains(normalizeModel(model));
+    }
+
+    /**
+     * 计入进行中请求数；正常结束视为成功，出错计一次失败，取消不计
+     */
+    public <T> Flux<T> track(Flux<T> call) {
+        return Flux.defer(() -> {
+            outstanding.incrementAndGet();
+            return call.doOnComplete(this::recordSuccess)
+                    .doOnError(e -> recordFailure())
+                    .doFinally(signal -> outstanding.decrementAndGet());
+        });
+    }
+
+    /**
+     * 同步调用版本的 track
+     */
+    public <T> T track(Supplier<T> call) {
+        outstanding.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            recordSuccess();
+            long elapsed = System.nanoTime() - start;
+            latencyNanos = latencyNanos == 0 ? elapsed : latencyNanos * (1 - LATENCY_WEIGHT) + elapsed * LATENCY_WEIGHT;
+            return result;
+        } catch (RuntimeException e) {
+            recordFailure();
+            throw e;
+        } finally {
+            outstanding.decrementAndGet();
+        }
+    }
+
+    /**
+     * 健康检查通过：恢复实例并更新已加载的模型
+     */
+    void markHealthy(Set<String> models) {
+        failures.set(0);
+        loadedModels = models;
+        healthy = true;
+    }
+
+    /**
+     * 健康检查失败，立即摘除
+     */
+    void markUnhealthy(String reason) {
+        eject("健康检查失败: " + reason);
+    }
+
+    private void recordSuccess() {
+        failures.set(0);
+    }
+
+    private void recordFailure() {
+        if (failures.incrementAndGet() >= maxFailures) {
+            eject("连续 " + maxFailures + " 次请求失败");
+        }
+    }
+
+    private synchronized void eject(String reason) {
+        if (healthy) {
+            healthy = false;
+            ejections.increment();
+            log.warn("Ollama 实例 {} 已摘除，等待健康检查恢复（{}）", baseUrl, reason);
+        }
+    }
+
+    // Ollama 对未带标签的模型名补 :latest
+    static String normalizeModel(String model) {
+        return model.contains(":") ? model : model + ":latest";
+    }
+}
@@ -0,0 +1,143 @@
+package com.zg.ai.llm;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.zg.ai.config.CommonConfiguration;
+import com.zg.ai.config.properties.OllamaProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.model.ollama.autoconfigure.OllamaChatProperties;
+import org.springframework.ai.model.ollama.autoconfigure.OllamaConnectionProperties;
+import org.springframework.ai.model.ollama.autoconfigure.OllamaEmbeddingProperties;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.OllamaEmbeddingModel;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.ai.ollama.api.OllamaChatOptions;
+import org.springframework.ai.ollama.api.OllamaEmbeddingOptions;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Ollama 实例池：对话与向量模型共用同一组实例；定期查询各实例的 /api/ps 做健康检查并获取已加载的模型，
+ * 请求连续失败或健康检查失败的实例被摘除，直到健康检查再次通过；全部实例都被摘除时仍使用全部实例
+ */
+@Slf4j
+@Component
+public class OllamaBackendPool {
+
+    private final OllamaProperties properties;
+    private final WebClient webClient;
+    @Getter
+    private final String chatModel;
+    @Getter
+    private final String embeddingModel;
+    @Getter
+    private final List<OllamaBackend> backends = new ArrayList<>();
+    private final Disposable healthChecks;
+
+    public OllamaBackendPool(OllamaProperties properties, OllamaConnectionProperties connectionProperties,
+            OllamaChatProperties chatProperties, OllamaEmbeddingProperties embeddingProperties,
+            ChatClient chatClient, OllamaEmbeddingModel defaultEmbeddingModel, WebClient.Builder webClientBuilder,
+            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.webClient = webClientBuilder.build();
+        this.chatModel = chatProperties.getModel();
+        this.embeddingModel = embeddingProperties.getModel();
+        Counter ejections = meterRegistry.counter("ollama.backend.ejections");
+        if (properties.getInstances().isEmpty()) {
+            backends.add(new OllamaBackend(connectionProperties.getBaseUrl(), chatClient, defaultEmbeddingModel,
+                    properties.getMaxFailures(), ejections));
+        }
+        for (String baseUrl : properties.getInstances()) {
+            OllamaApi api = OllamaApi.builder().baseUrl(baseUrl).build();
+            OllamaChatModel model = OllamaChatModel.builder()
+                    .ollamaApi(api)
+                    .defaultOptions(OllamaChatOptions.fromOptions(chatProperties.getOptions()))
+                    .build();
+            OllamaEmbeddingModel embedding = OllamaEmbeddingModel.builder()
+                    .ollamaApi(api)
+                    .defaultOptions(OllamaEmbeddingOptions.fromOptions(embeddingProperties.getOptions()))
+                    .build();
+            backends.add(new OllamaBackend(baseUrl, CommonConfiguration.knowledgeBaseChatClient(model), embedding,
+                    properties.getMaxFailures(), ejections));
+            log.info("已注册 Ollama 实例: {}", baseUrl);
+        }
+        for (OllamaBackend backend : backends) {
+            Gauge.builder("ollama.backend.outstanding", backend, OllamaBackend::outstanding)
+                    .description("实例上进行中的请求数")
+                    .tag("backend", backend.getBaseUrl())
+                    .register(meterRegistry);
+            Gauge.builder("ollama.backend.healthy", backend, b -> b.isHealthy() ? 1 : 0)
+                    .tag("backend", backend.getBaseUrl())
+                    .register(meterRegistry);
+        }
+        this.healthChecks = Flux.interval(Duration.ZERO, properties.getHealthCheckInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> Flux.fromIterable(backends).flatMap(this::check))
+                .subscribe();
+    }
+
+    /**
+     * 可用实例：健康的实例，全部被摘除时返回全部实例
+     */
+    public List<OllamaBackend> available() {
+        List<OllamaBackend> healthy = backends.stream().filter(OllamaBackend::isHealthy).toList();
+        return healthy.isEmpty() ? backends : healthy;
+    }
+
+    /**
+     * 实例负载：进行中请求数，未加载所需模型时附加冷启动惩罚
+     */
+    public int load(OllamaBackend backend, String model) {
+        return backend.outstanding() + (backend.hasLoaded(model) ? 0 : properties.getColdStartPenalty());
+    }
+
+    private Mono<Void> check(OllamaBackend backend) {
+        boolean wasHealthy = backend.isHealthy();
+        return webClient.get()
+                .uri(backend.getBaseUrl() + "/api/ps")
+                .retrieve()
+                .bodyToMono(ProcessStatus.class)
+                .timeout(properties.getHealthCheckTimeout())
+                .doOnNext(status -> {
+                    backend.markHealthy(status.models() == null ? Set.of() : status.models().stream()
+                            .map(RunningModel::name)
+                            .map(OllamaBackend::normalizeModel)
+                            .collect(Collectors.toUnmodifiableSet()));
+                    if (!wasHealthy) {
+                        log.info("Ollama 实例 {} 恢复", backend.getBaseUrl());
+                    }
+                })
+                .onErrorResume(e -> {
+                    backend.markUnhealthy(e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        healthChecks.dispose();
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record ProcessStatus(List<RunningModel> models) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record RunningModel(String name) {
+    }
+}
@@ -0,0 +1,80 @@
+package com.zg.ai.llm;
+
+import com.zg.ai.config.properties.OllamaProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 基于实例池的向量模型：发往负载最低的实例（负载相同时取平均耗时较低的）；开启对冲时首个实例在 hedgeDelay 内未返回，
+ * 向负载次低的实例再发一次，取先返回的结果，以削减长尾延迟（首个请求失败时对冲请求同时起到重试作用）；
+ * 由 BatchingEmbeddingModel 在缓存及微批之后调用
+ */
+@Slf4j
+@Component
+public class PooledEmbeddingModel implements EmbeddingModel {
+
+    private final OllamaBackendPool pool;
+    private final OllamaProperties properties;
+    private final Counter hedged;
+    private final Counter hedgeWins;
+
+    public PooledEmbeddingModel(OllamaBackendPool pool, OllamaProperties properties, MeterRegistry meterRegistry) {
+        this.pool = pool;
+        this.properties = properties;
+        this.hedged = meterRegistry.counter("ollama.embedding.hedged");
+        this.hedgeWins = meterRegistry.counter("ollama.embedding.hedge.wins");
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        String model = pool.getEmbeddingModel();
+        List<OllamaBackend> candidates = pool.available().stream()
+                .sorted(Comparator.comparingInt((OllamaBackend backend) -> pool.load(backend, model))
+                        .thenComparingDouble(OllamaBackend::latencyNanos))
+                .toList();
+        OllamaBackend primary = candidates.get(0);
+        if (!properties.isHedgeEmbeddings() || candidates.size() < 2) {
+            return invoke(primary, request);
+        }
+        OllamaBackend secondary = candidates.get(1);
+        Mono<EmbeddingResponse> first = async(primary, request);
+        Mono<EmbeddingResponse> hedge = Mono.delay(properties.getHedgeDelay())
+                .doOnNext(tick -> hedged.increment())
+                .then(Mono.defer(() -> async(secondary, request)))
+                .doOnNext(response -> hedgeWins.increment());
+        return Mono.firstWithValue(first, hedge).block();
+    }
+
+    // 阻塞调用放到 boundedElastic 上；取消时不中断线程，落败的请求在后台执行完毕，
+    // 不会被误记为实例失败，进行中请求数也按实际占用统计
+    private Mono<EmbeddingResponse> async(OllamaBackend backend, EmbeddingRequest request) {
+        return Mono.fromFuture(CompletableFuture.supplyAsync(() -> invoke(backend, request),
+                task -> Schedulers.boundedElastic().schedule(task)), true);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return pool.available().get(0).getEmbeddingModel().dimensions();
+    }
+
+    private EmbeddingResponse invoke(OllamaBackend backend, EmbeddingRequest request) {
+        return backend.track(() -> backend.getEmbeddingModel().call(request));
+    }
+}
@@ -0,0 +1,115 @@
+package com.zg.ai.llm;
+
+import com.zg.ai.entity.dto.chat.ChatDelta;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 从模型输出流中拆分 <think>...</think> 推理段与回答正文；推理段只出现在输出开头，之后的 <think> 按正文原样输出。
+ * 标签可能被切分在多个片段中，可能是标签前缀的部分会暂存到下一个片段再判断
+ */
+public final class ReasoningParser {
+
+    private static final String OPEN = "<think>";
+    private static final String CLOSE = "</think>";
+    private static final Pattern THINK_BLOCK = Pattern.compile("(?s)\\A\\s*<think>.*?(</think>|\\z)\\s*");
+
+    private ReasoningParser() {
+    }
+
+    public static Flux<ChatDelta> split(Flux<String> content) {
+        return Flux.defer(() -> {
+            State state = new State();
+            return content.concatMapIterable(state::accept)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(state.flush())));
+        });
+    }
+
+    /**
+     * 去掉完整文本开头的推理段（含未闭合的推理段），用于处理历史数据；正文中的 <think> 保留
+     */
+    public static String strip(String text) {
+        return text == null ? "" : THINK_BLOCK.matcher(text).replaceFirst("");
+    }
+
+    private static final class State {
+        private final StringBuilder pending = new StringBuilder();
+        private boolean reasoning;
+        // 已过输出开头（推理段结束或出现正文），之后不再识别 <think>
+        private boolean answering;
+        // 回答开头（含推理段结束后）的空白不输出
+        private boolean trimLeading = true;
+
+        List<ChatDelta> accept(String delta) {
+            pending.append(delta);
+            List<ChatDelta> out = new ArrayList<>();
+            if (!reasoning && !answering) {
+                int start = 0;
+                while (start < pending.length() && Character.isWhitespace(pending.charAt(start))) {
+                    start++;
+                }
+                String head = pending.substring(start);
+                if (head.startsWith(OPEN)) {
+                    pending.delete(0, start + OPEN.length());
+                    reasoning = true;
+                } else if (OPEN.startsWith(head)) {
+                    // 只有空白或被切分的 <think> 前缀，等下一个片段再判断
+                    return out;
+                } else {
+                    answering = true;
+                }
+            }
+            if (reasoning) {
+                int index = pending.indexOf(CLOSE);
+                if (index < 0) {
+                    int keep = partialTagLength(CLOSE);
+                    emit(out, pending.substring(0, pending.length() - keep));
+                    pending.delete(0, pending.length() - keep);
+                    return out;
+                }
+                emit(out, pending.substring(0, index));
+                pending.delete(0, index + CLOSE.length());
+                reasoning = false;
+                answering = true;
+                trimLeading = true;
+            }
+            emit(out, pending.toString());
+            pending.setLength(0);
+            return out;
+        }
+
+        List<ChatDelta> flush() {
+            List<ChatDelta> out = new ArrayList<>();
+            emit(out, pending.toString());
+            pending.setLength(0);
+            return out;
+        }
+
+        private void emit(List<ChatDelta> out, String text) {
+            if (trimLeading) {
+                text = text.stripLeading();
+                if (text.isEmpty()) {
+                    return;
+                }
+                trimLeading = false;
+            }
+            if (!text.isEmpty()) {
+                out.add(reasoning ? ChatDelta.reasoning(text) : ChatDelta.answer(text));
+            }
+        }
+
+        // pending 末尾与标签前缀重合的最大长度
+        private int partialTagLength(String tag) {
+            String tail = pending.substring(Math.max(0, pending.length() - tag.length() + 1));
+            for (int length = tail.length(); length > 0; length--) {
+                if (tail.regionMatches(tail.length() - length, tag, 0, length)) {
+                    return length;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.zg.ai.repository;
+
+import com.zg.ai.config.properties.ChatProperties;
+import com.zg.ai.entity.po.ChatMessage;
+import com.zg.ai.enums.MessageStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 聊天消息异步批量写入（write-behind）：按条数/时间窗口攒批，以多行 INSERT ... ON DUPLICATE KEY UPDATE
+ * 一次写入 chat_message，并在同一批内批量刷新 chat_history.update_at；
+ * 缓冲区有界，已满时拒绝写入；关闭后拒绝写入，并等待缓冲区写完
+ */
+@Slf4j
+@Component
+public class ChatMessageBatchWriter {
+
+    private final DatabaseClient databaseClient;
+    private final ChatProperties.WriteBehind config;
+    private final AtomicInteger pending = new AtomicInteger();
+    // 已入队、尚未得到结果的消息；管道异常终止时以失败结束，避免调用方永久等待
+    private final Set<PendingMessage> outstanding = ConcurrentHashMap.newKeySet();
+    private volatile Sinks.Many<PendingMessage> sink;
+    private volatile Mono<Void> drained;
+    private volatile boolean closed;
+    private final Counter rejected;
+    private final Counter failed;
+    private final Timer batchTimer;
+
+    public ChatMessageBatchWriter(DatabaseClient databaseClient, ChatProperties properties,
+            MeterRegistry meterRegistry) {
+        this.databaseClient = databaseClient;
+        this.config = properties.getWriteBehind();
+        this.rejected = meterRegistry.counter("chat.write-behind.rejected");
+        this.failed = meterRegistry.counter("chat.write-behind.failed");
+        this.batchTimer = meterRegistry.timer("chat.write-behind.batch");
+        meterRegistry.gauge("chat.write-behind.pending", pending);
+
+        start();
+    }
+
+    // 建立写入管道：bufferTimeout 使用公平背压，数据库停顿超过 flushInterval 时窗口等待下游请求而不会溢出；
+    // 管道仍因意外错误终止时，让滞留的消息失败并重建管道
+    private synchronized void start() {
+        if (closed) {
+            return;
+        }
+        Sinks.Many<PendingMessage> next = Sinks.many().unicast().onBackpressureBuffer();
+        Mono<Void> pipeline = next.asFlux()
+                .bufferTimeout(config.getBatchSize(), config.getFlushInterval(), true)
+                .concatMap(batch -> Mono.defer(() -> flush(batch)))
+                .then()
+                .cache();
+        sink = next;
+        drained = pipeline;
+        pipeline.subscribe(null, e -> {
+            log.error("聊天消息写入管道异常终止，重建管道", e);
+            outstanding.forEach(item -> complete(item, e));
+            start();
+        });
+    }
+
+    /**
+     * 提交一条消息，所在批次提交成功后完成；缓冲区已满或写入器已关闭时立即以 RejectedExecutionException 失败
+     */
+    public Mono<Void> write(ChatMessage message) {
+        return Mono.defer(() -> {
+            if (closed) {
+                rejected.increment();
+                return Mono.error(new RejectedExecutionException("聊天消息写入器已关闭"));
+            }
+            if (pending.incrementAndGet() > config.getCapacity()) {
+                pending.decrementAndGet();
+                rejected.increment();
+                return Mono.error(new RejectedExecutionException("聊天消息写入缓冲区已满"));
+            }
+            // 批量写入绕过 R2DBC 审计，在入队时确定时间戳以保持消息顺序
+            LocalDateTime now = LocalDateTime.now();
+            if (message.getCreateAt() == null) {
+                message.setCreateAt(now);
+            }
+            message.setUpdateAt(now);
+            PendingMessage item = new PendingMessage(message, Sinks.empty());
+            outstanding.add(item);
+            Sinks.EmitResult result;
+            while ((result = sink.tryEmitNext(item)) == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+                Thread.onSpinWait();
+            }
+            if (result.isFailure()) {
+                // 管道已终止（正在重建或已关闭）
+                rejected.increment();
+                complete(item, new RejectedExecutionException("聊天消息写入管道不可用: " + result));
+            }
+            return item.done().asMono();
+        });
+    }
+
+    private Mono<Void> flush(List<PendingMessage> batch) {
+        long start = System.nanoTime();
+        return insertMessages(batch)
+                .then(touchHistories(batch))
+                .retryWhen(Retry.backoff(config.getMaxRetries(), Duration.ofMillis(100)))
+                .doOnSuccess(unused -> {
+                    batchTimer.record(Duration.ofNanos(System.nanoTime() - start));
+                    batch.forEach(item -> complete(item, null));
+                })
+                .onErrorResume(e -> {
+                    log.error("批量写入聊天消息失败，丢弃 {} 条: {}", batch.size(), e.getMessage(), e);
+                    failed.increment(batch.size());
+                    batch.forEach(item -> complete(item, e));
+                    return Mono.empty();
+                });
+    }
+
+    // 结束一条消息（error 为 null 表示成功）；每条消息只结束一次并移出缓冲区计数
+    private void complete(PendingMessage item, Throwable error) {
+        Sinks.EmitResult result = error == null ? item.done().tryEmitEmpty() : item.done().tryEmitError(error);
+        if (result.isSuccess()) {
+            outstanding.remove(item);
+            pending.decrementAndGet();
+        }
+    }
+
+    // 多行 INSERT，主键冲突时按更新处理，保证重试幂等
+    private Mono<Void> insertMessages(List<PendingMessage> batch) {
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO chat_message (id, history_id, message_type, content, status, create_at, update_at, deleted) "
+                        + "VALUES ");
+        for (int i = 0; i < batch.size(); i++) {
+            sql.append(i == 0 ? "" : ", ")
+                    .append(String.format("(:id%1$d, :historyId%1$d, :messageType%1$d, :content%1$d, :status%1$d, "
+                            + ":createAt%1$d, :updateAt%1$d, 0)", i));
+        }
+        // 行别名写法（MySQL 8.0.19+），VALUES() 引用新值的写法自 8.0.20 起已废弃
+        sql.append(" AS new ON DUPLICATE KEY UPDATE content = new.content, status = new.status, "
+                + "update_at = new.update_at");
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        for (int i = 0; i < batch.size(); i++) {
+            ChatMessage message = batch.get(i).message();
+            spec = spec.bind("id" + i, message.getId())
+                    .bind("historyId" + i, message.getHistoryId())
+                    .bind("status" + i, message.getStatus() == null
+                            ? MessageStatus.COMPLETED.name() : message.getStatus())
+                    .bind("createAt" + i, message.getCreateAt())
+                    .bind("updateAt" + i, message.getUpdateAt());
+            spec = message.getMessageType() == null
+                    ? spec.bindNull("messageType" + i, String.class)
+                    : spec.bind("messageType" + i, message.getMessageType());
+            spec = message.getContent() == null
+                    ? spec.bindNull("content" + i, String.class)
+                    : spec.bind("content" + i, message.getContent());
+        }
+        return spec.then();
+    }
+
+    // 同一批内每个会话只刷新一次最近活跃时间
+    private Mono<Void> touchHistories(List<PendingMessage> batch) {
+        Set<String> historyIds = new LinkedHashSet<>();
+        LocalDateTime updateAt = null;
+        for (PendingMessage item : batch) {
+            historyIds.add(item.message().getHistoryId());
+            LocalDateTime messageTime = item.message().getUpdateAt();
+            updateAt = updateAt == null || messageTime.isAfter(updateAt) ? messageTime : updateAt;
+        }
+        return databaseClient.sql("UPDATE chat_history SET update_at = :updateAt WHERE id IN (:ids)")
+                .bind("updateAt", updateAt)
+                .bind("ids", List.copyOf(historyIds))
+                .then();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        synchronized (this) {
+            closed = true;
+        }
+        sink.emitComplete(Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+        try {
+            drained.block(config.getShutdownTimeout());
+            log.info("聊天消息写入缓冲区已全部落库");
+        } catch (Exception e) {
+            log.error("关闭时聊天消息写入缓冲区未能在 {} 内写完，剩余 {} 条", config.getShutdownTimeout(), pending.get(), e);
+        }
+    }
+
+    private record PendingMessage(ChatMessage message, Sinks.Empty<Void> done) {
+    }
+}
@@ -1,12 +1,30 @@
 package com.zg.ai.repository;
 
 import com.zg.ai.entity.po.ChatMessage;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 
+import java.time.LocalDateTime;
+
 @Repository
 public interface ChatMessageRepository extends R2dbcRepository<ChatMessage, String> {
     Flux<ChatMessage> findByHistoryIdOrderByCreateAtAsc(String historyId);
     Flux<ChatMessage> findByHistoryId(String historyId);
+
+    // 会话最近 limit 条已完成消息（倒序），走 (history_id, create_at) 索引；同一秒内助手消息排在用户消息之前
+    @Query("SELECT * FROM chat_message WHERE history_id = :historyId AND deleted = 0 "
+            + "AND (status IS NULL OR status = 'COMPLETED') "
+            + "ORDER BY create_at DESC, message_type ASC LIMIT :limit")
+    Flux<ChatMessage> findRecentCompleted(String historyId, int limit);
+
+    // 会话中创建时间晚于 after 的最早 limit 条已完成消息（正序），用于滚动摘要
+    @Query("SELECT * FROM chat_message WHERE history_id = :historyId AND create_at > :after AND deleted = 0 "
+            + "AND (status IS NULL OR status = 'COMPLETED') "
+            + "ORDER BY create_at ASC, message_type DESC LIMIT :limit")
+    Flux<ChatMessage> findCompletedAfter(String historyId, LocalDateTime after, int limit);
+
+    @Query("SELECT DISTINCT history_id FROM chat_message WHERE deleted = 0")
+    Flux<String> findHistoryIds();
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.zg.ai.repository;
+
+import com.zg.ai.entity.po.ChatReasoning;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface ChatReasoningRepository extends R2dbcRepository<ChatReasoning, String> {
+    Mono<ChatReasoning> findByMessageId(String messageId);
+
+    Mono<Void> deleteByHistoryId(String historyId);
+}
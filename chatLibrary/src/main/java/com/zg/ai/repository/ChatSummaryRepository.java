@@ -0,0 +1,13 @@
+package com.zg.ai.repository;
+
+import com.zg.ai.entity.po.ChatSummary;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface ChatSummaryRepository extends R2dbcRepository<ChatSummary, String> {
+    Mono<ChatSummary> findByHistoryId(String historyId);
+
+    Mono<Void> deleteByHistoryId(String historyId);
+}
@@ -1,6 +1,7 @@
 package com.zg.ai.repository;
 
 import com.zg.ai.entity.po.Document;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
@@ -8,4 +9,9 @@ import reactor.core.publisher.Flux;
 @Repository
 public interface DocumentRepository extends R2dbcRepository<Document, String> {
     Flux<Document> findByUserId(String userId);
+
+    // 处理中却没有入库任务的文档（入库任务表启用前上传、或上传时任务未能保存），启动时为其补建任务
+    @Query("SELECT * FROM document d WHERE d.status = 1 AND d.deleted = 0 "
+            + "AND NOT EXISTS (SELECT 1 FROM ingestion_job j WHERE j.document_id = d.id)")
+    Flux<Document> findProcessingWithoutJob();
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.zg.ai.repository;
+
+import com.zg.ai.entity.po.IngestionJob;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+@Repository
+public interface IngestionJobRepository extends R2dbcRepository<IngestionJob, String> {
+    Flux<IngestionJob> findByStatusInOrderByCreateAtAsc(Collection<String> statuses);
+
+    Mono<Void> deleteByDocumentId(String documentId);
+}
@@ -0,0 +1,137 @@
+package com.zg.ai.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zg.ai.config.properties.ChatProperties;
+import com.zg.ai.entity.po.ChatMessage;
+import com.zg.ai.llm.ReasoningParser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 以 chat_message 为准的对话记忆：消息由 ChatService 写入数据库，这里只负责读取；
+ * 热层按会话缓存记忆窗口，总权重有上限、空闲过期，未命中时用一条索引查询加载最近的已完成消息，
+ * 因此重启后记忆不丢，多个节点看到的是同一份记录
+ */
+@Slf4j
+@Component
+public class PersistentChatMemoryRepository implements ChatMemoryRepository {
+
+    /**
+     * 从数据库加载的消息在元数据中携带创建时间，用于区分是否已并入滚动摘要
+     */
+    public static final String CREATE_AT = "createAt";
+
+    // 每个会话窗口的固定权重（键及列表本身的开销），保证条目数同样有上限
+    private static final int ENTRY_BASE_WEIGHT = 256;
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatProperties.Memory config;
+    private final Cache<String, List<Message>> hotTier;
+
+    public PersistentChatMemoryRepository(ChatMessageRepository chatMessageRepository, ChatProperties properties,
+            MeterRegistry meterRegistry) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.config = properties.getMemory();
+        this.hotTier = Caffeine.newBuilder()
+                .maximumWeight(config.getMaximumWeight())
+                .weigher((String conversationId, List<Message> messages) -> ENTRY_BASE_WEIGHT + weightOf(messages))
+                .expireAfterAccess(config.getIdleTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, hotTier, "chat.memory");
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        return chatMessageRepository.findHistoryIds().collectList().block(config.getLoadTimeout());
+    }
+
+    /**
+     * 热层未命中时从数据库加载；在非阻塞线程上无法加载，返回空窗口且不写入热层，
+     * 随后的 saveAll 也不会缓存这份不完整的窗口
+     */
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        List<Message> cached = hotTier.getIfPresent(conversationId);
+        if (cached != null) {
+            return cached;
+        }
+        if (Schedulers.isInNonBlockingThread()) {
+            log.warn("会话 {} 的记忆不在热层且当前线程不可阻塞，跳过加载", conversationId);
+            return List.of();
+        }
+        return hotTier.get(conversationId, this::load);
+    }
+
+    /**
+     * 只更新热层中已加载的窗口；消息本身由 ChatService 持久化，不重复写库
+     */
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        hotTier.asMap().computeIfPresent(conversationId, (id, current) -> List.copyOf(messages));
+    }
+
+    /**
+     * 丢弃热层副本，下次使用时按数据库记录重新加载；会话消息的删除由 ChatService 完成
+     */
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        hotTier.invalidate(conversationId);
+    }
+
+    // 一条查询取最近的已完成消息；末尾没有回答的用户消息属于进行中或失败的轮次，由记忆顾问自行追加
+    private List<Message> load(String conversationId) {
+        List<ChatMessage> recent = chatMessageRepository
+                .findRecentCompleted(conversationId, config.getMaxMessages())
+                .collectList()
+                .block(config.getLoadTimeout());
+        List<Message> messages = new ArrayList<>();
+        for (ChatMessage message : Objects.requireNonNull(recent)) {
+            Message converted = toMessage(message);
+            if (converted != null) {
+                messages.add(converted);
+            }
+        }
+        Collections.reverse(messages);
+        while (!messages.isEmpty() && messages.get(messages.size() - 1) instanceof UserMessage) {
+            messages.remove(messages.size() - 1);
+        }
+        return List.copyOf(messages);
+    }
+
+    private static Message toMessage(ChatMessage message) {
+        String content = message.getContent() == null ? "" : message.getContent();
+        Map<String, Object> metadata = message.getCreateAt() == null
+                ? Map.of() : Map.of(CREATE_AT, message.getCreateAt());
+        if ("USER".equals(message.getMessageType())) {
+            return UserMessage.builder().text(content).metadata(metadata).build();
+        }
+        if ("ASSISTANT".equals(message.getMessageType())) {
+            // 早期记录的回答中可能带有推理过程，不放入记忆
+            return AssistantMessage.builder().content(ReasoningParser.strip(content)).properties(metadata).build();
+        }
+        return null;
+    }
+
+    private static int weightOf(List<Message> messages) {
+        long weight = 0;
+        for (Message message : messages) {
+            weight += message.getText() == null ? 0 : message.getText().length();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, weight);
+    }
+}
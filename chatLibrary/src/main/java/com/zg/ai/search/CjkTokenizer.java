@@ -0,0 +1,101 @@
+package com.zg.ai.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 面向中英混排文本的分词：先做 NFKC 归一化（全角转半角）并转小写；
+ * 连续的中日韩字符切成相邻二元组（单字单独成词），字母数字串整体成词，
+ * 含 - _ . 的串（型号、版本号、文件名等）在整词之外再按分隔符拆出各段
+ */
+public final class CjkTokenizer {
+
+    private CjkTokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        int length = normalized.length();
+        int i = 0;
+        while (i < length) {
+            int cp = normalized.codePointAt(i);
+            if (isCjk(cp)) {
+                i = cjkRun(normalized, i, tokens);
+            } else if (Character.isLetterOrDigit(cp)) {
+                i = wordRun(normalized, i, tokens);
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+        return tokens;
+    }
+
+    // 连续中日韩字符：相邻二元组，单字成词
+    private static int cjkRun(String text, int start, List<String> tokens) {
+        int end = start;
+        int previous = -1;
+        int count = 0;
+        while (end < text.length()) {
+            int cp = text.codePointAt(end);
+            if (!isCjk(cp)) {
+                break;
+            }
+            if (previous >= 0) {
+                tokens.add(text.substring(previous, end + Character.charCount(cp)));
+            }
+            previous = end;
+            end += Character.charCount(cp);
+            count++;
+        }
+        if (count == 1) {
+            tokens.add(text.substring(start, end));
+        }
+        return end;
+    }
+
+    // 字母数字串，- _ . 两侧都是字母数字时视为串的一部分
+    private static int wordRun(String text, int start, List<String> tokens) {
+        int end = start;
+        boolean compound = false;
+        while (end < text.length()) {
+            int cp = text.codePointAt(end);
+            if (Character.isLetterOrDigit(cp) && !isCjk(cp)) {
+                end += Character.charCount(cp);
+            } else if (isConnector(cp) && end + 1 < text.length()
+                    && Character.isLetterOrDigit(text.codePointAt(end + 1)) && !isCjk(text.codePointAt(end + 1))) {
+                compound = true;
+                end++;
+            } else {
+                break;
+            }
+        }
+        String word = text.substring(start, end);
+        tokens.add(word);
+        if (compound) {
+            for (String part : word.split("[-_.]")) {
+                if (!part.isEmpty()) {
+                    tokens.add(part);
+                }
+            }
+        }
+        return end;
+    }
+
+    private static boolean isConnector(int cp) {
+        return cp == '-' || cp == '_' || cp == '.';
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,140 @@
+package com.zg.ai.search;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zg.ai.config.properties.RetrievalProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 小语料精确检索层：用户自己的分块加共享分块不超过 maxChunks 时，对堆外连续存放的全部向量暴力打分取 topK，
+ * 结果精确（无近似图的召回损失），且不受向量库按用户过滤时图检索退化的影响；超出上限或向量块尚未就绪时返回 null，
+ * 由调用方回退到向量库。
+ * <p>
+ * 向量块按归属（用户、共享知识库）懒加载：分块取自词法索引，向量经向量模型获取（入库时已写入持久化向量缓存，
+ * 通常全部命中）；块带有词法索引中该归属的版本号，文档增删后版本变化，块在下次检索时重建。
+ * 块缓存按堆外字节数限界、闲置过期
+ */
+@Slf4j
+@Component
+public class ExactSearchTier {
+
+    // 构建向量块时每次向模型请求的文本数
+    private static final int EMBED_BATCH = 256;
+
+    private final LexicalIndex lexicalIndex;
+    private final EmbeddingModel embeddingModel;
+    private final RetrievalProperties.Exact config;
+    private final MeterRegistry meterRegistry;
+    private final Timer loadTimer;
+    private final AsyncCache<String, VectorBlock> blocks;
+
+    public ExactSearchTier(LexicalIndex lexicalIndex, EmbeddingModel embeddingModel, RetrievalProperties properties,
+            MeterRegistry meterRegistry) {
+        this.lexicalIndex = lexicalIndex;
+        this.embeddingModel = embeddingModel;
+        this.config = properties.getExact();
+        this.meterRegistry = meterRegistry;
+        this.loadTimer = meterRegistry.timer("rag.retrieval.exact.load");
+        this.blocks = Caffeine.newBuilder()
+                .maximumWeight(config.getMaximumBytes())
+                .weigher((String owner, VectorBlock block) -> (int) Math.min(Integer.MAX_VALUE, block.bytes()))
+                .expireAfterAccess(config.getIdleTtl())
+                .executor(Schedulers.boundedElastic()::schedule)
+                .buildAsync();
+        meterRegistry.gauge("rag.retrieval.exact.bytes", blocks, cache -> cache.synchronous().asMap().values()
+                .stream()
+                .mapToLong(VectorBlock::bytes)
+                .sum());
+    }
+
+    /**
+     * 在用户自己的分块及共享分块中精确检索
+     *
+     * @param documentIds 文档范围，为空表示不限
+     * @return 得分不低于阈值的前 topK 个分块（按得分降序）；本层无法处理时返回 null
+     */
+    public List<Document> search(String query, String userId, Collection<String> documentIds, int topK,
+            double threshold) {
+        if (!config.isEnabled() || !lexicalIndex.isReady() || userId == null) {
+            return null;
+        }
+        if (lexicalIndex.count(userId) + lexicalIndex.count(LexicalIndex.SHARED_OWNER) > config.getMaxChunks()) {
+            return miss("too-large");
+        }
+        VectorBlock own = block(userId);
+        VectorBlock shared = block(LexicalIndex.SHARED_OWNER);
+        if (own == null || shared == null) {
+            return miss("loading");
+        }
+
+        float[] vector = VectorBlock.normalize(embeddingModel.embed(query));
+        Set<String> scope = documentIds == null || documentIds.isEmpty() ? null : new HashSet<>(documentIds);
+        TopK top = new TopK(topK);
+        own.scan(vector, scope, top, 0);
+        shared.scan(vector, scope, top, own.size());
+        float[] scores = new float[topK];
+        int[] ids = top.drainDescending(scores);
+        List<Document> documents = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length && scores[i] >= threshold; i++) {
+            IndexedChunk chunk = ids[i] < own.size() ? own.chunk(ids[i]) : shared.chunk(ids[i] - own.size());
+            documents.add(chunk.toDocument(scores[i]));
+        }
+        meterRegistry.counter("rag.retrieval.exact", "result", "hit").increment();
+        return documents;
+    }
+
+    // 已就绪且未过期的向量块；否则（重新）触发后台构建并返回 null
+    private VectorBlock block(String owner) {
+        long version = lexicalIndex.version(owner);
+        CompletableFuture<VectorBlock> future = blocks.get(owner, (key, executor) ->
+                CompletableFuture.supplyAsync(() -> load(key), executor));
+        // 构建失败的块由缓存自动移除，下次检索重试
+        if (!future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+        VectorBlock block = future.join();
+        if (block.version() != version) {
+            // 归属已变更：丢弃旧块，下次检索时使用重建后的块
+            blocks.asMap().remove(owner, future);
+            blocks.get(owner, (key, executor) -> CompletableFuture.supplyAsync(() -> load(key), executor));
+            return null;
+        }
+        return block;
+    }
+
+    private VectorBlock load(String owner) {
+        return loadTimer.record(() -> {
+            // 先取版本再取分块：期间若有变更，块的版本偏旧，下次检索会再重建
+            long version = lexicalIndex.version(owner);
+            List<IndexedChunk> chunks = lexicalIndex.chunks(owner);
+            List<float[]> vectors = new ArrayList<>(chunks.size());
+            for (int start = 0; start < chunks.size(); start += EMBED_BATCH) {
+                List<String> texts = chunks.subList(start, Math.min(chunks.size(), start + EMBED_BATCH)).stream()
+                        .map(IndexedChunk::text)
+                        .toList();
+                vectors.addAll(embeddingModel.embed(texts));
+            }
+            VectorBlock block = VectorBlock.of(chunks, vectors, version, config.isQuantized());
+            log.debug("精确检索向量块已构建: owner={}, chunks={}, bytes={}", owner, block.size(), block.bytes());
+            return block;
+        });
+    }
+
+    private List<Document> miss(String result) {
+        meterRegistry.counter("rag.retrieval.exact", "result", result).increment();
+        return null;
+    }
+}
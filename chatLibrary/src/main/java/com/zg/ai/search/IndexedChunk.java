@@ -0,0 +1,51 @@
+package com.zg.ai.search;
+
+import com.zg.ai.common.DocumentMetadata;
+import org.springframework.ai.document.Document;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 词法索引中的一个分块，字段与向量库 payload 一致，命中后可直接构造检索结果而不必回查数据库
+ *
+ * @param vectorId         分块在向量库中的 ID
+ * @param documentId       所属文档
+ * @param userId           上传用户
+ * @param shared           是否为共享知识库文档
+ * @param originalFilename 原始文件名
+ * @param text             分块文本
+ */
+public record IndexedChunk(String vectorId, String documentId, String userId, boolean shared,
+                           String originalFilename, String text) {
+
+    public static IndexedChunk of(Document document) {
+        Map<String, Object> metadata = document.getMetadata();
+        return new IndexedChunk(document.getId(),
+                stringOf(metadata.get(DocumentMetadata.DOCUMENT_ID)),
+                stringOf(metadata.get(DocumentMetadata.USER_ID)),
+                Boolean.parseBoolean(String.valueOf(metadata.get(DocumentMetadata.SHARED))),
+                stringOf(metadata.get(DocumentMetadata.ORIGINAL_FILENAME)),
+                document.getText());
+    }
+
+    public Document toDocument(double score) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(DocumentMetadata.VECTOR_ID, vectorId);
+        metadata.put(DocumentMetadata.SHARED, shared);
+        if (documentId != null) {
+            metadata.put(DocumentMetadata.DOCUMENT_ID, documentId);
+        }
+        if (userId != null) {
+            metadata.put(DocumentMetadata.USER_ID, userId);
+        }
+        if (originalFilename != null) {
+            metadata.put(DocumentMetadata.ORIGINAL_FILENAME, originalFilename);
+        }
+        return Document.builder().id(vectorId).text(text).metadata(metadata).score(score).build();
+    }
+
+    private static String stringOf(Object value) {
+        return value == null ? null : value.toString();
+    }
+}
@@ -0,0 +1,546 @@
+package com.zg.ai.search;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zg.ai.common.DocumentMetadata;
+import com.zg.ai.config.properties.RetrievalProperties;
+import com.zg.ai.entity.po.DocumentChunk;
+import com.zg.ai.repository.DocumentChunkRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 进程内倒排索引（BM25）：分块入库时增量写入，文档删除时整篇移除；
+ * 内存中保存倒排表及分块原文，变更追加到磁盘日志并定期压缩成快照，重启时从本地文件恢复，不再从 MySQL 重建。
+ * 只有本地还没有快照时（首次启用），才在启动后从 document_chunk 表导入一次
+ */
+@Slf4j
+@Component
+public class LexicalIndex {
+
+    /**
+     * 共享知识库分块的归属键（用户 ID 不会为空串）
+     */
+    public static final String SHARED_OWNER = "";
+
+    private final RetrievalProperties.Lexical config;
+    private final DocumentChunkRepository documentChunkRepository;
+    private final ObjectMapper objectMapper;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // 压缩可能同时由定时任务、首次导入完成及关闭触发，逐个执行
+    private final ReentrantLock compactionLock = new ReentrantLock();
+
+    // 内部编号 → 分块；删除的编号先记为失效，倒排表中的失效项在压缩时清理，之后编号才回收复用
+    private final List<Entry> entries = new ArrayList<>();
+    private final BitSet dead = new BitSet();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private final Map<String, Integer> slotsByVectorId = new HashMap<>();
+    private final Map<String, Set<Integer>> slotsByDocument = new HashMap<>();
+    // 归属（用户或共享）→ 分块编号，及每个归属的变更版本
+    private final Map<String, Set<Integer>> slotsByOwner = new HashMap<>();
+    private final Map<String, Long> ownerVersions = new HashMap<>();
+    // 归属 → 词 → 倒排表，检索只读本人和共享的倒排表；词的文档频率（不含失效项）全局统计
+    private final Map<String, Map<String, Postings>> postingsByOwner = new HashMap<>();
+    private final Map<String, Integer> documentFrequencies = new HashMap<>();
+    private long totalLength;
+
+    private final LexicalJournal journal;
+    private final boolean bootstrapRequired;
+    private final Disposable compactions;
+    private volatile boolean ready;
+
+    public LexicalIndex(RetrievalProperties properties, DocumentChunkRepository documentChunkRepository,
+            ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.config = properties.getLexical();
+        this.documentChunkRepository = documentChunkRepository;
+        this.objectMapper = objectMapper;
+        this.journal = config.isEnabled() ? openJournal() : null;
+        this.bootstrapRequired = journal != null && !journal.hasSnapshot();
+        if (journal != null) {
+            load();
+        }
+        this.compactions = journal == null ? null : Flux.interval(config.getSnapshotInterval())
+                .onBackpressureDrop()
+                .subscribe(tick -> compact(false));
+        meterRegistry.gauge("rag.lexical.chunks", this, LexicalIndex::size);
+    }
+
+    /**
+     * 索引可用（已从本地文件恢复或首次导入完成）
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotsByVectorId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 归属下的分块数
+     *
+     * @param owner 用户 ID（其非共享分块），或 SHARED_OWNER（共享分块）
+     */
+    public int count(String owner) {
+        lock.readLock().lock();
+        try {
+            Set<Integer> slots = slotsByOwner.get(owner);
+            return slots == null ? 0 : slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 归属下的全部分块
+     */
+    public List<IndexedChunk> chunks(String owner) {
+        lock.readLock().lock();
+        try {
+            Set<Integer> slots = slotsByOwner.getOrDefault(owner, Set.of());
+            List<IndexedChunk> chunks = new ArrayList<>(slots.size());
+            for (int slot : slots) {
+                chunks.add(entries.get(slot).chunk);
+            }
+            return chunks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 归属的变更版本，该归属下每次增删分块都会递增，用于判断据此构建的派生数据是否过期
+     */
+    public long version(String owner) {
+        lock.readLock().lock();
+        try {
+            return ownerVersions.getOrDefault(owner, 0L);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 写入分块（与向量库写入的是同一批文档），同一 vectorId 重复写入时覆盖
+     */
+    public void addAll(Collection<Document> documents) {
+        if (journal == null || documents.isEmpty()) {
+            return;
+        }
+        List<IndexedChunk> chunks = documents.stream()
+                .filter(document -> document.getText() != null)
+                .map(IndexedChunk::of)
+                .toList();
+        lock.writeLock().lock();
+        try {
+            chunks.forEach(this::insert);
+            journal.appendAdd(chunks);
+        } catch (IOException e) {
+            log.warn("词法索引日志写入失败，{} 个分块将在下次快照时持久化", chunks.size(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除文档的全部分块
+     */
+    public void removeDocument(String documentId) {
+        if (journal == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeAll(documentId);
+            journal.appendDeleteDocument(documentId);
+        } catch (IOException e) {
+            log.warn("词法索引日志写入失败，文档 {} 的删除将在下次快照时持久化", documentId, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * BM25 检索：范围与向量检索一致（本人文档 + 共享文档，可再限定文档），按得分降序返回至多 limit 个
+     *
+     * @param documentIds 用户指定的文档范围，为空表示不限
+     */
+    public List<Hit> search(String query, String userId, Collection<String> documentIds, int limit) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(CjkTokenizer.tokenize(query)));
+        if (!ready || terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Set<String> scope = documentIds == null || documentIds.isEmpty() ? null : new HashSet<>(documentIds);
+        double k1 = config.getK1();
+        double b = config.getB();
+        lock.readLock().lock();
+        try {
+            int count = slotsByVectorId.size();
+            if (count == 0) {
+                return List.of();
+            }
+            double averageLength = (double) totalLength / count;
+            List<Map<String, Postings>> visible = new ArrayList<>(2);
+            for (String owner : userId == null ? List.of(SHARED_OWNER) : List.of(userId, SHARED_OWNER)) {
+                Map<String, Postings> owned = postingsByOwner.get(owner);
+                if (owned != null) {
+                    visible.add(owned);
+                }
+            }
+            Map<Integer, double[]> scores = new HashMap<>();
+            for (String term : terms) {
+                Integer frequency = documentFrequencies.get(term);
+                if (frequency == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (count - frequency + 0.5) / (frequency + 0.5));
+                for (Map<String, Postings> owned : visible) {
+                    Postings list = owned.get(term);
+                    if (list == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < list.size; i++) {
+                        int slot = list.slots[i];
+                        if (dead.get(slot)) {
+                            continue;
+                        }
+                        Entry entry = entries.get(slot);
+                        if (scope != null && !scope.contains(entry.chunk.documentId())) {
+                            continue;
+                        }
+                        int tf = list.frequencies[i];
+                        double norm = tf + k1 * (1 - b + b * entry.length / averageLength);
+                        double[] score = scores.computeIfAbsent(slot, key -> new double[2]);
+                        score[0] += idf * tf * (k1 + 1) / norm;
+                        score[1]++;
+                    }
+                }
+            }
+            PriorityQueue<Hit> top = new PriorityQueue<>(Comparator.comparingDouble(Hit::score));
+            scores.forEach((slot, score) -> {
+                top.add(new Hit(entries.get(slot).chunk, score[0], score[1] / terms.size()));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            });
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort(Comparator.comparingDouble(Hit::score).reversed());
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 本地还没有快照时从 document_chunk 表导入已有分块并写出首个快照，之后只靠本地快照和日志恢复
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrap() {
+        if (!bootstrapRequired) {
+            return;
+        }
+        log.info("本地没有词法索引，从 document_chunk 导入已有分块");
+        documentChunkRepository.findAll()
+                .mapNotNull(this::toIndexedChunk)
+                .buffer(500)
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(chunks -> {
+                    lock.writeLock().lock();
+                    try {
+                        chunks.forEach(this::insert);
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                })
+                .then()
+                .doOnSuccess(done -> {
+                    ready = true;
+                    compact(true);
+                    log.info("词法索引导入完成，共 {} 个分块", size());
+                })
+                .subscribe(null, e -> log.error("词法索引导入失败，暂按纯向量检索", e));
+    }
+
+    /**
+     * 把快照之后的日志压缩进新快照，并清理倒排表中已删除分块的失效项；日志切换在写锁内完成，
+     * 快照写入不阻塞检索和写入。多处触发的压缩逐个执行，不会并发轮转日志或写同一个临时快照文件
+     *
+     * @param force 日志为空时也写快照（首次导入完成后）
+     */
+    public void compact(boolean force) {
+        if (journal == null || !ready) {
+            return;
+        }
+        compactionLock.lock();
+        try {
+            List<IndexedChunk> chunks;
+            lock.writeLock().lock();
+            try {
+                purgeDead();
+                if (!force && journal.pending() == 0) {
+                    return;
+                }
+                chunks = new ArrayList<>(slotsByVectorId.size());
+                for (Entry entry : entries) {
+                    if (entry != null) {
+                        chunks.add(entry.chunk);
+                    }
+                }
+                journal.rotate();
+            } catch (IOException e) {
+                log.warn("词法索引日志切换失败", e);
+                return;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            try {
+                journal.writeSnapshot(chunks);
+                log.debug("词法索引快照已更新，共 {} 个分块", chunks.size());
+            } catch (IOException e) {
+                log.warn("词法索引快照写入失败，下次压缩时重试", e);
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (compactions != null) {
+            compactions.dispose();
+        }
+        compact(false);
+        if (journal != null) {
+            compactionLock.lock();
+            try {
+                journal.close();
+            } finally {
+                compactionLock.unlock();
+            }
+        }
+    }
+
+    private LexicalJournal openJournal() {
+        try {
+            return new LexicalJournal(Paths.get(config.getPath()));
+        } catch (IOException e) {
+            log.error("无法创建词法索引目录 {}，停用词法检索", config.getPath(), e);
+            return null;
+        }
+    }
+
+    // 重放本地快照和日志；没有快照时（首次启用或首次导入中途退出）日志内容先放进内存，等启动后导入完成再就绪
+    private void load() {
+        lock.writeLock().lock();
+        try {
+            journal.replay(this::insert, this::removeAll);
+            ready = !bootstrapRequired;
+        } catch (IOException e) {
+            log.error("词法索引恢复失败，暂按纯向量检索", e);
+            return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (ready) {
+            log.info("词法索引已从本地恢复，共 {} 个分块", size());
+            // 把重放过的日志并入快照，同时丢掉日志末尾可能不完整的记录
+            compact(false);
+        }
+    }
+
+    private IndexedChunk toIndexedChunk(DocumentChunk chunk) {
+        try {
+            Map<?, ?> metadata = objectMapper.readValue(chunk.getMetadata(), Map.class);
+            Object vectorId = metadata.get(DocumentMetadata.VECTOR_ID);
+            if (vectorId == null || chunk.getContent() == null) {
+                return null;
+            }
+            Object userId = metadata.get(DocumentMetadata.USER_ID);
+            Object filename = metadata.get(DocumentMetadata.ORIGINAL_FILENAME);
+            return new IndexedChunk(vectorId.toString(), chunk.getDocumentId(),
+                    userId == null ? null : userId.toString(),
+                    Boolean.parseBoolean(String.valueOf(metadata.get(DocumentMetadata.SHARED))),
+                    filename == null ? null : filename.toString(), chunk.getContent());
+        } catch (Exception e) {
+            log.warn("解析文档分块元数据失败: {}", chunk.getId(), e);
+            return null;
+        }
+    }
+
+    private static String ownerOf(IndexedChunk chunk) {
+        return chunk.shared() ? SHARED_OWNER : chunk.userId();
+    }
+
+    // 以下方法须持有写锁
+
+    private void insert(IndexedChunk chunk) {
+        Integer existing = slotsByVectorId.get(chunk.vectorId());
+        if (existing != null) {
+            remove(existing);
+        }
+        Map<String, Integer> frequencies = new HashMap<>();
+        List<String> tokens = CjkTokenizer.tokenize(chunk.text());
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        Entry entry = new Entry(chunk, tokens.size(), frequencies.keySet().toArray(String[]::new));
+        int slot;
+        if (freeSlots.isEmpty()) {
+            slot = entries.size();
+            entries.add(entry);
+        } else {
+            slot = freeSlots.poll();
+            entries.set(slot, entry);
+        }
+        String owner = ownerOf(chunk);
+        // 不属于任何用户也未共享的分块对谁都不可见，只计入统计
+        Map<String, Postings> owned = owner == null ? null
+                : postingsByOwner.computeIfAbsent(owner, id -> new HashMap<>());
+        frequencies.forEach((term, tf) -> {
+            documentFrequencies.merge(term, 1, Integer::sum);
+            if (owned != null) {
+                owned.computeIfAbsent(term, t -> new Postings()).add(slot, tf);
+            }
+        });
+        slotsByVectorId.put(chunk.vectorId(), slot);
+        if (chunk.documentId() != null) {
+            slotsByDocument.computeIfAbsent(chunk.documentId(), id -> new HashSet<>()).add(slot);
+        }
+        if (owner != null) {
+            slotsByOwner.computeIfAbsent(owner, id -> new HashSet<>()).add(slot);
+            ownerVersions.merge(owner, 1L, Long::sum);
+        }
+        totalLength += entry.length;
+    }
+
+    private void removeAll(String documentId) {
+        Set<Integer> slots = slotsByDocument.get(documentId);
+        if (slots == null) {
+            return;
+        }
+        for (Integer slot : List.copyOf(slots)) {
+            remove(slot);
+        }
+    }
+
+    // 倒排表中的项只记为失效，不在写锁内扫描倒排表；失效项在压缩时清理
+    private void remove(int slot) {
+        Entry entry = entries.get(slot);
+        for (String term : entry.terms) {
+            documentFrequencies.computeIfPresent(term, (t, frequency) -> frequency > 1 ? frequency - 1 : null);
+        }
+        slotsByVectorId.remove(entry.chunk.vectorId());
+        Set<Integer> documentSlots = slotsByDocument.get(entry.chunk.documentId());
+        if (documentSlots != null) {
+            documentSlots.remove(slot);
+            if (documentSlots.isEmpty()) {
+                slotsByDocument.remove(entry.chunk.documentId());
+            }
+        }
+        String owner = ownerOf(entry.chunk);
+        Set<Integer> ownerSlots = owner == null ? null : slotsByOwner.get(owner);
+        if (ownerSlots != null) {
+            ownerSlots.remove(slot);
+            if (ownerSlots.isEmpty()) {
+                slotsByOwner.remove(owner);
+            }
+            ownerVersions.merge(owner, 1L, Long::sum);
+        }
+        totalLength -= entry.length;
+        entries.set(slot, null);
+        dead.set(slot);
+    }
+
+    // 从倒排表中去掉失效项，之后失效的编号才可复用
+    private void purgeDead() {
+        if (dead.isEmpty()) {
+            return;
+        }
+        for (Iterator<Map<String, Postings>> owners = postingsByOwner.values().iterator(); owners.hasNext(); ) {
+            Map<String, Postings> owned = owners.next();
+            owned.values().removeIf(list -> list.purge(dead) == 0);
+            if (owned.isEmpty()) {
+                owners.remove();
+            }
+        }
+        for (int slot = dead.nextSetBit(0); slot >= 0; slot = dead.nextSetBit(slot + 1)) {
+            freeSlots.add(slot);
+        }
+        dead.clear();
+    }
+
+    /**
+     * 一个检索命中
+     *
+     * @param chunk    命中的分块
+     * @param score    BM25 得分
+     * @param coverage 查询词（去重后）在分块中出现的比例，0~1
+     */
+    public record Hit(IndexedChunk chunk, double score, double coverage) {
+    }
+
+    private record Entry(IndexedChunk chunk, int length, String[] terms) {
+    }
+
+    // 一个词的倒排表：分块编号及词频，可能含已删除分块的失效项
+    private static final class Postings {
+        private int[] slots = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        void add(int slot, int frequency) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            slots[size] = slot;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        // 去掉失效项，返回剩余项数
+        int purge(BitSet dead) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!dead.get(slots[i])) {
+                    slots[kept] = slots[i];
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            return size;
+        }
+    }
+}
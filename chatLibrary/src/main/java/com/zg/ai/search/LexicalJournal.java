@@ -0,0 +1,288 @@
+package com.zg.ai.search;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * 词法索引的持久化：快照文件保存全部分块，之后的增删按顺序追加到日志；
+ * 压缩时先把日志换成 journal.old 再写新快照，写完删除旧日志，中途崩溃时按 快照 + 旧日志 + 日志 重放即可恢复。
+ * 日志只刷到操作系统缓冲，不逐条 fsync，进程崩溃不丢，整机掉电最多丢最后几条
+ */
+@Slf4j
+final class LexicalJournal {
+
+    private static final int MAGIC = 0x4c584958;
+    private static final int VERSION = 1;
+    private static final byte OP_ADD = 1;
+    private static final byte OP_DELETE_DOCUMENT = 2;
+
+    private final Path snapshot;
+    private final Path journal;
+    private final Path rotated;
+    private DataOutputStream out;
+    private long pending;
+
+    LexicalJournal(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.snapshot = directory.resolve("snapshot.bin");
+        this.journal = directory.resolve("journal.bin");
+        this.rotated = directory.resolve("journal.old");
+    }
+
+    boolean hasSnapshot() {
+        return Files.exists(snapshot);
+    }
+
+    /**
+     * 按 快照 → 旧日志 → 日志 的顺序重放，之后以追加方式打开日志；
+     * 末尾写了一半（或损坏）的记录被截掉，之后追加的记录紧接在最后一条完整记录之后
+     */
+    synchronized void replay(Consumer<IndexedChunk> onAdd, Consumer<String> onDeleteDocument) throws IOException {
+        if (Files.exists(snapshot)) {
+            try (RecordInput in = open(snapshot)) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("词法索引快照格式不兼容: " + snapshot);
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    onAdd.accept(readChunk(in));
+                }
+            }
+        }
+        for (Path file : new Path[]{rotated, journal}) {
+            if (!Files.exists(file)) {
+                continue;
+            }
+            long valid = 0;
+            try (RecordInput in = open(file)) {
+                while (true) {
+                    byte op = in.readByte();
+                    if (op == OP_ADD) {
+                        onAdd.accept(readChunk(in));
+                    } else if (op == OP_DELETE_DOCUMENT) {
+                        onDeleteDocument.accept(readString(in));
+                    } else {
+                        break;
+                    }
+                    pending++;
+                    valid = in.position();
+                }
+            } catch (EOFException e) {
+                // 读到文件末尾（或末尾不完整的记录）
+            }
+            truncate(file, valid);
+        }
+        out = appender();
+    }
+
+    // 截掉最后一条完整记录之后的内容，避免新记录追加在残缺记录之后
+    private static void truncate(Path file, long valid) throws IOException {
+        long size = Files.size(file);
+        if (valid >= size) {
+            return;
+        }
+        log.warn("词法索引日志 {} 末尾有 {} 字节不完整或损坏的记录，已截掉", file, size - valid);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(valid);
+        }
+    }
+
+    synchronized void appendAdd(Collection<IndexedChunk> chunks) throws IOException {
+        DataOutputStream out = writer();
+        for (IndexedChunk chunk : chunks) {
+            out.writeByte(OP_ADD);
+            writeChunk(out, chunk);
+        }
+        out.flush();
+        pending += chunks.size();
+    }
+
+    synchronized void appendDeleteDocument(String documentId) throws IOException {
+        DataOutputStream out = writer();
+        out.writeByte(OP_DELETE_DOCUMENT);
+        writeString(out, documentId);
+        out.flush();
+        pending++;
+    }
+
+    /**
+     * 快照之后累积的日志记录数
+     */
+    synchronized long pending() {
+        return pending;
+    }
+
+    /**
+     * 换出当前日志，之后的写入进入新日志；上次压缩未完成留下的旧日志保留，新换出的内容接在其后
+     */
+    synchronized void rotate() throws IOException {
+        writer().close();
+        if (Files.exists(rotated)) {
+            try (OutputStream target = Files.newOutputStream(rotated, StandardOpenOption.APPEND)) {
+                Files.copy(journal, target);
+            }
+            Files.delete(journal);
+        } else {
+            Files.move(journal, rotated, StandardCopyOption.ATOMIC_MOVE);
+        }
+        out = appender();
+        pending = 0;
+    }
+
+    /**
+     * 写入新快照（先写临时文件再原子替换），成功后删除已并入快照的旧日志
+     */
+    void writeSnapshot(Collection<IndexedChunk> chunks) throws IOException {
+        Path temp = snapshot.resolveSibling("snapshot.tmp");
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(chunks.size());
+            for (IndexedChunk chunk : chunks) {
+                writeChunk(data, chunk);
+            }
+        }
+        Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(rotated);
+    }
+
+    synchronized void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.warn("关闭词法索引日志失败", e);
+        }
+    }
+
+    // 恢复失败时日志未打开，变更只保留在内存中
+    private DataOutputStream writer() throws IOException {
+        if (out == null) {
+            throw new IOException("词法索引日志未打开");
+        }
+        return out;
+    }
+
+    private DataOutputStream appender() throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(journal,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+    }
+
+    private static RecordInput open(Path path) throws IOException {
+        return new RecordInput(new CountingInputStream(new BufferedInputStream(Files.newInputStream(path)),
+                Files.size(path)));
+    }
+
+    private static void writeChunk(DataOutputStream out, IndexedChunk chunk) throws IOException {
+        writeString(out, chunk.vectorId());
+        writeString(out, chunk.documentId());
+        writeString(out, chunk.userId());
+        out.writeBoolean(chunk.shared());
+        writeString(out, chunk.originalFilename());
+        writeString(out, chunk.text());
+    }
+
+    private static IndexedChunk readChunk(RecordInput in) throws IOException {
+        return new IndexedChunk(readString(in), readString(in), readString(in), in.readBoolean(),
+                readString(in), readString(in));
+    }
+
+    // 长度前缀的 UTF-8（writeUTF 限 64KB，分块文本可能更长），-1 表示 null
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(RecordInput in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        // 残缺记录的长度可能是任意值，超出文件剩余字节时按不完整处理，不按其分配内存
+        if (length < 0 || length > in.remaining()) {
+            throw new EOFException("记录不完整");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 记录读取流，可查询已读取的字节数及文件剩余字节数
+     */
+    private static final class RecordInput extends DataInputStream {
+        private final CountingInputStream counter;
+
+        RecordInput(CountingInputStream counter) {
+            super(counter);
+            this.counter = counter;
+        }
+
+        long position() {
+            return counter.position;
+        }
+
+        long remaining() {
+            return counter.size - counter.position;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private final long size;
+        private long position;
+
+        CountingInputStream(InputStream in, long size) {
+            super(in);
+            this.size = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                position++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            position += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.zg.ai.search;
+
+/**
+ * 基于原始类型数组的定长小顶堆，保留得分最高的 k 个（得分 + 编号），不装箱、不分配节点对象
+ */
+final class TopK {
+
+    private final float[] scores;
+    private final int[] ids;
+    private int size;
+
+    TopK(int k) {
+        this.scores = new float[Math.max(1, k)];
+        this.ids = new int[scores.length];
+    }
+
+    void offer(float score, int id) {
+        if (size < scores.length) {
+            scores[size] = score;
+            ids[size] = id;
+            siftUp(size++);
+        } else if (score > scores[0]) {
+            scores[0] = score;
+            ids[0] = id;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * 依次弹出，得到得分降序的编号；调用后堆被清空
+     *
+     * @param scoresOut 与返回编号同序的得分
+     */
+    int[] drainDescending(float[] scoresOut) {
+        int[] result = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = ids[0];
+            scoresOut[i] = scores[0];
+            size--;
+            scores[0] = scores[size];
+            ids[0] = ids[size];
+            siftDown(0);
+        }
+        return result;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= scores[index]) {
+                return;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left + 1 < size && scores[left + 1] < scores[left] ? left + 1 : left;
+            if (scores[index] <= scores[smallest]) {
+                return;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+    }
+}
@@ -0,0 +1,181 @@
+package com.zg.ai.search;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 一个归属（用户或共享知识库）的分块向量，连续存放在堆外直接内存中：
+ * 浮点模式每维 4 字节；int8 模式每维 1 字节（按向量对称量化，另存每个向量的缩放系数），内存为四分之一。
+ * 向量入块时归一化，点积即余弦相似度；打分时逐批整段拷到堆上缓冲，再用展开循环计算
+ */
+final class VectorBlock {
+
+    private static final int BATCH = 64;
+
+    private final IndexedChunk[] chunks;
+    private final int dimensions;
+    private final long version;
+    private final FloatBuffer floats;
+    private final ByteBuffer bytes;
+    private final float[] scales;
+
+    private VectorBlock(IndexedChunk[] chunks, int dimensions, long version, FloatBuffer floats, ByteBuffer bytes,
+            float[] scales) {
+        this.chunks = chunks;
+        this.dimensions = dimensions;
+        this.version = version;
+        this.floats = floats;
+        this.bytes = bytes;
+        this.scales = scales;
+    }
+
+    static VectorBlock of(List<IndexedChunk> chunks, List<float[]> vectors, long version, boolean quantized) {
+        int count = chunks.size();
+        int dimensions = count == 0 ? 0 : vectors.get(0).length;
+        IndexedChunk[] packed = chunks.toArray(IndexedChunk[]::new);
+        if (!quantized) {
+            FloatBuffer floats = ByteBuffer.allocateDirect(count * dimensions * Float.BYTES)
+                    .order(ByteOrder.nativeOrder()).asFloatBuffer();
+            for (int i = 0; i < count; i++) {
+                floats.put(i * dimensions, normalize(vectors.get(i)));
+            }
+            return new VectorBlock(packed, dimensions, version, floats, null, null);
+        }
+        ByteBuffer bytes = ByteBuffer.allocateDirect(count * dimensions);
+        float[] scales = new float[count];
+        byte[] quantizedVector = new byte[dimensions];
+        for (int i = 0; i < count; i++) {
+            float[] vector = normalize(vectors.get(i));
+            float max = 0;
+            for (float value : vector) {
+                max = Math.max(max, Math.abs(value));
+            }
+            float scale = max == 0 ? 1 : max / 127;
+            for (int d = 0; d < dimensions; d++) {
+                quantizedVector[d] = (byte) Math.round(vector[d] / scale);
+            }
+            bytes.put(i * dimensions, quantizedVector);
+            scales[i] = scale;
+        }
+        return new VectorBlock(packed, dimensions, version, null, bytes, scales);
+    }
+
+    long version() {
+        return version;
+    }
+
+    int size() {
+        return chunks.length;
+    }
+
+    IndexedChunk chunk(int index) {
+        return chunks[index];
+    }
+
+    /**
+     * 堆外内存字节数
+     */
+    long bytes() {
+        return floats != null ? (long) floats.capacity() * Float.BYTES : bytes != null ? bytes.capacity() : 0;
+    }
+
+    /**
+     * 对块内（限定文档范围的）全部分块打分，放入 top；编号为 base + 块内下标
+     *
+     * @param query       已归一化的查询向量
+     * @param documentIds 文档范围，为空表示不限
+     */
+    void scan(float[] query, Set<String> documentIds, TopK top, int base) {
+        if (chunks.length == 0 || query.length != dimensions) {
+            return;
+        }
+        if (floats != null) {
+            scanFloats(query, documentIds, top, base);
+        } else {
+            scanBytes(query, documentIds, top, base);
+        }
+    }
+
+    private void scanFloats(float[] query, Set<String> documentIds, TopK top, int base) {
+        float[] batch = new float[BATCH * dimensions];
+        for (int start = 0; start < chunks.length; start += BATCH) {
+            int count = Math.min(BATCH, chunks.length - start);
+            floats.get(start * dimensions, batch, 0, count * dimensions);
+            for (int i = 0; i < count; i++) {
+                if (documentIds == null || documentIds.contains(chunks[start + i].documentId())) {
+                    top.offer(dot(query, batch, i * dimensions, dimensions), base + start + i);
+                }
+            }
+        }
+    }
+
+    private void scanBytes(float[] query, Set<String> documentIds, TopK top, int base) {
+        byte[] batch = new byte[BATCH * dimensions];
+        for (int start = 0; start < chunks.length; start += BATCH) {
+            int count = Math.min(BATCH, chunks.length - start);
+            bytes.get(start * dimensions, batch, 0, count * dimensions);
+            for (int i = 0; i < count; i++) {
+                if (documentIds == null || documentIds.contains(chunks[start + i].documentId())) {
+                    float score = dot(query, batch, i * dimensions, dimensions) * scales[start + i];
+                    top.offer(score, base + start + i);
+                }
+            }
+        }
+    }
+
+    // 四路累加的展开循环，减少循环开销并打破加法依赖链
+    private static float dot(float[] query, float[] vectors, int offset, int dimensions) {
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int d = 0;
+        for (; d + 3 < dimensions; d += 4) {
+            s0 += query[d] * vectors[offset + d];
+            s1 += query[d + 1] * vectors[offset + d + 1];
+            s2 += query[d + 2] * vectors[offset + d + 2];
+            s3 += query[d + 3] * vectors[offset + d + 3];
+        }
+        for (; d < dimensions; d++) {
+            s0 += query[d] * vectors[offset + d];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private static float dot(float[] query, byte[] vectors, int offset, int dimensions) {
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int d = 0;
+        for (; d + 3 < dimensions; d += 4) {
+            s0 += query[d] * vectors[offset + d];
+            s1 += query[d + 1] * vectors[offset + d + 1];
+            s2 += query[d + 2] * vectors[offset + d + 2];
+            s3 += query[d + 3] * vectors[offset + d + 3];
+        }
+        for (; d < dimensions; d++) {
+            s0 += query[d] * vectors[offset + d];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+}
@@ -1,12 +1,14 @@
 package com.zg.ai.service;
 
+import com.zg.ai.entity.dto.chat.ChatDelta;
 import com.zg.ai.entity.dto.chat.ChatMessageDTO;
 import com.zg.ai.entity.dto.chat.ChatHistoryDTO;
+import com.zg.ai.entity.dto.chat.ChatRequest;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface ChatService {
-    Flux<String> chat(String prompt, String chatId, String userId);
+    Flux<ChatDelta> chat(ChatRequest request);
 
     Mono<String> createConversation(String userId, String title);
 
@@ -0,0 +1,14 @@
+package com.zg.ai.service;
+
+import com.zg.ai.entity.po.ChatSummary;
+import reactor.core.publisher.Mono;
+
+public interface ConversationSummaryService {
+    boolean isEnabled();
+
+    Mono<ChatSummary> getSummary(String historyId);
+
+    void summarizeInBackground(String historyId);
+
+    Mono<Void> deleteSummary(String historyId);
+}
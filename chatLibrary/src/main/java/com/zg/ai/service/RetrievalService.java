@@ -0,0 +1,10 @@
+package com.zg.ai.service;
+
+import org.springframework.ai.document.Document;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface RetrievalService {
+    Mono<List<Document>> retrieve(String query, String userId, List<String> documentIds);
+}
@@ -1,30 +1,60 @@
 package com.zg.ai.service.impl;
 
+import com.zg.ai.cache.RetrievalKey;
+import com.zg.ai.cache.SemanticAnswerCache;
+import com.zg.ai.config.properties.ChatProperties;
+import com.zg.ai.context.ContextBuilder;
+import com.zg.ai.context.PackedContext;
+import com.zg.ai.entity.dto.chat.ChatDelta;
 import com.zg.ai.entity.dto.chat.ChatHistoryDTO;
 import com.zg.ai.entity.dto.chat.ChatMessageDTO;
+import com.zg.ai.entity.dto.chat.ChatRequest;
 import com.zg.ai.entity.po.ChatHistory;
 import com.zg.ai.entity.po.ChatMessage;
+import com.zg.ai.entity.po.ChatReasoning;
+import com.zg.ai.entity.po.ChatSummary;
+import com.zg.ai.llm.ChatClientRouter;
+import com.zg.ai.llm.LlmRejectedException;
+import com.zg.ai.llm.LlmScheduler;
+import com.zg.ai.llm.ModelRouter;
+import com.zg.ai.llm.ReasoningParser;
+import com.zg.ai.enums.MessageStatus;
 import com.zg.ai.repository.ChatHistoryRepository;
+import com.zg.ai.repository.ChatMessageBatchWriter;
 import com.zg.ai.repository.ChatMessageRepository;
+import com.zg.ai.repository.ChatReasoningRepository;
+import com.zg.ai.repository.PersistentChatMemoryRepository;
 import com.zg.ai.service.ChatService;
+import com.zg.ai.service.ConversationSummaryService;
+import com.zg.ai.service.RetrievalService;
+import com.zg.ai.utils.GzipUtil;
+import com.zg.ai.utils.SingleFlight;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.ollama.api.OllamaChatOptions;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 聊天服务实现类：处理 RAG 检索、对话历史管理及 AI 流式响应
@@ -34,93 +64,352 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ChatServiceImpl implements ChatService {
 
-    private final ChatClient chatClient;
-    private final VectorStore vectorStore;
+    // Ollama 在最后一个流式响应中返回的提示词处理耗时
+    private static final String PROMPT_EVAL_DURATION = "prompt-eval-duration";
+
+    private final ChatClientRouter chatClientRouter;
+    private final LlmScheduler llmScheduler;
+    private final ModelRouter modelRouter;
+    private final ChatMemory chatMemory;
+    private final ContextBuilder contextBuilder;
+    private final ConversationSummaryService conversationSummaryService;
     private final ChatHistoryRepository chatHistoryRepository;
     private final ChatMessageRepository chatMessageRepository;
-    
-    // 缓存 RAG 检索结果，键为用户输入，值为文档列表
-    private final Map<String, List<Document>> retrievalCache = new ConcurrentHashMap<>();
+    private final ChatMessageBatchWriter chatMessageBatchWriter;
+    private final ChatReasoningRepository chatReasoningRepository;
+    private final RetrievalService retrievalService;
+    private final SemanticAnswerCache semanticAnswerCache;
+    private final ChatProperties chatProperties;
+    private final MeterRegistry meterRegistry;
+
+    private SingleFlight<GenerationKey> generationFlight;
+
+    @PostConstruct
+    public void init() {
+        generationFlight = new SingleFlight<>("generation", meterRegistry);
+    }
 
     @Override
-    public Flux<String> chat(String prompt, String chatId, String userId) {
-        // 1. 确保对话历史存在，若不存在则创建新历史记录
-        return chatHistoryRepository.findById(chatId)
+    public Flux<ChatDelta> chat(ChatRequest request) {
+        String prompt = request.getPrompt();
+        String chatId = request.getChatId();
+        String userId = request.getUserId();
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            // 1. 对话历史与用户消息的持久化和检索并行执行，失败时后台重试，不阻塞首个 token
+            persistTurnStart(prompt, chatId, userId);
+
+            // 2. RAG 检索完成后立即构造提示词并调用模型
+            StringBuilder fullResponse = new StringBuilder();
+            StringBuilder reasoning = new StringBuilder();
+            boolean[] firstToken = {true};
+            long[] deltaCount = {0};
+            PackedContext[] packed = {null};
+            ModelRouter.ModelChoice[] routed = {null};
+            return Mono.zip(retrievalService.retrieve(prompt, userId, request.getDocumentIds()), loadMemory(chatId),
+                            loadSummary(chatId))
+                    .map(tuple -> contextBuilder.build(prompt, tuple.getT1(), uncovered(tuple.getT2(), tuple.getT3()),
+                            tuple.getT3().map(ChatSummary::getSummary).orElse(null)))
+                    .doOnNext(context -> {
+                        packed[0] = context;
+                        // 按问题难度选择模型，简单问题交给小模型
+                        routed[0] = modelRouter.route(prompt, context, request.getModelTier());
+                    })
+                    .flatMapMany(context -> answer(chatId, userId, prompt, context, routed[0]))
+                    .doOnNext(delta -> {
+                        if (delta.type() == ChatDelta.Type.QUEUED) {
+                            return;
+                        }
+                        if (firstToken[0]) {
+                            firstToken[0] = false;
+                            // 按首轮/后续轮次及提示词布局区分，用于对比前缀复用对后续轮次首字延迟的影响
+                            Timer.builder("chat.ttft")
+                                    .description("从收到请求到第一个响应片段的耗时")
+                                    .tags(turnTags(packed[0], routed[0]))
+                                    .publishPercentiles(0.5, 0.95, 0.99)
+                                    .register(meterRegistry)
+                                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        }
+                        deltaCount[0]++;
+                        (delta.isAnswer() ? fullResponse : reasoning).append(delta.text());
+                    })
+                    // 3. 保存助手消息；客户端断开时取消信号沿链路传到模型的 HTTP 流，已生成的部分标记为已取消后保存
+                    .doOnComplete(() -> {
+                        generationTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        rememberTurn(chatId, prompt, fullResponse.toString());
+                        saveAssistantMessage(chatId, fullResponse.toString(), reasoning.toString(),
+                                MessageStatus.COMPLETED);
+                    })
+                    .doOnCancel(() -> {
+                        recordCancellation(deltaCount[0], System.nanoTime() - start);
+                        if (!fullResponse.isEmpty() || !reasoning.isEmpty()) {
+                            saveAssistantMessage(chatId, fullResponse.toString(), reasoning.toString(),
+                                    MessageStatus.CANCELLED);
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (e instanceof LlmRejectedException) {
+                            log.warn("会话 {} 的模型请求被拒绝: {}", chatId, e.getMessage());
+                        } else {
+                            log.error("聊天流处理出错: {}", e.getMessage(), e);
+                        }
+                    })
+                    // 推理过程照常记录，只在请求时才发给客户端
+                    .filter(delta -> request.isIncludeReasoning() || delta.type() != ChatDelta.Type.REASONING);
+        });
+    }
+
+    // 确保对话历史存在（不存在则创建），同时写入用户消息；两者无先后依赖，并行执行
+    private void persistTurnStart(String prompt, String chatId, String userId) {
+        Mono<ChatHistory> history = chatHistoryRepository.findById(chatId)
                 .switchIfEmpty(Mono.defer(() -> {
                     ChatHistory newHistory = new ChatHistory();
-                    newHistory.setId(chatId); 
+                    newHistory.setId(chatId);
                     newHistory.setUserId(userId);
                     newHistory.setTitle(prompt.length() > 20 ? prompt.substring(0, 20) + "..." : prompt);
                     newHistory.setUpdateAt(LocalDateTime.now());
                     return chatHistoryRepository.save(newHistory);
-                }))
-                .flatMap(history -> {
-                    // 2. 保存用户消息
-                    ChatMessage userMessage = new ChatMessage();
-                    userMessage.setHistoryId(chatId);
-                    userMessage.setMessageType("USER");
-                    userMessage.setContent(prompt);
-                    userMessage.setUpdateAt(LocalDateTime.now());
-                    return chatMessageRepository.save(userMessage).thenReturn(history);
-                })
-                .flatMapMany(history -> {
-                    // 3. RAG 检索（阻塞式调用 VectorStore，在 boundedElastic 线程池执行）
-                    return Mono.fromCallable(() -> {
-                        return retrievalCache.computeIfAbsent(prompt, k -> {
-                            SearchRequest searchRequest = SearchRequest.builder()
-                                    .query(k)
-                                    .topK(4)
-                                    .similarityThreshold(0.6)
-                                    .build();
-                            return vectorStore.similaritySearch(searchRequest);
+                }));
+
+        // 用户消息交给批量写入器；写入为幂等 upsert，重试不会主键冲突，缓冲区已满时同样退避重试
+        ChatMessage userMessage = new ChatMessage();
+        userMessage.setHistoryId(chatId);
+        userMessage.setMessageType("USER");
+        userMessage.setContent(prompt);
+        Mono<Void> message = chatMessageBatchWriter.write(userMessage);
+
+        Mono.when(history, message)
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(200)))
+                .subscribe(
+                        unused -> {
+                        },
+                        err -> {
+                            meterRegistry.counter("chat.persistence.failures", "stage", "turn-start").increment();
+                            log.error("保存对话历史或用户消息失败: {}", err.getMessage(), err);
                         });
-                    }).subscribeOn(Schedulers.boundedElastic())
-                    .flatMapMany(similarDocuments -> {
-                        String context = similarDocuments.stream()
-                                .map(Document::getText)
-                                .collect(Collectors.joining("\n\n"));
-
-                        // 4. 构造系统提示词
-                        String systemPrompt = String.format("""
-                                你是本地知识库问答机器人，你的名字叫加藤惠。
-                                请根据以下参考文档回答用户的问题。
-                                如果参考文档中没有相关信息，请根据你的知识回答，但要说明"文档中未找到相关信息"。
-                                
-                                参考文档：
-                                %s
-                                """, context);
-
-                        // 5. 调用 ChatClient 生成流式响应
-                        StringBuilder fullResponse = new StringBuilder();
-                        return chatClient.prompt()
-                                .system(systemPrompt)
-                                .user(prompt)
-                                .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, chatId))
-                                .stream()
-                                .content()
-                                .doOnNext(fullResponse::append)
-                                .doOnComplete(() -> {
-                                    // 6. 保存助手消息
-                                    ChatMessage aiMessage = new ChatMessage();
-                                    aiMessage.setHistoryId(chatId);
-                                    aiMessage.setMessageType("ASSISTANT");
-                                    aiMessage.setContent(fullResponse.toString());
-
-                                    chatMessageRepository.save(aiMessage)
-                                            .subscribe(
-                                                    saved -> log.debug("成功保存 AI 消息: {}", saved),
-                                                    err -> log.error("保存 AI 消息失败: {}", err.getMessage(), err)
-                                            );
-                                    
-                                    if (retrievalCache.size() > 1000) {
-                                        retrievalCache.clear();
-                                    }
-                                })
-                                .doOnError(e -> log.error("聊天流处理出错: {}", e.getMessage(), e));
-                    });
+    }
+
+    // 统计被取消的生成：取消前已收到的流式片段数（片段数不等于 token 数），
+    // 以及按完整生成的平均耗时粗略估算的剩余生成时间（上限估计，实际节省取决于模型何时停止）
+    private void recordCancellation(long deltas, long elapsedNanos) {
+        meterRegistry.counter("chat.cancelled").increment();
+        meterRegistry.counter("chat.cancelled.deltas").increment(deltas);
+        double meanNanos = generationTimer().mean(TimeUnit.NANOSECONDS);
+        if (meanNanos > elapsedNanos) {
+            meterRegistry.timer("chat.cancelled.reclaimed")
+                    .record((long) meanNanos - elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+        log.debug("客户端断开，已取消生成，取消前片段数 {}", deltas);
+    }
+
+    private Timer generationTimer() {
+        return meterRegistry.timer("chat.generation");
+    }
+
+    // 回答正文写入 chat_message，推理过程压缩后单独保存，不参与记忆与历史消息查询
+    private void saveAssistantMessage(String chatId, String content, String reasoning, MessageStatus status) {
+        ChatMessage aiMessage = new ChatMessage();
+        aiMessage.setHistoryId(chatId);
+        aiMessage.setMessageType("ASSISTANT");
+        aiMessage.setContent(content);
+        aiMessage.setStatus(status.name());
+
+        chatMessageBatchWriter.write(aiMessage)
+                .then(Mono.defer(() -> saveReasoning(aiMessage, reasoning)))
+                .retryWhen(Retry.backoff(3, Duration.ofMillis(200)))
+                .subscribe(
+                        unused -> {
+                        },
+                        err -> {
+                            meterRegistry.counter("chat.persistence.failures", "stage", "assistant").increment();
+                            log.error("保存 AI 消息失败: {}", err.getMessage(), err);
+                        },
+                        () -> {
+                            log.debug("成功保存 AI 消息: {}", aiMessage.getId());
+                            // 完整回答落库后检查是否需要压缩较早的对话
+                            if (status == MessageStatus.COMPLETED) {
+                                conversationSummaryService.summarizeInBackground(chatId);
+                            }
+                        });
+    }
+
+    private Mono<Void> saveReasoning(ChatMessage aiMessage, String reasoning) {
+        if (reasoning.isEmpty()) {
+            return Mono.empty();
+        }
+        ChatReasoning record = new ChatReasoning();
+        // 与助手消息共用主键，重试时按更新处理
+        record.setId(aiMessage.getId());
+        record.setMessageId(aiMessage.getId());
+        record.setHistoryId(aiMessage.getHistoryId());
+        return Mono.fromCallable(() -> GzipUtil.compress(reasoning))
+                .doOnNext(compressed -> {
+                    record.setContent(compressed);
+                    record.setOriginalLength(reasoning.length());
+                    meterRegistry.counter("chat.reasoning.chars").increment(reasoning.length());
+                    meterRegistry.counter("chat.reasoning.stored.bytes").increment(compressed.length);
+                })
+                .flatMap(compressed -> chatReasoningRepository.existsById(record.getId()))
+                .doOnNext(exists -> record.setNew(!exists))
+                .flatMap(exists -> chatReasoningRepository.save(record))
+                .then();
+    }
+
+    // 读取对话记忆窗口；热层未命中时会查库，放到 boundedElastic 上与检索并行执行
+    private Mono<List<Message>> loadMemory(String chatId) {
+        return Mono.fromCallable(() -> chatMemory.get(chatId))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // 读取滚动摘要，失败时按没有摘要处理
+    private Mono<Optional<ChatSummary>> loadSummary(String chatId) {
+        return conversationSummaryService.getSummary(chatId)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .onErrorResume(e -> {
+                    log.warn("读取会话 {} 的摘要失败: {}", chatId, e.getMessage());
+                    return Mono.just(Optional.empty());
                 });
     }
 
+    // 只保留尚未并入摘要的消息
+    private List<Message> uncovered(List<Message> history, Optional<ChatSummary> summary) {
+        LocalDateTime coveredUntil = summary.map(ChatSummary::getCoveredUntil).orElse(null);
+        if (coveredUntil == null) {
+            return history;
+        }
+        return history.stream()
+                .filter(message -> !(message.getMetadata().get(PersistentChatMemoryRepository.CREATE_AT)
+                        instanceof LocalDateTime createAt) || createAt.isAfter(coveredUntil))
+                .toList();
+    }
+
+    // 完整回答后追加到记忆热层；须在助手消息入库前调用，热层未命中时重新加载不会读到本轮回答
+    private void rememberTurn(String chatId, String prompt, String answer) {
+        try {
+            // 带上创建时间，便于判断是否已并入滚动摘要
+            Map<String, Object> metadata = Map.of(PersistentChatMemoryRepository.CREATE_AT, LocalDateTime.now());
+            chatMemory.add(chatId, List.of(
+                    UserMessage.builder().text(prompt).metadata(metadata).build(),
+                    AssistantMessage.builder().content(answer).properties(metadata).build()));
+        } catch (Exception e) {
+            log.warn("更新会话 {} 的记忆失败，下次从数据库重新加载: {}", chatId, e.getMessage());
+            chatMemory.clear(chatId);
+        }
+    }
+
+    // 首轮且检索到分块的提问先查语义答案缓存（按模型区分），命中则直接回放答案，未命中则生成并写入缓存
+    private Flux<ChatDelta> answer(String chatId, String userId, String prompt, PackedContext context,
+            ModelRouter.ModelChoice choice) {
+        if (!semanticAnswerCache.isEnabled() || !context.firstTurn() || context.documents().isEmpty()) {
+            return generate(chatId, userId, prompt, context, choice);
+        }
+        return Mono.fromCallable(() -> semanticAnswerCache.embed(prompt))
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.warn("计算提问向量失败，跳过语义缓存: {}", e.getMessage());
+                    return Mono.just(new float[0]);
+                })
+                .flatMapMany(embedding -> {
+                    if (embedding.length == 0) {
+                        return generate(chatId, userId, prompt, context, choice);
+                    }
+                    SemanticAnswerCache.CachedAnswer cached = semanticAnswerCache.lookup(embedding,
+                            choice.model(), context.documents());
+                    if (cached != null) {
+                        return Flux.just(ChatDelta.answer(cached.answer()));
+                    }
+                    long start = System.nanoTime();
+                    StringBuilder answer = new StringBuilder();
+                    return generate(chatId, userId, prompt, context, choice)
+                            .doOnNext(delta -> {
+                                if (delta.isAnswer()) {
+                                    answer.append(delta.text());
+                                }
+                            })
+                            .doOnComplete(() -> semanticAnswerCache.put(embedding, choice.model(),
+                                    context.documents(), answer.toString(),
+                                    Duration.ofNanos(System.nanoTime() - start)));
+                });
+    }
+
+    // 调用模型生成；开启合并时，无对话记忆的相同提问共享同一个上游流
+    private Flux<ChatDelta> generate(String chatId, String userId, String prompt, PackedContext context,
+            ModelRouter.ModelChoice choice) {
+        if (!chatProperties.isCoalesceGenerations() || !context.firstTurn()) {
+            return schedule(chatId, userId, context, choice);
+        }
+        GenerationKey key = new GenerationKey(RetrievalKey.normalize(prompt), context.systemPrompt(),
+                context.references(), choice.model());
+        return generationFlight.share(key, () -> schedule(chatId, userId, context, choice));
+    }
+
+    // 经调度器获得模型槽位后再调用模型，排队期间输出排队位置；开销按估算的提示词 token 数计
+    private Flux<ChatDelta> schedule(String chatId, String userId, PackedContext context,
+            ModelRouter.ModelChoice choice) {
+        return llmScheduler.schedule(userId, context.promptTokens(), () -> stream(chatId, context, choice),
+                ChatDelta::queued);
+    }
+
+    // 对话记忆由本服务按 token 预算裁剪后显式传入，同一会话优先发往同一 Ollama 实例；
+    // 记录模型返回的实际提示词 token 数、prefill 耗时及各模型的生成耗时；输出拆分为推理过程与回答正文
+    private Flux<ChatDelta> stream(String chatId, PackedContext context, ModelRouter.ModelChoice choice) {
+        long[] actualPromptTokens = {0};
+        long[] start = {0};
+        Flux<String> content = chatClientRouter.stream(chatId, choice.model(), client -> client.prompt()
+                        .options(OllamaChatOptions.builder().model(choice.model()).build())
+                        .system(context.systemPrompt())
+                        .messages(context.messages())
+                        .user(context.userMessage())
+                        .stream()
+                        .chatResponse())
+                .doOnSubscribe(subscription -> start[0] = System.nanoTime())
+                .doOnNext(response -> {
+                    Integer tokens = response.getMetadata().getUsage().getPromptTokens();
+                    if (tokens != null && tokens > actualPromptTokens[0]) {
+                        actualPromptTokens[0] = tokens;
+                    }
+                    if (response.getMetadata().get(PROMPT_EVAL_DURATION) instanceof Duration prefill
+                            && !prefill.isZero()) {
+                        Timer.builder("chat.prefill")
+                                .description("模型处理提示词的耗时，命中 KV 缓存的前缀不再计算")
+                                .tags(turnTags(context, choice))
+                                .register(meterRegistry)
+                                .record(prefill);
+                    }
+                })
+                .doOnComplete(() -> {
+                    Timer.builder("chat.model.latency")
+                            .description("各模型完成一次生成的耗时，用于调整路由阈值")
+                            .tags("model", choice.model(), "tier", choice.tier().name().toLowerCase())
+                            .publishPercentiles(0.5, 0.95, 0.99)
+                            .register(meterRegistry)
+                            .record(System.nanoTime() - start[0], TimeUnit.NANOSECONDS);
+                    if (actualPromptTokens[0] > 0) {
+                        DistributionSummary.builder("chat.prompt.tokens")
+                                .description("每次请求的提示词 token 数")
+                                .tag("source", "model")
+                                .publishPercentiles(0.5, 0.95, 0.99)
+                                .register(meterRegistry)
+                                .record(actualPromptTokens[0]);
+                        log.debug("提示词 token 数：估算 {}，模型实际 {}", context.promptTokens(), actualPromptTokens[0]);
+                    }
+                })
+                .mapNotNull(response -> response.getResult() == null
+                        ? null : response.getResult().getOutput().getText())
+                .filter(text -> !text.isEmpty());
+        return ReasoningParser.split(content);
+    }
+
+    private Tags turnTags(PackedContext context, ModelRouter.ModelChoice choice) {
+        return Tags.of("turn", context == null || context.firstTurn() ? "first" : "follow-up",
+                "layout", contextBuilder.layout().name().toLowerCase(),
+                "model", choice == null ? "none" : choice.model());
+    }
+
+    private record GenerationKey(String prompt, String systemPrompt, String references, String model) {
+    }
+
     // 创建新对话
     @Override
     public Mono<String> createConversation(String userId, String title) {
@@ -149,7 +438,10 @@ public class ChatServiceImpl implements ChatService {
     public Mono<Void> deleteConversation(String historyId) {
         return chatMessageRepository.findByHistoryId(historyId) 
                 .flatMap(msg -> chatMessageRepository.delete(msg))
-                .then(chatHistoryRepository.deleteById(historyId));
+                .then(chatReasoningRepository.deleteByHistoryId(historyId))
+                .then(conversationSummaryService.deleteSummary(historyId))
+                .then(chatHistoryRepository.deleteById(historyId))
+                .doOnSuccess(unused -> chatMemory.clear(historyId));
     }
 
     private ChatHistoryDTO convertToDTO(ChatHistory history) {
@@ -161,6 +453,10 @@ public class ChatServiceImpl implements ChatService {
     private ChatMessageDTO convertToDTO(ChatMessage message) {
         ChatMessageDTO dto = new ChatMessageDTO();
         BeanUtils.copyProperties(message, dto);
+        // 早期记录的回答中可能带有推理过程，历史消息只返回回答正文
+        if ("ASSISTANT".equals(message.getMessageType())) {
+            dto.setContent(ReasoningParser.strip(message.getContent()));
+        }
         return dto;
     }
 }
\ No newline at end of file
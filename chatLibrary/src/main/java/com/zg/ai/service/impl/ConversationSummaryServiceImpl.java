@@ -0,0 +1,172 @@
+package com.zg.ai.service.impl;
+
+import com.zg.ai.config.properties.ChatProperties;
+import com.zg.ai.entity.po.ChatMessage;
+import com.zg.ai.entity.po.ChatSummary;
+import com.zg.ai.llm.ReasoningParser;
+import com.zg.ai.repository.ChatMessageRepository;
+import com.zg.ai.repository.ChatSummaryRepository;
+import com.zg.ai.service.ConversationSummaryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话滚动摘要：每轮对话结束后在后台检查，最近消息之外未压缩的消息足够多时，
+ * 用较小的模型把它们与已有摘要合并，按会话保存到 chat_summary；不在请求链路上执行
+ */
+@Slf4j
+@Service
+public class ConversationSummaryServiceImpl implements ConversationSummaryService {
+
+    // 未生成过摘要时的起始时间
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final ChatClient summaryChatClient;
+    private final ChatSummaryRepository chatSummaryRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatProperties.Summary config;
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final Timer summarizeTimer;
+    private final Counter failures;
+
+    public ConversationSummaryServiceImpl(@Qualifier("summaryChatClient") ChatClient summaryChatClient,
+            ChatSummaryRepository chatSummaryRepository, ChatMessageRepository chatMessageRepository,
+            ChatProperties chatProperties, MeterRegistry meterRegistry) {
+        this.summaryChatClient = summaryChatClient;
+        this.chatSummaryRepository = chatSummaryRepository;
+        this.chatMessageRepository = chatMessageRepository;
+        this.config = chatProperties.getSummary();
+        this.permits = new Semaphore(config.getMaxConcurrent());
+        this.summarizeTimer = meterRegistry.timer("chat.summary");
+        this.failures = meterRegistry.counter("chat.summary.failures");
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    @Override
+    public Mono<ChatSummary> getSummary(String historyId) {
+        return config.isEnabled() ? chatSummaryRepository.findByHistoryId(historyId) : Mono.empty();
+    }
+
+    /**
+     * 同一会话同时只有一个摘要任务；全局并发已满时直接跳过
+     */
+    @Override
+    public void summarizeInBackground(String historyId) {
+        if (!config.isEnabled() || !running.add(historyId)) {
+            return;
+        }
+        if (!permits.tryAcquire()) {
+            running.remove(historyId);
+            return;
+        }
+        boolean[] more = {false};
+        chatSummaryRepository.findByHistoryId(historyId)
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    ChatSummary summary = new ChatSummary();
+                    summary.setHistoryId(historyId);
+                    summary.setCoveredMessages(0);
+                    return summary;
+                }))
+                .flatMap(summary -> compact(summary, more))
+                .doFinally(signal -> {
+                    permits.release();
+                    running.remove(historyId);
+                    if (more[0]) {
+                        summarizeInBackground(historyId);
+                    }
+                })
+                .subscribe(
+                        summary -> log.debug("会话 {} 摘要已更新，累计压缩 {} 条消息",
+                                historyId, summary.getCoveredMessages()),
+                        err -> {
+                            failures.increment();
+                            log.warn("会话 {} 生成摘要失败: {}", historyId, err.getMessage());
+                        });
+    }
+
+    @Override
+    public Mono<Void> deleteSummary(String historyId) {
+        return chatSummaryRepository.deleteByHistoryId(historyId);
+    }
+
+    // 取摘要之后最早的一批消息，保留最近 recentMessages 条，其余按完整轮次（以助手消息结尾）并入摘要
+    private Mono<ChatSummary> compact(ChatSummary summary, boolean[] more) {
+        LocalDateTime after = summary.getCoveredUntil() == null ? BEGINNING : summary.getCoveredUntil();
+        int limit = config.getMaxBatchMessages() + config.getRecentMessages();
+        return chatMessageRepository.findCompletedAfter(summary.getHistoryId(), after, limit)
+                .collectList()
+                .flatMap(messages -> {
+                    int compactable = messages.size() - config.getRecentMessages();
+                    if (compactable < config.getTriggerMessages()) {
+                        return Mono.empty();
+                    }
+                    List<ChatMessage> older = new ArrayList<>(messages.subList(0, compactable));
+                    while (!older.isEmpty() && !"ASSISTANT".equals(older.get(older.size() - 1).getMessageType())) {
+                        older.remove(older.size() - 1);
+                    }
+                    if (older.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    boolean backlog = messages.size() == limit;
+                    ChatMessage last = older.get(older.size() - 1);
+                    return Mono.fromCallable(() -> summarize(summary.getSummary(), older))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .flatMap(text -> {
+                                summary.setSummary(text);
+                                summary.setCoveredUntil(last.getCreateAt());
+                                summary.setCoveredMessages(summary.getCoveredMessages() + older.size());
+                                return chatSummaryRepository.save(summary);
+                            })
+                            // 仍有积压时成功后继续下一批，失败则等下一轮对话再触发
+                            .doOnNext(saved -> more[0] = backlog);
+                });
+    }
+
+    // 调用较小的模型合并已有摘要与新消息（阻塞调用）
+    private String summarize(String previous, List<ChatMessage> messages) {
+        StringBuilder dialogue = new StringBuilder();
+        for (ChatMessage message : messages) {
+            dialogue.append("USER".equals(message.getMessageType()) ? "用户：" : "助手：")
+                    .append(ReasoningParser.strip(message.getContent()))
+                    .append('\n');
+        }
+        long start = System.nanoTime();
+        String text = summaryChatClient.prompt()
+                .system(String.format("""
+                        你负责压缩对话记录。请把已有摘要与新的对话合并为一段简洁的中文摘要，
+                        保留用户的身份信息、偏好、提到的文档、已得出的结论和尚未解决的问题，
+                        省略寒暄和重复内容，不超过 %d 字，只输出摘要本身。
+                        """, config.getMaxSummaryChars()))
+                .user(String.format("已有摘要：\n%s\n\n新的对话：\n%s",
+                        previous == null || previous.isBlank() ? "（无）" : previous, dialogue))
+                .call()
+                .content();
+        summarizeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        String summary = ReasoningParser.strip(text).trim();
+        if (summary.isEmpty()) {
+            throw new IllegalStateException("模型返回了空摘要");
+        }
+        return summary.length() > config.getMaxSummaryChars()
+                ? summary.substring(0, config.getMaxSummaryChars()) : summary;
+    }
+}
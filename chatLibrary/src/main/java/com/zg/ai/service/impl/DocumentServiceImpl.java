@@ -1,12 +1,12 @@
 package com.zg.ai.service.impl;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.zg.ai.entity.po.Document;
-import com.zg.ai.entity.po.DocumentChunk;
 import com.zg.ai.enums.DocumentStatus;
+import com.zg.ai.ingest.DocumentIngestor;
+import com.zg.ai.ingest.IngestionQueue;
 import com.zg.ai.repository.DocumentChunkRepository;
 import com.zg.ai.repository.DocumentRepository;
+import com.zg.ai.repository.IngestionJobRepository;
 import com.zg.ai.service.DocumentService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -18,10 +18,6 @@ import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.sax.BodyContentHandler;
-import org.springframework.ai.reader.tika.TikaDocumentReader;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.core.io.buffer.DataBufferUtils;
@@ -52,17 +48,18 @@ import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 /**
- * 文档服务实现类：处理文件上传、解析、分块及向量化存储
+ * 文档服务实现类：处理文件上传（解析、分块及向量化存储交由入库队列异步执行）、预览及删除
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class DocumentServiceImpl implements DocumentService {
 
-    private final VectorStore vectorStore;
     private final DocumentRepository documentRepository;
     private final DocumentChunkRepository documentChunkRepository;
-    private final ObjectMapper objectMapper;
+    private final IngestionJobRepository ingestionJobRepository;
+    private final DocumentIngestor documentIngestor;
+    private final IngestionQueue ingestionQueue;
     private final String STORAGE_DIR = "data/uploads";
     private final Set<String> SUPPORTED_FILE_TYPES = Set.of(
             "pdf", "docx", "doc", "txt", "pptx", "ppt", "md");
@@ -84,11 +81,11 @@ public class DocumentServiceImpl implements DocumentService {
         Path storagePath = Paths.get(STORAGE_DIR);
         Path filePath = storagePath.resolve(newFilename);
 
-        // 保存文件到指定路径
-        return Mono.fromCallable(() -> {
+        // 入库队列已满时拒绝上传，再保存文件到指定路径
+        return ingestionQueue.checkCapacity(userId).then(Mono.fromCallable(() -> {
             Files.createDirectories(storagePath);
             return filePath;
-        }).subscribeOn(Schedulers.boundedElastic())
+        }).subscribeOn(Schedulers.boundedElastic()))
                 .flatMap(path -> {
                     // 初始化文档记录
                     Document document = new Document();
@@ -114,90 +111,11 @@ public class DocumentServiceImpl implements DocumentService {
                                 }
                                 return documentRepository.save(document);
                             }))
-                            .doOnSuccess(doc -> {
-                                // 异步处理文档
-                                Mono.fromRunnable(() -> processDocument(doc))
-                                        .subscribeOn(Schedulers.boundedElastic())
-                                        .subscribe();
-                            });
+                            // 创建入库任务，由入库队列异步处理
+                            .flatMap(doc -> ingestionQueue.submit(doc).thenReturn(doc));
                 });
     }
 
-    // 异步解析文档：提取文本、分块、存储到数据库和向量库
-    private void processDocument(Document document) {
-        try {
-            // 1.使用 Tika 提取文本内容
-            Resource resource = new FileSystemResource(document.getFilePath());
-            TikaDocumentReader reader = new TikaDocumentReader(resource);
-            List<org.springframework.ai.document.Document> aiDocuments = reader.get();
-
-            if (aiDocuments.isEmpty()) {
-                updateStatus(document, DocumentStatus.FAILED).subscribe();
-                return;
-            }
-
-            // 2. 文本分块处理
-            TokenTextSplitter splitter = new TokenTextSplitter();
-            List<org.springframework.ai.document.Document> chunks = splitter.apply(aiDocuments);
-
-            // 3. 保存分块到数据库和向量库
-            List<DocumentChunk> dbChunks = new ArrayList<>();
-            List<org.springframework.ai.document.Document> docsToStore = new ArrayList<>();
-
-            int index = 0;
-            for (org.springframework.ai.document.Document chunk : chunks) {
-                if (chunk.getText() == null) {
-                    continue;
-                }
-                DocumentChunk dbChunk = new DocumentChunk();
-                dbChunk.setDocumentId(document.getId());
-                dbChunk.setChunkIndex(index++);
-                dbChunk.setContent(chunk.getText());
-                dbChunk.setTokenCount(chunk.getText().length());
-
-                Map<String, Object> metadata = chunk.getMetadata();
-                metadata.put("originalFilename", document.getDocumentName());
-                metadata.put("userId", document.getUserId());
-                String vectorId = UUID.randomUUID().toString();
-                metadata.put("vectorId", vectorId);
-
-                try {
-                    dbChunk.setMetadata(objectMapper.writeValueAsString(metadata));
-                } catch (JsonProcessingException e) {
-                    log.error("文档分块元数据序列化失败", e);
-                    dbChunk.setMetadata("{}");
-                }
-
-                dbChunks.add(dbChunk);
-
-                // 构建 Spring AI 向量库文档对象
-                org.springframework.ai.document.Document docToStore = new org.springframework.ai.document.Document(
-                        vectorId, chunk.getText(), metadata);
-                docsToStore.add(docToStore);
-            }
-
-            // 批量保存到数据库
-            documentChunkRepository.saveAll(dbChunks).collectList().block();
-
-            // 4. 保存到向量库
-            vectorStore.add(docsToStore);
-
-            // 5. 更新文档状态
-            document.setTotalChunks(chunks.size());
-            updateStatus(document, DocumentStatus.PROCESSED).subscribe();
-
-        } catch (Exception e) {
-            log.error("文档处理失败: " + document.getId(), e);
-            updateStatus(document, DocumentStatus.FAILED).subscribe();
-        }
-    }
-
-    // 更新文档状态
-    private Mono<Document> updateStatus(Document document, DocumentStatus status) {
-        document.setStatus(status.getCode());
-        return documentRepository.save(document);
-    }
-
     // 获取用户文档列表
     @Override
     public Flux<Document> listDocuments(String userId) {
@@ -246,32 +164,14 @@ public class DocumentServiceImpl implements DocumentService {
     public Mono<Void> deleteDocument(String id) {
         return documentRepository.findById(id)
                 .flatMap(document -> {
-                    // 1. 获取文档所有分块
-                    return documentChunkRepository.findByDocumentId(id)
-                            .collectList()
-                            .flatMap(chunks -> {
-                                List<String> vectorIds = new ArrayList<>();
-                                for (DocumentChunk chunk : chunks) {
-                                    try {
-                                        Map<String, Object> meta = objectMapper.readValue(chunk.getMetadata(),
-                                                Map.class);
-                                        if (meta.containsKey("vectorId")) {
-                                            vectorIds.add((String) meta.get("vectorId"));
-                                        }
-                                    } catch (Exception e) {
-                                        log.warn("解析文档分块元数据失败: " + chunk.getId(), e);
-                                    }
-                                }
-                                // 2. 删除向量库中的分块
-                                if (!vectorIds.isEmpty()) {
-                                    Mono.fromRunnable(() -> vectorStore.delete(vectorIds))
-                                            .subscribeOn(Schedulers.boundedElastic())
-                                            .subscribe();
-                                }
-                                return Mono.empty();
-                            })
-                            // 3. 删除数据库中的分块
-                            .then(documentChunkRepository.deleteAll(documentChunkRepository.findByDocumentId(id)))
+                    // 1. 取消入库任务：执行中的任务在下一批存储前停止，并自行清除期间写入的分块
+                    ingestionQueue.cancel(id);
+                    // 2. 按文档 ID 删除向量库和词法索引中的分块（包括没有数据库记录的分块）
+                    Mono.fromRunnable(() -> documentIngestor.purge(id))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .subscribe(null, e -> log.error("删除文档向量失败: " + id, e));
+                    // 3. 删除数据库中的分块
+                    return documentChunkRepository.deleteAll(documentChunkRepository.findByDocumentId(id))
                             // 4. 删除文件系统中的文件
                             .then(Mono.fromRunnable(() -> {
                                 try {
@@ -280,8 +180,9 @@ public class DocumentServiceImpl implements DocumentService {
                                     log.warn("Failed to delete file: " + document.getFilePath(), e);
                                 }
                             }).subscribeOn(Schedulers.boundedElastic()))
-                            // 5. 删除数据库中的文档记录
-                            .then(documentRepository.deleteById(id));
+                            // 5. 删除数据库中的文档记录及入库任务
+                            .then(documentRepository.deleteById(id))
+                            .then(ingestionJobRepository.deleteByDocumentId(id));
                 });
     }
 
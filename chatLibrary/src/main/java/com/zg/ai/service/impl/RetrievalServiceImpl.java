@@ -0,0 +1,192 @@
+package com.zg.ai.service.impl;
+
+import com.zg.ai.cache.RetrievalCache;
+import com.zg.ai.cache.RetrievalKey;
+import com.zg.ai.config.properties.RetrievalProperties;
+import com.zg.ai.common.DocumentMetadata;
+import com.zg.ai.search.ExactSearchTier;
+import com.zg.ai.search.LexicalIndex;
+import com.zg.ai.service.RetrievalService;
+import com.zg.ai.utils.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 检索服务实现类：在专用有界线程池上执行检索（与文档解析等任务隔离），
+ * 并发超限、超时或出错时降级为无参考文档，保证对话不被向量库拖慢。
+ * 词法索引可用时先做 BM25 检索：首个命中足够确定（几乎覆盖全部查询词且明显领先第二名）时直接返回，
+ * 省去查询向量化和向量检索；否则与向量检索结果按倒数排名融合（RRF）。
+ * 向量检索先交给小语料精确检索层（用户范围内分块较少时暴力打分），超出其上限再查向量库
+ */
+@Slf4j
+@Service
+public class RetrievalServiceImpl implements RetrievalService {
+
+    private final VectorStore vectorStore;
+    private final LexicalIndex lexicalIndex;
+    private final ExactSearchTier exactSearchTier;
+    private final RetrievalCache retrievalCache;
+    private final RetrievalProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Timer searchTimer;
+    private final Timer lexicalTimer;
+
+    // 检索专用线程池：线程数即并发上限，排队数超出上限时拒绝
+    private final Scheduler retrievalScheduler;
+    private final SingleFlight<RetrievalKey> retrievalFlight;
+
+    public RetrievalServiceImpl(VectorStore vectorStore, LexicalIndex lexicalIndex, ExactSearchTier exactSearchTier,
+            RetrievalCache retrievalCache, RetrievalProperties properties, MeterRegistry meterRegistry) {
+        this.vectorStore = vectorStore;
+        this.lexicalIndex = lexicalIndex;
+        this.exactSearchTier = exactSearchTier;
+        this.retrievalCache = retrievalCache;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.searchTimer = meterRegistry.timer("rag.retrieval.search");
+        this.lexicalTimer = meterRegistry.timer("rag.retrieval.lexical");
+        this.retrievalFlight = new SingleFlight<>("retrieval", meterRegistry);
+        this.retrievalScheduler = Schedulers.newBoundedElastic(
+                properties.getMaxConcurrency(), properties.getMaxQueued(), "retrieval");
+    }
+
+    @Override
+    public Mono<List<Document>> retrieve(String query, String userId, List<String> documentIds) {
+        RetrievalKey cacheKey = RetrievalKey.of(query, properties.getTopK(),
+                properties.getSimilarityThreshold(), userId, documentIds);
+        List<Document> cached = retrievalCache.get(cacheKey);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        // 相同检索键的并发请求只触发一次向量检索；超时只作用于当前调用方，共享的检索继续为其他调用方服务
+        return retrievalFlight.execute(cacheKey, () -> Mono.fromCallable(() -> search(query, cacheKey))
+                        .subscribeOn(retrievalScheduler))
+                .timeout(properties.getTimeout())
+                .onErrorResume(e -> {
+                    String reason = e instanceof TimeoutException ? "timeout"
+                            : e instanceof RejectedExecutionException ? "rejected" : "error";
+                    log.warn("向量检索降级为无参考文档 ({}): {}", reason, e.getMessage());
+                    meterRegistry.counter("rag.retrieval.fallback", "reason", reason).increment();
+                    return Mono.just(List.of());
+                });
+    }
+
+    private List<Document> search(String query, RetrievalKey cacheKey) {
+        List<Document> documents;
+        if (lexicalIndex.isReady()) {
+            documents = hybridSearch(query, cacheKey);
+        } else {
+            meterRegistry.counter("rag.retrieval.path", "path", "vector").increment();
+            documents = vectorSearch(query, cacheKey, cacheKey.topK());
+        }
+        retrievalCache.put(cacheKey, documents);
+        return documents;
+    }
+
+    private List<Document> hybridSearch(String query, RetrievalKey cacheKey) {
+        RetrievalProperties.Lexical config = properties.getLexical();
+        int candidates = cacheKey.topK() * Math.max(1, config.getCandidateMultiplier());
+        List<LexicalIndex.Hit> lexical = lexicalTimer.record(() -> lexicalIndex.search(query, cacheKey.userId(),
+                        cacheKey.documentIds(), candidates))
+                .stream()
+                .filter(hit -> hit.coverage() >= config.getMinCoverage())
+                .toList();
+        if (config.isFastPathEnabled() && isConfident(lexical, config)) {
+            meterRegistry.counter("rag.retrieval.path", "path", "lexical").increment();
+            return lexical.stream()
+                    .limit(cacheKey.topK())
+                    .map(hit -> hit.chunk().toDocument(hit.coverage()))
+                    .toList();
+        }
+        List<Document> vector = vectorSearch(query, cacheKey, candidates);
+        meterRegistry.counter("rag.retrieval.path", "path", lexical.isEmpty() ? "vector" : "hybrid").increment();
+        return fuse(vector, lexical, cacheKey.topK(), config.getRrfK());
+    }
+
+    private List<Document> vectorSearch(String query, RetrievalKey cacheKey, int topK) {
+        List<Document> exact = exactSearchTier.search(query, cacheKey.userId(), cacheKey.documentIds(), topK,
+                cacheKey.similarityThreshold());
+        if (exact != null) {
+            return exact;
+        }
+        SearchRequest searchRequest = SearchRequest.builder()
+                .query(query)
+                .topK(topK)
+                .similarityThreshold(cacheKey.similarityThreshold())
+                .filterExpression(scopeFilter(cacheKey))
+                .build();
+        return searchTimer.record(() -> vectorStore.similaritySearch(searchRequest));
+    }
+
+    // 词法结果足够确定：首个命中几乎覆盖全部查询词，且 BM25 得分明显领先第二名
+    static boolean isConfident(List<LexicalIndex.Hit> hits, RetrievalProperties.Lexical config) {
+        if (hits.isEmpty() || hits.get(0).coverage() < config.getFastPathCoverage()) {
+            return false;
+        }
+        return hits.size() == 1 || hits.get(0).score() >= hits.get(1).score() * config.getFastPathMargin();
+    }
+
+    /**
+     * 倒数排名融合：按两路排名之和 1/(k + rank) 排序；文档得分取向量相似度与词法覆盖率中的较大者，
+     * 保持 0~1 的取值范围，供上下文打包和模型路由按原有阈值使用
+     */
+    static List<Document> fuse(List<Document> vector, List<LexicalIndex.Hit> lexical, int topK, int k) {
+        Map<String, Double> fused = new HashMap<>();
+        Map<String, Document> documents = new HashMap<>();
+        Map<String, Double> relevance = new HashMap<>();
+        for (int rank = 0; rank < vector.size(); rank++) {
+            Document document = vector.get(rank);
+            fused.merge(document.getId(), 1.0 / (k + rank + 1), Double::sum);
+            documents.put(document.getId(), document);
+            relevance.merge(document.getId(), document.getScore() == null ? 0 : document.getScore(), Math::max);
+        }
+        for (int rank = 0; rank < lexical.size(); rank++) {
+            LexicalIndex.Hit hit = lexical.get(rank);
+            String id = hit.chunk().vectorId();
+            fused.merge(id, 1.0 / (k + rank + 1), Double::sum);
+            documents.putIfAbsent(id, hit.chunk().toDocument(hit.coverage()));
+            relevance.merge(id, hit.coverage(), Math::max);
+        }
+        return fused.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()))
+                .limit(topK)
+                .map(entry -> documents.get(entry.getKey()).mutate().score(relevance.get(entry.getKey())).build())
+                .toList();
+    }
+
+    // 检索范围：本人文档 + 共享文档，可再限定为用户指定的文档；由向量库按 payload 索引过滤
+    private Filter.Expression scopeFilter(RetrievalKey cacheKey) {
+        FilterExpressionBuilder b = new FilterExpressionBuilder();
+        FilterExpressionBuilder.Op scope = b.group(b.or(
+                b.eq(DocumentMetadata.USER_ID, cacheKey.userId()),
+                b.eq(DocumentMetadata.SHARED, true)));
+        if (!cacheKey.documentIds().isEmpty()) {
+            scope = b.and(scope, b.in(DocumentMetadata.DOCUMENT_ID, new ArrayList<>(cacheKey.documentIds())));
+        }
+        return scope.build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retrievalScheduler.dispose();
+    }
+}
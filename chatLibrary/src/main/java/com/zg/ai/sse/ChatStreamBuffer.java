@@ -0,0 +1,161 @@
+package com.zg.ai.sse;
+
+import com.zg.ai.entity.dto.chat.ChatDelta;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 单次生成的回放缓冲：环形数组保存最近 capacity 帧，帧序号从 1 递增；
+ * 上游生成在首个客户端接入时启动，之后独立于客户端连接运行，客户端可从缓冲内任意序号之后重新接入；
+ * 所有客户端断开超过 detachTimeout 仍无人接入时取消生成
+ */
+@Slf4j
+public class ChatStreamBuffer {
+
+    @Getter
+    private final String generationId = UUID.randomUUID().toString().replace("-", "");
+    @Getter
+    private final String chatId;
+    @Getter
+    private final String userId;
+    private final Flux<ChatDelta> source;
+    private final ChatDelta[] ring;
+    private final Duration detachTimeout;
+    private final Runnable onTerminate;
+    private final List<FluxSink<Frame>> subscribers = new CopyOnWriteArrayList<>();
+
+    private long lastSeq;
+    private boolean done;
+    private Throwable error;
+    private Disposable upstream;
+    private Disposable detachTimer;
+
+    public ChatStreamBuffer(String chatId, String userId, Flux<ChatDelta> source, int capacity,
+            Duration detachTimeout, Runnable onTerminate) {
+        this.chatId = chatId;
+        this.userId = userId;
+        this.source = source;
+        this.ring = new ChatDelta[capacity];
+        this.detachTimeout = detachTimeout;
+        this.onTerminate = onTerminate;
+    }
+
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * 接入生成流：先回放序号大于 afterSeq 的帧，再接收后续实时帧；
+     * 请求的帧已被环形缓冲覆盖时以 410 失败，由客户端重新提问
+     */
+    public Flux<Frame> attach(long afterSeq) {
+        return Flux.create(sink -> {
+            synchronized (this) {
+                long oldest = Math.max(1, lastSeq - ring.length + 1);
+                if (afterSeq + 1 < oldest) {
+                    sink.error(new ResponseStatusException(HttpStatus.GONE, "续传位置已超出回放缓冲"));
+                    return;
+                }
+                for (long seq = afterSeq + 1; seq <= lastSeq; seq++) {
+                    sink.next(new Frame(seq, ring[slot(seq)]));
+                }
+                if (done) {
+                    terminate(sink);
+                    return;
+                }
+                subscribers.add(sink);
+                if (detachTimer != null) {
+                    detachTimer.dispose();
+                    detachTimer = null;
+                }
+                if (upstream == null) {
+                    upstream = source.subscribe(this::append, this::fail, this::complete);
+                }
+            }
+            sink.onDispose(() -> detach(sink));
+        });
+    }
+
+    private synchronized void append(ChatDelta delta) {
+        lastSeq++;
+        ring[slot(lastSeq)] = delta;
+        Frame frame = new Frame(lastSeq, delta);
+        subscribers.forEach(sink -> sink.next(frame));
+    }
+
+    private void complete() {
+        finish(null);
+    }
+
+    private void fail(Throwable e) {
+        finish(e);
+    }
+
+    private void finish(Throwable e) {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            done = true;
+            error = e;
+            subscribers.forEach(this::terminate);
+            subscribers.clear();
+            if (detachTimer != null) {
+                detachTimer.dispose();
+                detachTimer = null;
+            }
+        }
+        onTerminate.run();
+    }
+
+    private synchronized void detach(FluxSink<Frame> sink) {
+        if (!subscribers.remove(sink) || done || !subscribers.isEmpty()) {
+            return;
+        }
+        detachTimer = Mono.delay(detachTimeout).subscribe(tick -> cancelIfDetached());
+    }
+
+    // 超时仍无客户端接入，取消上游生成（生成方按取消处理并保存已生成部分）
+    private void cancelIfDetached() {
+        synchronized (this) {
+            if (done || !subscribers.isEmpty()) {
+                return;
+            }
+            log.info("会话 {} 的客户端断开超过 {}，取消生成", chatId, detachTimeout);
+            upstream.dispose();
+        }
+        finish(null);
+    }
+
+    private void terminate(FluxSink<Frame> sink) {
+        if (error != null) {
+            sink.error(error);
+        } else {
+            sink.complete();
+        }
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % ring.length);
+    }
+
+    /**
+     * 一帧输出
+     *
+     * @param seq   帧序号，从 1 开始
+     * @param delta 帧内容（回答或推理过程）
+     */
+    public record Frame(long seq, ChatDelta delta) {
+    }
+}
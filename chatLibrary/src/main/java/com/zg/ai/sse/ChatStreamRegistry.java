@@ -0,0 +1,76 @@
+package com.zg.ai.sse;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.zg.ai.config.properties.SseProperties;
+import com.zg.ai.entity.dto.chat.ChatDelta;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+/**
+ * 按（登录用户, 会话）登记进行中及刚结束的生成，供断线重连时接回原生成；其他用户既查不到也替换不了。
+ * 进行中的生成不过期，结束后保留 replayTtl
+ */
+@Component
+public class ChatStreamRegistry {
+
+    private final SseProperties properties;
+    private final Cache<String, ChatStreamBuffer> streams;
+
+    public ChatStreamRegistry(SseProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.streams = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxStreams())
+                .expireAfter(new Expiry<String, ChatStreamBuffer>() {
+                    @Override
+                    public long expireAfterCreate(String key, ChatStreamBuffer value, long currentTime) {
+                        return value.isDone() ? properties.getReplayTtl().toNanos() : Long.MAX_VALUE;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, ChatStreamBuffer value, long currentTime,
+                            long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, ChatStreamBuffer value, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        meterRegistry.gauge("chat.sse.streams", streams, cache -> cache.estimatedSize());
+    }
+
+    /**
+     * 登记一次新生成，替换该会话之前的回放缓冲；生成在首个客户端接入时启动
+     */
+    public ChatStreamBuffer open(String chatId, String userId, Flux<ChatDelta> frames) {
+        ChatStreamBuffer[] holder = new ChatStreamBuffer[1];
+        holder[0] = new ChatStreamBuffer(chatId, userId, frames, properties.getReplayCapacity(),
+                properties.getDetachTimeout(), () -> onFinished(holder[0]));
+        streams.put(keyOf(chatId, userId), holder[0]);
+        return holder[0];
+    }
+
+    public ChatStreamBuffer find(String chatId, String userId) {
+        return streams.getIfPresent(keyOf(chatId, userId));
+    }
+
+    // 生成结束后改为按 replayTtl 过期
+    private void onFinished(ChatStreamBuffer buffer) {
+        String key = keyOf(buffer.getChatId(), buffer.getUserId());
+        if (streams.getIfPresent(key) != buffer) {
+            return;
+        }
+        streams.policy().expireVariably()
+                .ifPresent(policy -> policy.setExpiresAfter(key, properties.getReplayTtl()));
+    }
+
+    private static String keyOf(String chatId, String userId) {
+        return userId + '\u0000' + chatId;
+    }
+}
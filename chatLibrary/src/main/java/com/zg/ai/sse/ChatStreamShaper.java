@@ -0,0 +1,148 @@
+package com.zg.ai.sse;
+
+import com.zg.ai.config.properties.SseProperties;
+import com.zg.ai.entity.dto.chat.ChatDelta;
+import com.zg.ai.llm.LlmRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 聊天流整形：按时间窗口/片段数把模型输出合并成帧，减少 SSE 事件数与 flush 次数；
+ * 同一帧只合并同类片段，推理过程以 reasoning 事件发送，排队位置以 queue 事件发送，回答正文为默认事件；
+ * 模型请求排队已满时发送 rejected 事件并以 retry 字段给出建议的重试等待时间；
+ * 帧写入回放缓冲并带上 id（生成 ID-帧序号），断线后凭 Last-Event-ID 接回原生成续传；
+ * 每个客户端的待发送帧有上限，超出则断开慢客户端，生成继续进行等待重连；
+ * 连接空闲时发送心跳注释，避免被代理按空闲超时断开
+ */
+@Slf4j
+@Component
+public class ChatStreamShaper {
+
+    private static final char ID_SEPARATOR = '-';
+    private static final String REASONING_EVENT = "reasoning";
+    private static final String QUEUE_EVENT = "queue";
+    private static final String REJECTED_EVENT = "rejected";
+
+    private final SseProperties properties;
+    private final ChatStreamRegistry registry;
+    private final Counter deltas;
+    private final Counter frames;
+    private final Counter slowConsumers;
+    private final Counter resumed;
+
+    public ChatStreamShaper(SseProperties properties, ChatStreamRegistry registry, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.registry = registry;
+        this.deltas = meterRegistry.counter("chat.sse.deltas");
+        this.frames = meterRegistry.counter("chat.sse.frames");
+        this.slowConsumers = meterRegistry.counter("chat.sse.slow-consumers");
+        this.resumed = meterRegistry.counter("chat.sse.resumed");
+    }
+
+    /**
+     * 启动一次新生成并接入
+     */
+    public Flux<ServerSentEvent<String>> shape(String chatId, String userId, Flux<ChatDelta> content) {
+        return Flux.defer(() -> {
+            Flux<ChatDelta> coalesced = content
+                    .doOnNext(delta -> deltas.increment())
+                    .bufferTimeout(properties.getMaxDeltasPerFrame(), properties.getFrameWindow())
+                    .concatMapIterable(ChatStreamShaper::coalesce);
+            ChatStreamBuffer buffer = registry.open(chatId, userId, coalesced);
+            return toEvents(buffer, buffer.attach(0));
+        });
+    }
+
+    /**
+     * 按 Last-Event-ID 接回该会话进行中或刚结束的生成，从其后一帧开始回放，不重新生成；
+     * 生成已过期或已被新的提问替换时以 410 失败
+     */
+    public Flux<ServerSentEvent<String>> resume(String chatId, String userId, String lastEventId) {
+        return Flux.defer(() -> {
+            int separator = lastEventId.lastIndexOf(ID_SEPARATOR);
+            // 按登录用户查找，只能接回本人的生成
+            ChatStreamBuffer buffer = userId == null ? null : registry.find(chatId, userId);
+            if (separator < 0 || buffer == null || !buffer.getGenerationId().equals(lastEventId.substring(0, separator))) {
+                return Flux.error(new ResponseStatusException(HttpStatus.GONE, "生成已结束或不存在，请重新提问"));
+            }
+            long afterSeq;
+            try {
+                afterSeq = Long.parseLong(lastEventId.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Last-Event-ID 格式错误"));
+            }
+            resumed.increment();
+            return toEvents(buffer, buffer.attach(afterSeq));
+        });
+    }
+
+    private Flux<ServerSentEvent<String>> toEvents(ChatStreamBuffer buffer, Flux<ChatStreamBuffer.Frame> attached) {
+        AtomicLong lastSent = new AtomicLong(System.nanoTime());
+        Flux<ServerSentEvent<String>> data = attached
+                .onBackpressureBuffer(properties.getMaxPendingFrames(),
+                        dropped -> {
+                            slowConsumers.increment();
+                            log.warn("客户端接收过慢，待发送帧超过 {}，断开连接", properties.getMaxPendingFrames());
+                        },
+                        BufferOverflowStrategy.ERROR)
+                .map(frame -> {
+                    ServerSentEvent.Builder<String> event = ServerSentEvent.builder(frame.delta().text())
+                            .id(buffer.getGenerationId() + ID_SEPARATOR + frame.seq());
+                    switch (frame.delta().type()) {
+                        case REASONING -> event.event(REASONING_EVENT);
+                        case QUEUED -> event.event(QUEUE_EVENT);
+                        default -> {
+                        }
+                    }
+                    return event.build();
+                })
+                .onErrorResume(LlmRejectedException.class, e -> Flux.just(ServerSentEvent.builder(e.getMessage())
+                        .event(REJECTED_EVENT)
+                        .retry(e.getRetryAfter())
+                        .build()))
+                .doOnNext(event -> {
+                    frames.increment();
+                    lastSent.set(System.nanoTime());
+                });
+
+        long heartbeatNanos = properties.getHeartbeatInterval().toNanos();
+        Flux<ServerSentEvent<String>> heartbeats = Flux.interval(properties.getHeartbeatInterval())
+                .filter(tick -> System.nanoTime() - lastSent.get() >= heartbeatNanos)
+                .map(tick -> ServerSentEvent.<String>builder().comment("heartbeat").build());
+
+        return data.publish(shared -> Flux.merge(shared, heartbeats.takeUntilOther(shared.ignoreElements())));
+    }
+
+    // 相邻的同类片段拼成一帧，类型变化处切开；连续的排队位置只保留最新的一个
+    private static List<ChatDelta> coalesce(List<ChatDelta> batch) {
+        List<ChatDelta> frames = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        ChatDelta.Type type = null;
+        for (ChatDelta delta : batch) {
+            if (type != null && type != delta.type()) {
+                frames.add(new ChatDelta(type, text.toString()));
+                text.setLength(0);
+            }
+            type = delta.type();
+            if (type == ChatDelta.Type.QUEUED) {
+                text.setLength(0);
+            }
+            text.append(delta.text());
+        }
+        if (type != null && !text.isEmpty()) {
+            frames.add(new ChatDelta(type, text.toString()));
+        }
+        return frames;
+    }
+}
@@ -0,0 +1,70 @@
+package com.zg.ai.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并工具：相同键的并发请求共享同一个进行中的上游调用，上游结束后自动移除
+ *
+ * @param <K> 键类型
+ */
+public class SingleFlight<K> {
+
+    private final Map<K, Mono<?>> inFlightMonos = new ConcurrentHashMap<>();
+    private final Map<K, Flux<?>> inFlightFluxes = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.coalesced = Counter.builder("singleflight.coalesced")
+                .description("加入已有进行中调用的请求数")
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 合并单值调用：首个调用者触发上游，其余调用者共享其结果（包括错误）
+     */
+    @SuppressWarnings("unchecked")
+    public <V> Mono<V> execute(K key, Supplier<Mono<V>> supplier) {
+        return Mono.defer(() -> {
+            boolean[] leader = {false};
+            Mono<V> shared = (Mono<V>) inFlightMonos.computeIfAbsent(key, k -> {
+                leader[0] = true;
+                return supplier.get()
+                        .doFinally(signal -> inFlightMonos.remove(k))
+                        .cache();
+            });
+            if (!leader[0]) {
+                coalesced.increment();
+            }
+            return shared;
+        });
+    }
+
+    /**
+     * 合并流式调用：后加入的订阅者会先重放已产生的元素，所有订阅者取消后上游随之取消
+     */
+    @SuppressWarnings("unchecked")
+    public <V> Flux<V> share(K key, Supplier<Flux<V>> supplier) {
+        return Flux.defer(() -> {
+            boolean[] leader = {false};
+            Flux<V> shared = (Flux<V>) inFlightFluxes.computeIfAbsent(key, k -> {
+                leader[0] = true;
+                return supplier.get()
+                        .doFinally(signal -> inFlightFluxes.remove(k))
+                        .replay()
+                        .refCount();
+            });
+            if (!leader[0]) {
+                coalesced.increment();
+            }
+            return shared;
+        });
+    }
+}
@@ -0,0 +1,198 @@
+package com.zg.ai.vectorstore;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 向量库文档日志：每条记录为 节点编号 + 文档 ID + 元数据 JSON + 文本，只追加；
+ * 同一节点编号（槽位复用）以最后一条记录为准。启动时顺序扫描，只读 ID 和元数据、跳过文本，
+ * 检索命中后再按偏移读取文本；废弃记录过多时整体改写
+ */
+final class DocumentLog {
+
+    private final Path path;
+    private FileChannel channel;
+
+    DocumentLog(Path path) throws IOException {
+        this.path = path;
+        this.channel = open(path);
+    }
+
+    /**
+     * 顺序扫描全部记录（启动时调用）；末尾写了一半的记录截掉。
+     * 长度字段超出文件剩余字节的记录同样视为损坏的尾部，从该处截断并停止扫描
+     */
+    void scan(RecordVisitor visitor) throws IOException {
+        long size = channel.size();
+        long position = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(FileChannel.open(path, StandardOpenOption.READ)), 1 << 16))) {
+            while (true) {
+                long start = position;
+                int node = in.readInt();
+                long at = start + Integer.BYTES;
+                byte[] id = readBytes(in, size - at);
+                at += Integer.BYTES + id.length;
+                byte[] metadata = readBytes(in, size - at);
+                at += Integer.BYTES + metadata.length;
+                int textLength = readLength(in, size - at);
+                if (in.skipBytes(textLength) != textLength) {
+                    break;
+                }
+                position = start + recordBytes(id.length, metadata.length, textLength);
+                visitor.visit(node, start, position - start, new String(id, StandardCharsets.UTF_8),
+                        new String(metadata, StandardCharsets.UTF_8));
+            }
+        } catch (EOFException e) {
+            // 读到文件末尾（或末尾不完整的记录）
+        }
+        if (position < channel.size()) {
+            channel.truncate(position);
+        }
+    }
+
+    /**
+     * 追加一条记录，返回其偏移
+     */
+    long append(int node, String id, String metadata, String text) throws IOException {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        byte[] metadataBytes = metadata.getBytes(StandardCharsets.UTF_8);
+        byte[] textBytes = text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate((int) recordBytes(idBytes.length, metadataBytes.length,
+                textBytes.length));
+        buffer.putInt(node)
+                .putInt(idBytes.length).put(idBytes)
+                .putInt(metadataBytes.length).put(metadataBytes)
+                .putInt(textBytes.length).put(textBytes)
+                .flip();
+        long offset = channel.size();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+        return offset;
+    }
+
+    /**
+     * 读取偏移处记录的文本
+     */
+    String readText(long offset) throws IOException {
+        ByteBuffer lengths = ByteBuffer.allocate(Integer.BYTES);
+        long position = offset + Integer.BYTES;
+        for (int i = 0; i < 2; i++) {
+            position += Integer.BYTES + readInt(position, lengths);
+        }
+        int textLength = readInt(position, lengths);
+        ByteBuffer text = ByteBuffer.allocate(textLength);
+        while (text.hasRemaining()) {
+            if (channel.read(text, position + Integer.BYTES + text.position()) < 0) {
+                throw new EOFException("文档记录不完整: " + offset);
+            }
+        }
+        return new String(text.array(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 偏移处记录的总字节数
+     */
+    long recordLength(long offset) throws IOException {
+        ByteBuffer lengths = ByteBuffer.allocate(Integer.BYTES);
+        long position = offset + Integer.BYTES;
+        for (int i = 0; i < 3; i++) {
+            position += Integer.BYTES + readInt(position, lengths);
+        }
+        return position - offset;
+    }
+
+    long sizeBytes() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * 只保留 live 中的记录重写文件（先写临时文件再原子替换），返回各记录的新偏移（与 live 同序）
+     */
+    long[] rewrite(long[] live) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        long[] offsets = new long[live.length];
+        try (FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < live.length; i++) {
+                offsets[i] = target.position();
+                long length = recordLength(live[i]);
+                long copied = 0;
+                while (copied < length) {
+                    copied += channel.transferTo(live[i] + copied, length - copied, target);
+                }
+            }
+            target.force(true);
+        }
+        channel.close();
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = open(path);
+        return offsets;
+    }
+
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+
+    private int readInt(long position, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("文档记录不完整: " + position);
+            }
+        }
+        return buffer.getInt(0);
+    }
+
+    /**
+     * 读取带长度前缀的字节串，remaining 为从长度字段起文件剩余的字节数
+     */
+    private static byte[] readBytes(DataInputStream in, long remaining) throws IOException {
+        byte[] bytes = new byte[readLength(in, remaining)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * 读取长度字段；负数或超出文件剩余字节时按不完整记录处理，避免按损坏的长度分配内存
+     */
+    private static int readLength(DataInputStream in, long remaining) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > remaining - Integer.BYTES) {
+            throw new EOFException("文档记录长度越界: " + length);
+        }
+        return length;
+    }
+
+    private static long recordBytes(int idLength, int metadataLength, int textLength) {
+        return 4L * Integer.BYTES + idLength + metadataLength + textLength;
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * 启动扫描回调
+     */
+    @FunctionalInterface
+    interface RecordVisitor {
+        void visit(int node, long offset, long length, String id, String metadata) throws IOException;
+    }
+}
@@ -0,0 +1,364 @@
+package com.zg.ai.vectorstore;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zg.ai.config.properties.VectorStoreProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.DocumentMetadata;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.observation.conventions.VectorStoreSimilarityMetric;
+import org.springframework.ai.vectorstore.AbstractVectorStoreBuilder;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.observation.AbstractObservationVectorStore;
+import org.springframework.ai.vectorstore.observation.VectorStoreObservationContext;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * 进程内向量库：HNSW 图和向量在内存映射文件中（见 HnswIndex），文档 ID、元数据和文本在只追加的文档日志中，
+ * 元数据常驻内存用于过滤，文本在命中后按偏移读取。
+ * 重启时直接映射索引文件并顺序扫描一遍文档日志的 ID 和元数据，不重新计算向量、不重建图。
+ * 写入和删除持写锁、检索持读锁；后台定期回收已删除节点、改写文档日志并刷盘
+ */
+@Slf4j
+public class EmbeddedVectorStore extends AbstractObservationVectorStore implements AutoCloseable {
+
+    public static final String TYPE = "embedded";
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final VectorStoreProperties config;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final DocumentLog documents;
+    // 节点编号 → 文档，节点已删除或空闲时为 null
+    private final List<StoredDocument> stored = new ArrayList<>();
+    private final Map<String, Integer> nodesById = new HashMap<>();
+    private final Timer searchTimer;
+    private final Disposable compactions;
+
+    private volatile HnswIndex index;
+    private long liveBytes;
+
+    protected EmbeddedVectorStore(Builder builder) {
+        super(builder);
+        this.config = builder.properties;
+        this.objectMapper = builder.objectMapper;
+        this.directory = Paths.get(config.getPath());
+        try {
+            Files.createDirectories(directory);
+            int dimensions = HnswIndex.storedDimensions(directory);
+            if (dimensions > 0) {
+                index = new HnswIndex(directory, dimensions, config.getM(), config.getEfConstruction());
+            }
+            documents = new DocumentLog(directory.resolve("documents.bin"));
+            load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开内嵌向量库失败: " + directory, e);
+        }
+        MeterRegistry meterRegistry = builder.meterRegistry;
+        this.searchTimer = meterRegistry.timer("vectorstore.embedded.search");
+        meterRegistry.gauge("vectorstore.embedded.vectors", this, store -> store.count(false));
+        meterRegistry.gauge("vectorstore.embedded.deleted", this, store -> store.count(true));
+        this.compactions = Flux.interval(config.getCompactionInterval())
+                .onBackpressureDrop()
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(tick -> compact());
+    }
+
+    public static Builder builder(EmbeddingModel embeddingModel) {
+        return new Builder(embeddingModel);
+    }
+
+    @Override
+    public void doAdd(List<Document> documentList) {
+        if (documentList.isEmpty()) {
+            return;
+        }
+        List<float[]> embeddings = embeddingModel.embed(documentList, EmbeddingOptions.builder().build(),
+                batchingStrategy);
+        lock.writeLock().lock();
+        try {
+            if (index == null) {
+                index = new HnswIndex(directory, embeddings.get(0).length, config.getM(), config.getEfConstruction());
+            }
+            for (int i = 0; i < documentList.size(); i++) {
+                Document document = documentList.get(i);
+                Integer existing = nodesById.get(document.getId());
+                if (existing != null) {
+                    remove(existing);
+                }
+                // 先写文档日志再插入：复用的槽位在置为存活之前已有新记录，进程在两步之间退出时，
+                // 槽位仍为空闲（或超出已分配范围），重启时新记录被忽略，不会把旧文档与新向量拼在一起
+                String metadata = objectMapper.writeValueAsString(document.getMetadata());
+                long offset = documents.append(index.nextNode(), document.getId(), metadata, document.getText());
+                int node = index.insert(embeddings.get(i));
+                put(node, new StoredDocument(document.getId(), new HashMap<>(document.getMetadata()), offset,
+                        documents.sizeBytes() - offset));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入内嵌向量库失败", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void doDelete(List<String> idList) {
+        lock.writeLock().lock();
+        try {
+            for (String id : idList) {
+                Integer node = nodesById.get(id);
+                if (node != null) {
+                    remove(node);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    protected void doDelete(Filter.Expression filterExpression) {
+        lock.writeLock().lock();
+        try {
+            for (int node = 0; node < stored.size(); node++) {
+                StoredDocument document = stored.get(node);
+                if (document != null && MetadataFilter.matches(filterExpression, document.metadata())) {
+                    remove(node);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> doSimilaritySearch(SearchRequest request) {
+        if (index == null) {
+            return List.of();
+        }
+        float[] query = embeddingModel.embed(request.getQuery());
+        lock.readLock().lock();
+        try {
+            Filter.Expression filter = request.hasFilterExpression() ? request.getFilterExpression() : null;
+            IntPredicate accept = node -> {
+                StoredDocument document = node < stored.size() ? stored.get(node) : null;
+                return document != null && (filter == null || MetadataFilter.matches(filter, document.metadata()));
+            };
+            List<HnswIndex.Neighbor> hits = searchTimer.record(() -> index.search(query, request.getTopK(),
+                    Math.max(config.getEfSearch(), request.getTopK()), accept));
+            List<Document> results = new ArrayList<>(hits.size());
+            for (HnswIndex.Neighbor hit : hits) {
+                if (hit.score() < request.getSimilarityThreshold()) {
+                    continue;
+                }
+                StoredDocument document = stored.get(hit.node());
+                Map<String, Object> metadata = new HashMap<>(document.metadata());
+                metadata.put(DocumentMetadata.DISTANCE.value(), 1 - hit.score());
+                results.add(Document.builder()
+                        .id(document.id())
+                        .text(documents.readText(document.offset()))
+                        .metadata(metadata)
+                        .score((double) hit.score())
+                        .build());
+            }
+            return results;
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取内嵌向量库文档失败", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public VectorStoreObservationContext.Builder createObservationContextBuilder(String operationName) {
+        return VectorStoreObservationContext.builder(TYPE, operationName)
+                .collectionName(directory.toString())
+                .dimensions(index == null ? null : index.dimensions())
+                .similarityMetric(VectorStoreSimilarityMetric.COSINE.value());
+    }
+
+    /**
+     * 回收一批已删除节点；文档日志中的废弃记录超过比例时改写；最后刷盘
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            if (index == null) {
+                return;
+            }
+            int reclaimed = index.deletedCount() > 0 ? index.compact(config.getCompactionBatch()) : 0;
+            if (reclaimed > 0) {
+                log.debug("内嵌向量库回收 {} 个已删除节点", reclaimed);
+            }
+            long garbage = documents.sizeBytes() - liveBytes;
+            if (garbage > 0 && garbage > liveBytes * config.getMaxGarbageRatio()) {
+                rewriteDocuments();
+            }
+            index.force();
+            documents.force();
+        } catch (IOException e) {
+            log.warn("内嵌向量库压缩失败", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactions.dispose();
+        lock.writeLock().lock();
+        try {
+            if (index != null) {
+                index.close();
+            }
+            documents.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int count(boolean deleted) {
+        lock.readLock().lock();
+        try {
+            return index == null ? 0 : deleted ? index.deletedCount() : index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 扫描文档日志恢复内存状态；同一节点以最后一条记录为准，节点不是存活状态的记录视为废弃
+    private void load() throws IOException {
+        documents.scan((node, offset, length, id, metadata) -> {
+            if (index == null || node >= index.slots() || index.flags(node) != HnswIndex.LIVE) {
+                return;
+            }
+            StoredDocument previous = node < stored.size() ? stored.get(node) : null;
+            if (previous != null) {
+                forget(node, previous);
+            }
+            put(node, new StoredDocument(id, objectMapper.readValue(metadata, METADATA_TYPE), offset, length));
+        });
+        if (index == null) {
+            return;
+        }
+        // 没有文档记录的存活节点（旧版本先插入图、后写文档日志时中途退出留下的）按已删除处理
+        int orphans = 0;
+        for (int node = 0; node < index.slots(); node++) {
+            if (index.flags(node) == HnswIndex.LIVE && (node >= stored.size() || stored.get(node) == null)) {
+                index.markDeleted(node);
+                orphans++;
+            }
+        }
+        log.info("内嵌向量库已打开: {} 个向量，{} 个待回收{}", index.size(), index.deletedCount(),
+                orphans > 0 ? "（含 " + orphans + " 个未写完的节点）" : "");
+    }
+
+    private void rewriteDocuments() throws IOException {
+        List<Integer> nodes = new ArrayList<>();
+        for (int node = 0; node < stored.size(); node++) {
+            if (stored.get(node) != null) {
+                nodes.add(node);
+            }
+        }
+        nodes.sort(Comparator.comparingLong(node -> stored.get(node).offset()));
+        long[] offsets = nodes.stream().mapToLong(node -> stored.get(node).offset()).toArray();
+        long before = documents.sizeBytes();
+        long[] rewritten = documents.rewrite(offsets);
+        for (int i = 0; i < nodes.size(); i++) {
+            StoredDocument document = stored.get(nodes.get(i));
+            stored.set(nodes.get(i), new StoredDocument(document.id(), document.metadata(), rewritten[i],
+                    document.length()));
+        }
+        log.info("内嵌向量库文档日志已改写: {} → {} 字节", before, documents.sizeBytes());
+    }
+
+    private void put(int node, StoredDocument document) {
+        while (stored.size() <= node) {
+            stored.add(null);
+        }
+        stored.set(node, document);
+        nodesById.put(document.id(), node);
+        liveBytes += document.length();
+    }
+
+    private void remove(int node) {
+        StoredDocument document = stored.get(node);
+        index.markDeleted(node);
+        if (document != null) {
+            forget(node, document);
+        }
+    }
+
+    private void forget(int node, StoredDocument document) {
+        stored.set(node, null);
+        nodesById.remove(document.id(), node);
+        liveBytes -= document.length();
+    }
+
+    /**
+     * 存活文档在内存中的部分
+     *
+     * @param offset 文档日志中的记录偏移
+     * @param length 记录字节数
+     */
+    private record StoredDocument(String id, Map<String, Object> metadata, long offset, long length) {
+    }
+
+    public static final class Builder extends AbstractVectorStoreBuilder<Builder> {
+
+        private VectorStoreProperties properties = new VectorStoreProperties();
+        private ObjectMapper objectMapper = new ObjectMapper();
+        private MeterRegistry meterRegistry;
+
+        private Builder(EmbeddingModel embeddingModel) {
+            super(embeddingModel);
+        }
+
+        public Builder properties(VectorStoreProperties properties) {
+            this.properties = properties;
+            return this;
+        }
+
+        public Builder objectMapper(ObjectMapper objectMapper) {
+            this.objectMapper = objectMapper;
+            return this;
+        }
+
+        public Builder meterRegistry(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+            return this;
+        }
+
+        @Override
+        public EmbeddedVectorStore build() {
+            if (meterRegistry == null) {
+                meterRegistry = new SimpleMeterRegistry();
+            }
+            return new EmbeddedVectorStore(this);
+        }
+    }
+}
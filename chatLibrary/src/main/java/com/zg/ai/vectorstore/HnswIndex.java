@@ -0,0 +1,573 @@
+package com.zg.ai.vectorstore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * HNSW 图索引（余弦相似度，向量入库时归一化）：向量、第 0 层邻接表及上层邻接表分别存放在三个定长记录的内存映射文件中，
+ * 重新打开时直接映射已有文件，不需要重建图。
+ * 删除只打墓碑，被删节点仍参与路由但不进入结果；compact 分批把墓碑节点从邻居的邻接表中摘除并用其邻居补边，
+ * 之后槽位回收给新向量复用。
+ * 本类不做同步：写操作（insert/markDeleted/compact）须由调用方串行执行，且不能与检索并发
+ */
+public final class HnswIndex {
+
+    public static final int LIVE = 0;
+    public static final int DELETED = 1;
+    public static final int FREE = 2;
+
+    private static final int MAGIC = 0x484e5357;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int REGION_RECORDS = 16384;
+    // 最多 8 层上层图，m=16 时第 9 层的概率约 16^-9，可忽略
+    private static final int UPPER_LEVELS = 8;
+
+    // 文件头字段（int 下标）
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 1;
+    private static final int H_DIMENSIONS = 2;
+    private static final int H_M = 3;
+    private static final int H_COUNT = 4;
+    private static final int H_ENTRY = 5;
+    private static final int H_MAX_LEVEL = 6;
+    private static final int H_UPPER_COUNT = 7;
+
+    // 节点记录字段：层数、状态、上层记录槽位、第 0 层邻居数，之后是第 0 层邻居
+    private static final int N_LEVEL = 0;
+    private static final int N_FLAGS = 1;
+    private static final int N_UPPER = 2;
+    private static final int N_COUNT0 = 3;
+    private static final int N_LINKS0 = 4;
+
+    private final int dimensions;
+    private final int m;
+    private final int maxDegree0;
+    private final int efConstruction;
+    private final double levelFactor;
+    private final MappedRecords graph;
+    private final MappedRecords upper;
+    private final MappedRecords vectors;
+    private final ArrayDeque<Integer> freeNodes = new ArrayDeque<>();
+    private final ArrayDeque<Integer> freeUpper = new ArrayDeque<>();
+    private final ThreadLocal<float[]> scratch;
+
+    private int count;
+    private int entry;
+    private int maxLevel;
+    private int upperCount;
+    private int deleted;
+
+    public HnswIndex(Path directory, int dimensions, int m, int efConstruction) throws IOException {
+        Files.createDirectories(directory);
+        this.graph = new MappedRecords(directory.resolve("graph.bin"), HEADER_BYTES, N_LINKS0 + 2 * m,
+                REGION_RECORDS);
+        if (graph.headerInt(H_MAGIC) == 0) {
+            graph.headerInt(H_MAGIC, MAGIC);
+            graph.headerInt(H_VERSION, VERSION);
+            graph.headerInt(H_DIMENSIONS, dimensions);
+            graph.headerInt(H_M, m);
+            graph.headerInt(H_ENTRY, -1);
+            graph.headerInt(H_MAX_LEVEL, -1);
+        } else if (graph.headerInt(H_MAGIC) != MAGIC || graph.headerInt(H_VERSION) != VERSION) {
+            throw new IOException("向量索引文件格式不兼容: " + directory);
+        } else if (graph.headerInt(H_DIMENSIONS) != dimensions || graph.headerInt(H_M) != m) {
+            throw new IOException("向量索引参数不一致: 文件为 dimensions=" + graph.headerInt(H_DIMENSIONS)
+                    + ", m=" + graph.headerInt(H_M) + "，配置为 dimensions=" + dimensions + ", m=" + m);
+        }
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxDegree0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.scratch = ThreadLocal.withInitial(() -> new float[dimensions]);
+        this.levelFactor = 1 / Math.log(m);
+        this.upper = new MappedRecords(directory.resolve("upper.bin"), HEADER_BYTES, UPPER_LEVELS * (1 + m),
+                REGION_RECORDS / 16);
+        this.vectors = new MappedRecords(directory.resolve("vectors.bin"), HEADER_BYTES, dimensions,
+                REGION_RECORDS);
+        this.count = graph.headerInt(H_COUNT);
+        this.entry = graph.headerInt(H_ENTRY);
+        this.maxLevel = graph.headerInt(H_MAX_LEVEL);
+        this.upperCount = graph.headerInt(H_UPPER_COUNT);
+        BitSet usedUpper = new BitSet(upperCount);
+        for (int node = 0; node < count; node++) {
+            int flags = flags(node);
+            if (flags == FREE) {
+                freeNodes.add(node);
+                continue;
+            }
+            if (flags == DELETED) {
+                deleted++;
+            }
+            if (graph.getInt(node, N_UPPER) >= 0) {
+                usedUpper.set(graph.getInt(node, N_UPPER));
+            }
+        }
+        for (int slot = usedUpper.nextClearBit(0); slot < upperCount; slot = usedUpper.nextClearBit(slot + 1)) {
+            freeUpper.add(slot);
+        }
+    }
+
+    /**
+     * 目录中已有索引记录的向量维度，没有索引时返回 0
+     */
+    public static int storedDimensions(Path directory) throws IOException {
+        Path file = directory.resolve("graph.bin");
+        if (!Files.exists(file) || Files.size(file) < HEADER_BYTES) {
+            return 0;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.read(header, 0);
+        }
+        return header.getInt(H_MAGIC * Integer.BYTES) == MAGIC ? header.getInt(H_DIMENSIONS * Integer.BYTES) : 0;
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * 已分配的槽位上界，节点编号都小于该值
+     */
+    public int slots() {
+        return count;
+    }
+
+    public int size() {
+        return count - freeNodes.size() - deleted;
+    }
+
+    public int deletedCount() {
+        return deleted;
+    }
+
+    public int flags(int node) {
+        return graph.getInt(node, N_FLAGS);
+    }
+
+    /**
+     * 下一次 insert 将使用的节点编号；调用方可先据此写文档日志，再插入
+     */
+    public int nextNode() {
+        return freeNodes.isEmpty() ? count : freeNodes.peek();
+    }
+
+    /**
+     * 插入向量，返回节点编号（即插入前 nextNode 的值，优先复用已回收的槽位）
+     */
+    public int insert(float[] vector) throws IOException {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("向量维度为 " + vector.length + "，索引维度为 " + dimensions);
+        }
+        float[] query = normalize(vector);
+        int node = freeNodes.isEmpty() ? count : freeNodes.poll();
+        int level = randomLevel();
+        graph.ensure(node);
+        vectors.ensure(node);
+        vectors.putFloats(node, query);
+        graph.putInt(node, N_LEVEL, level);
+        graph.putInt(node, N_FLAGS, LIVE);
+        graph.putInt(node, N_UPPER, level > 0 ? allocateUpper() : -1);
+        for (int l = 0; l <= level; l++) {
+            setNeighbors(node, l, new int[0]);
+        }
+        if (node == count) {
+            count++;
+            graph.headerInt(H_COUNT, count);
+        }
+        if (entry < 0) {
+            setEntry(node, level);
+            return node;
+        }
+        int current = entry;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedy(query, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Neighbor> candidates = searchLayer(query, current, efConstruction, l, null);
+            List<Neighbor> live = candidates.stream().filter(n -> flags(n.node()) == LIVE).toList();
+            int[] selected = select(live, m);
+            setNeighbors(node, l, selected);
+            for (int neighbor : selected) {
+                link(neighbor, l, node);
+            }
+            if (!candidates.isEmpty()) {
+                current = candidates.get(0).node();
+            }
+        }
+        if (level > maxLevel) {
+            setEntry(node, level);
+        }
+        return node;
+    }
+
+    /**
+     * 打墓碑：节点仍参与路由，不再进入检索结果，由 compact 回收
+     */
+    public void markDeleted(int node) {
+        if (node < count && flags(node) == LIVE) {
+            graph.putInt(node, N_FLAGS, DELETED);
+            deleted++;
+        }
+    }
+
+    /**
+     * 近似检索：从入口逐层贪心下降，在第 0 层以 ef 为候选规模做最佳优先搜索；
+     * accept 只约束结果，不约束路由，过滤条件很严时搜索会自然扩展到更多节点
+     */
+    public List<Neighbor> search(float[] vector, int k, int ef, IntPredicate accept) {
+        if (entry < 0 || k <= 0) {
+            return List.of();
+        }
+        float[] query = normalize(vector);
+        int current = entry;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedy(query, current, l);
+        }
+        IntPredicate filter = node -> flags(node) == LIVE && (accept == null || accept.test(node));
+        List<Neighbor> results = searchLayer(query, current, Math.max(ef, k), 0, filter);
+        return results.size() > k ? List.copyOf(results.subList(0, k)) : results;
+    }
+
+    /**
+     * 精确检索（逐个比较全部存活节点），用于小范围检索及评估召回率
+     */
+    public List<Neighbor> exactSearch(float[] vector, int k, IntPredicate accept) {
+        float[] query = normalize(vector);
+        PriorityQueue<Neighbor> top = new PriorityQueue<>(Comparator.comparingDouble(Neighbor::score));
+        for (int node = 0; node < count; node++) {
+            if (flags(node) != LIVE || (accept != null && !accept.test(node))) {
+                continue;
+            }
+            top.add(new Neighbor(node, dot(query, node)));
+            if (top.size() > k) {
+                top.poll();
+            }
+        }
+        List<Neighbor> results = new ArrayList<>(top);
+        results.sort(Comparator.comparingDouble(Neighbor::score).reversed());
+        return results;
+    }
+
+    /**
+     * 回收至多 maxNodes 个墓碑节点：扫描一遍全部节点，把指向这些节点的边替换为它们邻居中按启发式选出的节点，
+     * 之后槽位标记为可复用；返回回收的节点数
+     */
+    public int compact(int maxNodes) {
+        BitSet removed = new BitSet(count);
+        List<Integer> batch = new ArrayList<>();
+        for (int node = 0; node < count && batch.size() < maxNodes; node++) {
+            if (flags(node) == DELETED) {
+                removed.set(node);
+                batch.add(node);
+            }
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int newEntry = -1;
+        int newMaxLevel = -1;
+        float[] base = new float[dimensions];
+        for (int node = 0; node < count; node++) {
+            if (removed.get(node) || flags(node) == FREE) {
+                continue;
+            }
+            int level = level(node);
+            if (newEntry < 0 || level > newMaxLevel
+                    || (level == newMaxLevel && flags(newEntry) != LIVE && flags(node) == LIVE)) {
+                newEntry = node;
+                newMaxLevel = level;
+            }
+            for (int l = 0; l <= level; l++) {
+                int[] links = neighbors(node, l);
+                if (!containsAny(links, removed)) {
+                    continue;
+                }
+                BitSet seen = new BitSet();
+                List<Integer> candidates = new ArrayList<>();
+                for (int link : links) {
+                    if (!removed.get(link)) {
+                        addCandidate(candidates, seen, link, node, removed);
+                        continue;
+                    }
+                    for (int second : neighbors(link, l)) {
+                        addCandidate(candidates, seen, second, node, removed);
+                    }
+                }
+                vectors.getFloats(node, base);
+                List<Neighbor> scored = new ArrayList<>(candidates.size());
+                for (int candidate : candidates) {
+                    scored.add(new Neighbor(candidate, dot(base, candidate)));
+                }
+                scored.sort(Comparator.comparingDouble(Neighbor::score).reversed());
+                setNeighbors(node, l, select(scored, maxDegree(l)));
+            }
+        }
+        for (int node : batch) {
+            int upperSlot = graph.getInt(node, N_UPPER);
+            if (upperSlot >= 0) {
+                freeUpper.add(upperSlot);
+            }
+            graph.putInt(node, N_UPPER, -1);
+            graph.putInt(node, N_FLAGS, FREE);
+            freeNodes.add(node);
+            deleted--;
+        }
+        if (entry >= 0 && removed.get(entry)) {
+            setEntry(newEntry, newMaxLevel);
+        }
+        return batch.size();
+    }
+
+    public void force() {
+        graph.force();
+        upper.force();
+        vectors.force();
+    }
+
+    public void close() throws IOException {
+        graph.close();
+        upper.close();
+        vectors.close();
+    }
+
+    /**
+     * 检索结果
+     *
+     * @param node  节点编号
+     * @param score 余弦相似度
+     */
+    public record Neighbor(int node, float score) {
+    }
+
+    // 在第 level 层做最佳优先搜索，返回相似度降序的至多 ef 个结果；filter 为空时结果包含墓碑节点（供建图路由）
+    private List<Neighbor> searchLayer(float[] query, int start, int ef, int level, IntPredicate filter) {
+        BitSet visited = new BitSet(count);
+        PriorityQueue<Neighbor> candidates = new PriorityQueue<>(
+                Comparator.comparingDouble(Neighbor::score).reversed());
+        PriorityQueue<Neighbor> results = new PriorityQueue<>(Comparator.comparingDouble(Neighbor::score));
+        Neighbor first = new Neighbor(start, dot(query, start));
+        visited.set(start);
+        candidates.add(first);
+        if (filter == null || filter.test(start)) {
+            results.add(first);
+        }
+        while (!candidates.isEmpty()) {
+            Neighbor closest = candidates.poll();
+            if (results.size() >= ef && closest.score() < results.peek().score()) {
+                break;
+            }
+            for (int neighbor : neighbors(closest.node(), level)) {
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float score = dot(query, neighbor);
+                if (results.size() < ef || score > results.peek().score()) {
+                    Neighbor next = new Neighbor(neighbor, score);
+                    candidates.add(next);
+                    if (filter == null || filter.test(neighbor)) {
+                        results.add(next);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        List<Neighbor> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble(Neighbor::score).reversed());
+        return sorted;
+    }
+
+    // 上层贪心下降：一直移向更相似的邻居，直到局部最优
+    private int greedy(float[] query, int start, int level) {
+        int current = start;
+        float best = dot(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : neighbors(current, level)) {
+                float score = dot(query, neighbor);
+                if (score > best) {
+                    best = score;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    // 启发式选邻居（HNSW 论文算法 4）：候选与已选邻居的相似度高于与基准点的相似度时跳过，以保留不同方向的边；不足时用被跳过的补齐
+    private int[] select(List<Neighbor> candidates, int limit) {
+        List<Integer> selected = new ArrayList<>(limit);
+        List<Integer> pruned = new ArrayList<>();
+        float[] vector = new float[dimensions];
+        for (Neighbor candidate : candidates) {
+            if (selected.size() >= limit) {
+                break;
+            }
+            vectors.getFloats(candidate.node(), vector);
+            boolean diverse = true;
+            for (int chosen : selected) {
+                if (dot(vector, chosen) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : pruned).add(candidate.node());
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < limit; i++) {
+            selected.add(pruned.get(i));
+        }
+        return selected.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // 为 node 在第 level 层增加一条指向 target 的边，超出度数上限时重新选邻居
+    private void link(int node, int level, int target) {
+        int[] links = neighbors(node, level);
+        if (links.length < maxDegree(level)) {
+            int[] extended = new int[links.length + 1];
+            System.arraycopy(links, 0, extended, 0, links.length);
+            extended[links.length] = target;
+            setNeighbors(node, level, extended);
+            return;
+        }
+        float[] base = new float[dimensions];
+        vectors.getFloats(node, base);
+        List<Neighbor> scored = new ArrayList<>(links.length + 1);
+        for (int link : links) {
+            scored.add(new Neighbor(link, dot(base, link)));
+        }
+        scored.add(new Neighbor(target, dot(base, target)));
+        scored.sort(Comparator.comparingDouble(Neighbor::score).reversed());
+        setNeighbors(node, level, select(scored, maxDegree(level)));
+    }
+
+    private int[] neighbors(int node, int level) {
+        if (level == 0) {
+            int size = graph.getInt(node, N_COUNT0);
+            int[] links = new int[size];
+            for (int i = 0; i < size; i++) {
+                links[i] = graph.getInt(node, N_LINKS0 + i);
+            }
+            return links;
+        }
+        int slot = graph.getInt(node, N_UPPER);
+        if (slot < 0 || level > level(node)) {
+            return new int[0];
+        }
+        int base = (level - 1) * (1 + m);
+        int size = upper.getInt(slot, base);
+        int[] links = new int[size];
+        for (int i = 0; i < size; i++) {
+            links[i] = upper.getInt(slot, base + 1 + i);
+        }
+        return links;
+    }
+
+    private void setNeighbors(int node, int level, int[] links) {
+        if (level == 0) {
+            for (int i = 0; i < links.length; i++) {
+                graph.putInt(node, N_LINKS0 + i, links[i]);
+            }
+            graph.putInt(node, N_COUNT0, links.length);
+            return;
+        }
+        int slot = graph.getInt(node, N_UPPER);
+        int base = (level - 1) * (1 + m);
+        for (int i = 0; i < links.length; i++) {
+            upper.putInt(slot, base + 1 + i, links[i]);
+        }
+        upper.putInt(slot, base, links.length);
+    }
+
+    private int allocateUpper() throws IOException {
+        if (!freeUpper.isEmpty()) {
+            return freeUpper.poll();
+        }
+        int slot = upperCount++;
+        upper.ensure(slot);
+        graph.headerInt(H_UPPER_COUNT, upperCount);
+        return slot;
+    }
+
+    private void setEntry(int node, int level) {
+        entry = node;
+        maxLevel = level;
+        graph.headerInt(H_ENTRY, node);
+        graph.headerInt(H_MAX_LEVEL, level);
+    }
+
+    private int level(int node) {
+        return graph.getInt(node, N_LEVEL);
+    }
+
+    private int maxDegree(int level) {
+        return level == 0 ? maxDegree0 : m;
+    }
+
+    private int randomLevel() {
+        double uniform = 1 - ThreadLocalRandom.current().nextDouble();
+        return Math.min(UPPER_LEVELS, (int) (-Math.log(uniform) * levelFactor));
+    }
+
+    // 先整块拷出节点向量再做点积，比逐个读取映射缓冲快得多（循环可被 JIT 向量化）
+    private float dot(float[] query, int node) {
+        float[] vector = scratch.get();
+        vectors.getFloats(node, vector);
+        float sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += query[i] * vector[i];
+        }
+        return sum;
+    }
+
+    private static void addCandidate(List<Integer> candidates, BitSet seen, int candidate, int self,
+            BitSet removed) {
+        if (candidate != self && !removed.get(candidate) && !seen.get(candidate)) {
+            seen.set(candidate);
+            candidates.add(candidate);
+        }
+    }
+
+    private static boolean containsAny(int[] links, BitSet removed) {
+        for (int link : links) {
+            if (removed.get(link)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+}
@@ -0,0 +1,107 @@
+package com.zg.ai.vectorstore;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 定长记录文件：文件头之后按 recordsPerRegion 条记录一段分段映射到内存，记录不跨段，文件按段增长；
+ * 记录按 int/float 下标读写（小端），不占堆内存，写入直接进入页缓存，进程崩溃不丢，force 后落盘
+ */
+final class MappedRecords {
+
+    private final FileChannel channel;
+    private final int headerBytes;
+    private final int recordInts;
+    private final int recordsPerRegion;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+    private final List<IntBuffer> intViews = new ArrayList<>();
+    private final List<FloatBuffer> floatViews = new ArrayList<>();
+
+    MappedRecords(Path path, int headerBytes, int recordInts, int recordsPerRegion) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.headerBytes = headerBytes;
+        this.recordInts = recordInts;
+        this.recordsPerRegion = recordsPerRegion;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerBytes);
+        this.header.order(ByteOrder.LITTLE_ENDIAN);
+        long existing = Math.max(0, channel.size() - headerBytes);
+        int existingRegions = (int) ((existing + regionBytes() - 1) / regionBytes());
+        for (int i = 0; i < existingRegions; i++) {
+            mapRegion();
+        }
+    }
+
+    int headerInt(int index) {
+        return header.getInt(index * Integer.BYTES);
+    }
+
+    void headerInt(int index, int value) {
+        header.putInt(index * Integer.BYTES, value);
+    }
+
+    /**
+     * 确保记录 record 所在的段已映射
+     */
+    void ensure(int record) throws IOException {
+        while (record / recordsPerRegion >= regions.size()) {
+            mapRegion();
+        }
+    }
+
+    int capacity() {
+        return regions.size() * recordsPerRegion;
+    }
+
+    int getInt(int record, int index) {
+        return intViews.get(record / recordsPerRegion).get(offset(record) + index);
+    }
+
+    void putInt(int record, int index, int value) {
+        intViews.get(record / recordsPerRegion).put(offset(record) + index, value);
+    }
+
+    void putFloats(int record, float[] values) {
+        floatViews.get(record / recordsPerRegion).put(offset(record), values);
+    }
+
+    void getFloats(int record, float[] target) {
+        floatViews.get(record / recordsPerRegion).get(offset(record), target);
+    }
+
+    void force() {
+        header.force();
+        regions.forEach(MappedByteBuffer::force);
+    }
+
+    void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private int offset(int record) {
+        return (record % recordsPerRegion) * recordInts;
+    }
+
+    private long regionBytes() {
+        return (long) recordsPerRegion * recordInts * Integer.BYTES;
+    }
+
+    private void mapRegion() throws IOException {
+        long position = headerBytes + regions.size() * regionBytes();
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, position, regionBytes());
+        region.order(ByteOrder.LITTLE_ENDIAN);
+        regions.add(region);
+        intViews.add(region.asIntBuffer());
+        floatViews.add(region.asFloatBuffer());
+    }
+}
@@ -0,0 +1,109 @@
+package com.zg.ai.vectorstore;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 在内存中对文档元数据求值 Spring AI 过滤表达式（AND/OR/NOT、比较、IN/NIN），
+ * 语义与 Qdrant payload 过滤一致：缺失字段不满足任何比较条件
+ */
+final class MetadataFilter {
+
+    private MetadataFilter() {
+    }
+
+    static boolean matches(Filter.Operand operand, Map<String, Object> metadata) {
+        if (operand instanceof Filter.Group group) {
+            return matches(group.content(), metadata);
+        }
+        if (!(operand instanceof Filter.Expression expression)) {
+            throw new IllegalArgumentException("不支持的过滤操作数: " + operand);
+        }
+        return switch (expression.type()) {
+            case AND -> matches(expression.left(), metadata) && matches(expression.right(), metadata);
+            case OR -> matches(expression.left(), metadata) || matches(expression.right(), metadata);
+            case NOT -> !matches(expression.left(), metadata);
+            case EQ -> equal(field(expression, metadata), value(expression));
+            case NE -> {
+                Object field = field(expression, metadata);
+                yield field != null && !equal(field, value(expression));
+            }
+            case GT -> compare(field(expression, metadata), value(expression)) > 0;
+            case GTE -> compare(field(expression, metadata), value(expression)) >= 0;
+            case LT -> {
+                Object field = field(expression, metadata);
+                yield field != null && compare(field, value(expression)) < 0;
+            }
+            case LTE -> {
+                Object field = field(expression, metadata);
+                yield field != null && compare(field, value(expression)) <= 0;
+            }
+            case IN -> in(field(expression, metadata), value(expression));
+            case NIN -> {
+                Object field = field(expression, metadata);
+                yield field != null && !in(field, value(expression));
+            }
+        };
+    }
+
+    private static Object field(Filter.Expression expression, Map<String, Object> metadata) {
+        if (!(expression.left() instanceof Filter.Key key)) {
+            throw new IllegalArgumentException("过滤条件左侧应为字段名: " + expression);
+        }
+        String name = key.key();
+        // 含特殊字符的字段名在表达式中带引号
+        if (name.length() > 1 && (name.startsWith("'") && name.endsWith("'")
+                || name.startsWith("\"") && name.endsWith("\""))) {
+            name = name.substring(1, name.length() - 1);
+        }
+        return metadata.get(name);
+    }
+
+    private static Object value(Filter.Expression expression) {
+        if (!(expression.right() instanceof Filter.Value value)) {
+            throw new IllegalArgumentException("过滤条件右侧应为取值: " + expression);
+        }
+        return value.value();
+    }
+
+    private static boolean in(Object field, Object values) {
+        if (field == null) {
+            return false;
+        }
+        if (!(values instanceof Collection<?> collection)) {
+            return equal(field, values);
+        }
+        for (Object value : collection) {
+            if (equal(field, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean equal(Object field, Object value) {
+        if (field == null || value == null) {
+            return field == value;
+        }
+        if (field instanceof Number a && value instanceof Number b) {
+            return Double.compare(a.doubleValue(), b.doubleValue()) == 0;
+        }
+        if (field instanceof Boolean || value instanceof Boolean) {
+            return Objects.equals(String.valueOf(field), String.valueOf(value));
+        }
+        return Objects.equals(field.toString(), value.toString());
+    }
+
+    private static int compare(Object field, Object value) {
+        if (field == null || value == null) {
+            return -1;
+        }
+        if (field instanceof Number a && value instanceof Number b) {
+            return Double.compare(a.doubleValue(), b.doubleValue());
+        }
+        return field.toString().compareTo(value.toString());
+    }
+}
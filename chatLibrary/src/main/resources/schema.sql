@@ -64,8 +64,69 @@ CREATE TABLE IF NOT EXISTS chat_message (
     history_id VARCHAR(36) NOT NULL,
     message_type VARCHAR(50),
     content TEXT,
+    status VARCHAR(20) DEFAULT 'COMPLETED',
     create_at DATETIME DEFAULT CURRENT_TIMESTAMP,
     update_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     deleted TINYINT(1) DEFAULT 0,
+    INDEX idx_history_create_at (history_id, create_at)
+) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci;
+
+-- Add chat_message.status to databases created before the column existed
+SET @ddl = (SELECT IF(COUNT(*) = 0,
+    'ALTER TABLE chat_message ADD COLUMN status VARCHAR(20) DEFAULT ''COMPLETED'' AFTER content',
+    'SELECT 1')
+    FROM information_schema.COLUMNS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_message' AND COLUMN_NAME = 'status');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- Index for loading a conversation's most recent messages on databases created before it existed
+SET @ddl = (SELECT IF(COUNT(*) = 0,
+    'ALTER TABLE chat_message ADD INDEX idx_history_create_at (history_id, create_at)',
+    'SELECT 1')
+    FROM information_schema.STATISTICS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'chat_message' AND INDEX_NAME = 'idx_history_create_at');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+CREATE TABLE IF NOT EXISTS chat_summary (
+    id VARCHAR(36) PRIMARY KEY,
+    history_id VARCHAR(36) NOT NULL,
+    summary TEXT,
+    covered_until DATETIME,
+    covered_messages INT DEFAULT 0,
+    create_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    update_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    deleted TINYINT(1) DEFAULT 0,
+    UNIQUE KEY uk_history_id (history_id)
+) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS chat_message_reasoning (
+    id VARCHAR(36) PRIMARY KEY,
+    message_id VARCHAR(36) NOT NULL,
+    history_id VARCHAR(36) NOT NULL,
+    content MEDIUMBLOB,
+    original_length INT DEFAULT 0,
+    create_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    update_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    deleted TINYINT(1) DEFAULT 0,
+    UNIQUE KEY uk_message_id (message_id),
     INDEX idx_history_id (history_id)
 ) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS ingestion_job (
+    id VARCHAR(36) PRIMARY KEY,
+    document_id VARCHAR(36) NOT NULL,
+    user_id VARCHAR(36),
+    status VARCHAR(20) NOT NULL,
+    attempts INT DEFAULT 0,
+    next_attempt_at DATETIME,
+    last_error VARCHAR(1000),
+    create_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    update_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    deleted TINYINT(1) DEFAULT 0,
+    INDEX idx_status (status),
+    INDEX idx_document_id (document_id)
+) CHARACTER SET utf8mb4 COLLATE utf8mb4_unicode_ci;
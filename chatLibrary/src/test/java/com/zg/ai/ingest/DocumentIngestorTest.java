@@ -0,0 +1,161 @@
+package com.zg.ai.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zg.ai.cache.RetrievalCache;
+import com.zg.ai.cache.SemanticAnswerCache;
+import com.zg.ai.config.properties.IngestionProperties;
+import com.zg.ai.entity.po.Document;
+import com.zg.ai.entity.po.DocumentChunk;
+import com.zg.ai.enums.DocumentStatus;
+import com.zg.ai.repository.DocumentChunkRepository;
+import com.zg.ai.repository.DocumentRepository;
+import com.zg.ai.repository.UserRepository;
+import com.zg.ai.search.LexicalIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.vectorstore.VectorStore;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DocumentIngestorTest {
+
+    private static final String DOCUMENT_ID = "doc-1";
+
+    @TempDir
+    Path directory;
+
+    private final Document document = new Document();
+    private final List<DocumentChunk> rows = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, String> vectors = new ConcurrentHashMap<>();
+    // 向量库第几次写入时失败（从 1 开始），0 表示不失败
+    private final AtomicInteger failOnAdd = new AtomicInteger();
+    private final AtomicInteger adds = new AtomicInteger();
+
+    private DocumentIngestor ingestor;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            text.append("第 ").append(i).append(" 行：断点续传需要分块结果确定，line ").append(i).append('\n');
+        }
+        Path file = directory.resolve("document.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        document.setId(DOCUMENT_ID);
+        document.setUserId("alice");
+        document.setDocumentName("document.txt");
+        document.setFilePath(file.toString());
+
+        DocumentRepository documentRepository = mock(DocumentRepository.class);
+        when(documentRepository.findById(DOCUMENT_ID)).thenReturn(Mono.just(document));
+        when(documentRepository.save(any(Document.class))).thenAnswer(call -> Mono.just(call.getArgument(0)));
+
+        DocumentChunkRepository chunkRepository = mock(DocumentChunkRepository.class);
+        when(chunkRepository.saveAll(anyIterable())).thenAnswer(call -> {
+            List<DocumentChunk> batch = new ArrayList<>();
+            ((Iterable<DocumentChunk>) call.getArgument(0)).forEach(batch::add);
+            rows.addAll(batch);
+            return Flux.fromIterable(batch);
+        });
+        when(chunkRepository.countByDocumentId(DOCUMENT_ID)).thenAnswer(call -> Mono.just((long) rows.size()));
+
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findById(anyString())).thenReturn(Mono.empty());
+
+        VectorStore vectorStore = mock(VectorStore.class);
+        doAnswer(call -> {
+            if (adds.incrementAndGet() == failOnAdd.get()) {
+                throw new IllegalStateException("embedding service unavailable");
+            }
+            for (org.springframework.ai.document.Document chunk
+                    : (List<org.springframework.ai.document.Document>) call.getArgument(0)) {
+                vectors.put(chunk.getId(), chunk.getText());
+            }
+            return null;
+        }).when(vectorStore).add(anyList());
+
+        IngestionProperties properties = new IngestionProperties();
+        properties.setSectionChars(2000);
+        properties.setBatchSize(4);
+        properties.setEmbeddingConcurrency(1);
+        properties.setBatchRetries(0);
+        properties.setBatchRetryBackoff(Duration.ofMillis(1));
+
+        ingestor = new DocumentIngestor(vectorStore, documentRepository, chunkRepository, userRepository,
+                new ObjectMapper(), mock(RetrievalCache.class), mock(SemanticAnswerCache.class),
+                mock(LexicalIndex.class), properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void retryAfterPartialRunMatchesCleanRun() {
+        assertThat(ingestor.ingest(DOCUMENT_ID, false, () -> false)).isTrue();
+        Map<String, String> cleanVectors = new HashMap<>(vectors);
+        List<Integer> cleanIndexes = chunkIndexes();
+        assertThat(cleanIndexes).hasSizeGreaterThan(12);
+        assertThat(document.getTotalChunks()).isEqualTo(cleanIndexes.size());
+
+        rows.clear();
+        vectors.clear();
+        document.setTotalChunks(null);
+        adds.set(0);
+        failOnAdd.set(3);
+        assertThatThrownBy(() -> ingestor.ingest(DOCUMENT_ID, false, () -> false))
+                .hasMessageContaining("embedding service unavailable");
+        int stored = rows.size();
+        assertThat(stored).isEqualTo(8);
+
+        failOnAdd.set(0);
+        assertThat(ingestor.ingest(DOCUMENT_ID, true, () -> false)).isTrue();
+
+        // 续传只写断点之后的分块：数据库中无重复行，向量 ID 及内容与一次完整入库一致
+        assertThat(chunkIndexes()).containsExactlyElementsOf(cleanIndexes);
+        assertThat(vectors).isEqualTo(cleanVectors);
+        assertThat(document.getTotalChunks()).isEqualTo(cleanIndexes.size());
+        assertThat(document.getStatus()).isEqualTo(DocumentStatus.PROCESSED.getCode());
+    }
+
+    @Test
+    void retryWithoutCheckpointStartsFromTheBeginning() {
+        failOnAdd.set(1);
+        assertThatThrownBy(() -> ingestor.ingest(DOCUMENT_ID, false, () -> false))
+                .hasMessageContaining("embedding service unavailable");
+        assertThat(rows).isEmpty();
+
+        failOnAdd.set(0);
+        assertThat(ingestor.ingest(DOCUMENT_ID, true, () -> false)).isTrue();
+
+        assertThat(chunkIndexes()).first().isEqualTo(0);
+        assertThat(vectors).hasSize(rows.size());
+    }
+
+    private List<Integer> chunkIndexes() {
+        synchronized (rows) {
+            return rows.stream().map(DocumentChunk::getChunkIndex).toList();
+        }
+    }
+}
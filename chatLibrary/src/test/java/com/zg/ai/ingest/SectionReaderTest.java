@@ -0,0 +1,113 @@
+package com.zg.ai.ingest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SectionReaderTest {
+
+    private static final int PARAGRAPHS = 300;
+    private static final int SECTION_CHARS = 500;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsMultiSectionDocumentInOrder() throws Exception {
+        Path file = writeHtml();
+
+        List<String> sections = SectionReader.read(file, SECTION_CHARS).collectList().block(Duration.ofSeconds(30));
+
+        assertThat(sections).hasSizeGreaterThan(10);
+        // 在块级元素结束处切分：每段不小于 sectionChars（最后一段除外），也不会远超
+        for (String section : sections.subList(0, sections.size() - 1)) {
+            assertThat(section.length()).isBetween(SECTION_CHARS - 50, 2 * SECTION_CHARS);
+        }
+        String text = String.join("\n", sections);
+        int last = -1;
+        for (int i = 0; i < PARAGRAPHS; i++) {
+            int index = text.indexOf(paragraph(i));
+            assertThat(index).as("段落 %d", i).isGreaterThan(last);
+            last = index;
+        }
+    }
+
+    @Test
+    void slowSubscriberKeepsParserWithinDemand() throws Exception {
+        Path file = writeHtml();
+        Flux<String> sections = SectionReader.read(file, SECTION_CHARS).subscribeOn(Schedulers.boundedElastic(), false);
+
+        // 解析线程只在有请求时发出；超出请求的发出会因 OverflowStrategy.ERROR 以错误结束
+        StepVerifier.create(sections, 0)
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(300))
+                .thenRequest(1)
+                .expectNextCount(1)
+                .expectNoEvent(Duration.ofMillis(300))
+                .thenRequest(3)
+                .expectNextCount(3)
+                .expectNoEvent(Duration.ofMillis(300))
+                .thenRequest(Long.MAX_VALUE)
+                .thenConsumeWhile(section -> true)
+                .expectComplete()
+                .verify(Duration.ofSeconds(30));
+    }
+
+    @Test
+    void cancellationStopsParseThread() throws Exception {
+        Path file = writeHtml();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Scheduler scheduler = Schedulers.fromExecutorService(executor);
+        try {
+            StepVerifier.create(SectionReader.read(file, SECTION_CHARS).subscribeOn(scheduler, false), 1)
+                    .expectNextCount(1)
+                    .thenCancel()
+                    .verify(Duration.ofSeconds(30));
+
+            // 阻塞在等待请求上的解析线程被唤醒并退出，执行器随即可以结束
+            executor.shutdown();
+            assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void blankDocumentEmitsNothing() throws Exception {
+        Path file = directory.resolve("blank.txt");
+        Files.writeString(file, "\n\n   \n", StandardCharsets.UTF_8);
+
+        StepVerifier.create(SectionReader.read(file, SECTION_CHARS))
+                .expectComplete()
+                .verify(Duration.ofSeconds(30));
+    }
+
+    private Path writeHtml() throws Exception {
+        StringBuilder html = new StringBuilder("<html><head><title>t</title></head><body>\n");
+        for (int i = 0; i < PARAGRAPHS; i++) {
+            html.append("<p>").append(paragraph(i)).append("</p>\n");
+        }
+        html.append("</body></html>\n");
+        Path file = directory.resolve("document.html");
+        Files.writeString(file, html, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static String paragraph(int index) {
+        return "第 " + index + " 段：向量检索把文本切分成分块后分别向量化，检索时取最相近的若干分块作为参考资料。";
+    }
+}
@@ -0,0 +1,144 @@
+package com.zg.ai.llm;
+
+import com.zg.ai.config.properties.SchedulerProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LlmSchedulerTest {
+
+    private SchedulerProperties properties;
+    private LlmScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        properties = new SchedulerProperties();
+        properties.setMaxConcurrent(1);
+        properties.setMaxQueued(8);
+        properties.setMaxQueuedPerUser(4);
+        properties.setQuantum(100);
+        scheduler = new LlmScheduler(properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void heavyUserDoesNotStarveLightUser() {
+        Sinks.Empty<Void> blocker = Sinks.empty();
+        List<String> started = new CopyOnWriteArrayList<>();
+        subscribe("blocker", 1, blocker, started);
+        for (int i = 0; i < 4; i++) {
+            scheduler.schedule("heavy", 1000, () -> {
+                started.add("heavy");
+                return Flux.just("done");
+            }, position -> "position").subscribe();
+        }
+        scheduler.schedule("light", 10, () -> {
+            started.add("light");
+            return Flux.just("done");
+        }, position -> "position").subscribe();
+
+        blocker.tryEmitEmpty();
+
+        assertThat(started).hasSize(6);
+        // 第一个重请求已在轻用户之前就绪，轻用户不必等重用户的全部请求完成
+        assertThat(started.subList(1, 6).indexOf("light")).isLessThanOrEqualTo(1);
+    }
+
+    @Test
+    void positionEventsOnlyMoveForward() {
+        List<Sinks.Empty<Void>> running = new ArrayList<>();
+        Sinks.Empty<Void> blocker = Sinks.empty();
+        subscribe("blocker", 1, blocker, new ArrayList<>());
+        for (int i = 0; i < 3; i++) {
+            Sinks.Empty<Void> work = Sinks.empty();
+            running.add(work);
+            subscribe("a", 100, work, new ArrayList<>());
+        }
+        List<String> events = new CopyOnWriteArrayList<>();
+        Sinks.Empty<Void> last = Sinks.empty();
+        scheduler.schedule("a", 100, () -> {
+            events.add("work");
+            return last.asMono().thenMany(Flux.<String>empty());
+        }, position -> "position:" + position).subscribe(events::add);
+        // 之后到来的用户在 DRR 顺序中排到前面，已显示的位置不后退
+        Sinks.Empty<Void> light = Sinks.empty();
+        light.tryEmitEmpty();
+        subscribe("b", 10, light, new ArrayList<>());
+
+        blocker.tryEmitEmpty();
+        running.forEach(Sinks.Empty::tryEmitEmpty);
+
+        assertThat(events).last().isEqualTo("work");
+        List<Integer> positions = events.stream()
+                .filter(event -> event.startsWith("position:"))
+                .map(event -> Integer.parseInt(event.substring("position:".length())))
+                .toList();
+        assertThat(positions).isNotEmpty().first().isEqualTo(4);
+        for (int i = 1; i < positions.size(); i++) {
+            assertThat(positions.get(i)).isLessThan(positions.get(i - 1));
+        }
+    }
+
+    @Test
+    void rejectsOverCapacityWithRetryAfter() {
+        properties.setMaxQueued(2);
+        subscribe("blocker", 1, Sinks.empty(), new ArrayList<>());
+        subscribe("a", 1, Sinks.empty(), new ArrayList<>());
+        subscribe("b", 1, Sinks.empty(), new ArrayList<>());
+
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        scheduler.schedule("c", 1, () -> Flux.just("done"), position -> "position")
+                .subscribe(value -> {
+                }, error::set);
+
+        assertThat(error.get()).isInstanceOf(LlmRejectedException.class);
+        Duration retryAfter = ((LlmRejectedException) error.get()).getRetryAfter();
+        assertThat(retryAfter).isPositive();
+    }
+
+    @Test
+    void rejectsWhenUserQueueFull() {
+        properties.setMaxQueuedPerUser(1);
+        subscribe("blocker", 1, Sinks.empty(), new ArrayList<>());
+        subscribe("a", 1, Sinks.empty(), new ArrayList<>());
+
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        scheduler.schedule("a", 1, () -> Flux.just("done"), position -> "position")
+                .subscribe(value -> {
+                }, error::set);
+
+        assertThat(error.get()).isInstanceOf(LlmRejectedException.class);
+        assertThat(((LlmRejectedException) error.get()).getRetryAfter()).isPositive();
+    }
+
+    @Test
+    void cancelledWaiterReleasesItsPlace() {
+        subscribe("blocker", 1, Sinks.empty(), new ArrayList<>());
+        Disposable waiter = subscribe("a", 1, Sinks.empty(), new ArrayList<>());
+        List<String> events = new CopyOnWriteArrayList<>();
+        scheduler.schedule("b", 1, Flux::<String>empty, position -> "position:" + position)
+                .subscribe(events::add);
+
+        waiter.dispose();
+
+        assertThat(events).containsExactly("position:2", "position:1");
+    }
+
+    // 订阅一次生成，work 在 done 结束前一直占用槽位
+    private Disposable subscribe(String userId, int cost, Sinks.Empty<Void> done, List<String> started) {
+        return scheduler.schedule(userId, cost, () -> {
+            started.add(userId);
+            return done.asMono().thenMany(Flux.<String>empty());
+        }, position -> "position").subscribe();
+    }
+}
@@ -0,0 +1,123 @@
+package com.zg.ai.llm;
+
+import com.zg.ai.config.properties.ChatProperties;
+import com.zg.ai.context.PackedContext;
+import com.zg.ai.enums.ModelTier;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.model.ollama.autoconfigure.OllamaChatProperties;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ModelRouterTest {
+
+    private ChatProperties chatProperties;
+    private ModelRouter router;
+
+    @BeforeEach
+    void setUp() {
+        chatProperties = new ChatProperties();
+        router = newRouter();
+    }
+
+    @Test
+    void datesPhoneNumbersAndPartNumbersAreNotFormulas() {
+        assertThat(tier("会议定在 2024-05-01 吗")).isEqualTo(ModelTier.FAST);
+        assertThat(tier("客服电话 010-8888-6666")).isEqualTo(ModelTier.FAST);
+        assertThat(tier("X1-200 的保修期多久")).isEqualTo(ModelTier.FAST);
+        assertThat(tier("第 3/4 页的表格")).isEqualTo(ModelTier.FAST);
+    }
+
+    @Test
+    void formulasAndCodeRouteToReasoning() {
+        assertThat(tier("12 * 7 + 3 是多少")).isEqualTo(ModelTier.REASONING);
+        assertThat(tier("2^10 是多少")).isEqualTo(ModelTier.REASONING);
+        assertThat(tier("已知 x = y + 1")).isEqualTo(ModelTier.REASONING);
+        assertThat(tier("```int a;```")).isEqualTo(ModelTier.REASONING);
+    }
+
+    @Test
+    void englishKeywordsMatchWholeWords() {
+        assertThat(tier("show me the manual")).isEqualTo(ModelTier.FAST);
+        assertThat(tier("however, the manual")).isEqualTo(ModelTier.FAST);
+        assertThat(tier("How does it work")).isEqualTo(ModelTier.REASONING);
+        assertThat(tier("explain 第二章")).isEqualTo(ModelTier.REASONING);
+    }
+
+    @Test
+    void chineseKeywordsMatchSubstrings() {
+        assertThat(tier("这两个版本有什么区别")).isEqualTo(ModelTier.REASONING);
+        assertThat(tier("这个版本是哪年发布的")).isEqualTo(ModelTier.FAST);
+    }
+
+    @Test
+    void promptLengthThresholds() {
+        ChatProperties.Routing routing = chatProperties.getRouting();
+        // 中等长度（0 分）在阈值上，长问题（+2）超过阈值
+        assertThat(tier("的".repeat(routing.getShortPromptChars() + 1))).isEqualTo(ModelTier.FAST);
+        assertThat(tier("的".repeat(routing.getLongPromptChars() + 1))).isEqualTo(ModelTier.REASONING);
+    }
+
+    @Test
+    void retrievalScoreAndConversationState() {
+        ChatProperties.Routing routing = chatProperties.getRouting();
+        Document confident = Document.builder().text("a").score(routing.getConfidentRetrievalScore()).build();
+        Document weak = Document.builder().text("a").score(0.3).build();
+
+        // 短问题 -1，弱检索 +1，合计 0
+        assertThat(route("版本号是多少", List.of(weak), true).score()).isZero();
+        assertThat(route("版本号是多少", List.of(weak), true).tier()).isEqualTo(ModelTier.FAST);
+        // 多轮对话 +1
+        assertThat(route("版本号是多少", List.of(weak), false).tier()).isEqualTo(ModelTier.REASONING);
+        // 高分检索 -1 可以抵消多轮对话
+        assertThat(route("版本号是多少", List.of(confident), false).tier()).isEqualTo(ModelTier.FAST);
+    }
+
+    @Test
+    void scoreThresholdIsConfigurable() {
+        chatProperties.getRouting().setFastScoreThreshold(2);
+        router = newRouter();
+
+        ModelRouter.ModelChoice choice = route("How does it work", List.of(), true);
+
+        assertThat(choice.score()).isEqualTo(1);
+        assertThat(choice.tier()).isEqualTo(ModelTier.FAST);
+        assertThat(choice.model()).isEqualTo(chatProperties.getRouting().getFastModel());
+    }
+
+    @Test
+    void hintAndDisabledRouting() {
+        ModelRouter.ModelChoice hinted = router.route("为什么 12 * 7 = 84", context(List.of(), true), ModelTier.FAST);
+        assertThat(hinted.tier()).isEqualTo(ModelTier.FAST);
+        assertThat(hinted.reason()).isEqualTo("hint");
+
+        chatProperties.getRouting().setEnabled(false);
+        router = newRouter();
+        ModelRouter.ModelChoice disabled = router.route("你好", context(List.of(), true), ModelTier.AUTO);
+        assertThat(disabled.tier()).isEqualTo(ModelTier.REASONING);
+        assertThat(disabled.model()).isEqualTo("qwen3:8b");
+        assertThat(disabled.reason()).isEqualTo("disabled");
+    }
+
+    private ModelTier tier(String prompt) {
+        return route(prompt, List.of(), true).tier();
+    }
+
+    private ModelRouter.ModelChoice route(String prompt, List<Document> documents, boolean firstTurn) {
+        return router.route(prompt, context(documents, firstTurn), ModelTier.AUTO);
+    }
+
+    private ModelRouter newRouter() {
+        OllamaChatProperties ollama = new OllamaChatProperties();
+        ollama.setModel("qwen3:8b");
+        return new ModelRouter(chatProperties, ollama, new SimpleMeterRegistry());
+    }
+
+    private static PackedContext context(List<Document> documents, boolean firstTurn) {
+        return new PackedContext("", List.of(), "", "", documents, 0, firstTurn);
+    }
+}
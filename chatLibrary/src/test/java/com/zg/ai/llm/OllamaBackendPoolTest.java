@@ -0,0 +1,273 @@
+package com.zg.ai.llm;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.zg.ai.config.properties.OllamaProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.model.ollama.autoconfigure.OllamaChatProperties;
+import org.springframework.ai.model.ollama.autoconfigure.OllamaConnectionProperties;
+import org.springframework.ai.model.ollama.autoconfigure.OllamaEmbeddingProperties;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 以 JDK HttpServer 模拟多个 Ollama 实例（/api/ps、/api/chat、/api/embed），验证实例池的路由、摘除恢复及向量请求对冲
+ */
+class OllamaBackendPoolTest {
+
+    private static final String CHAT_MODEL = "qwen3:8b";
+    private static final String EMBEDDING_MODEL = "bge-m3";
+
+    private final List<FakeOllama> servers = new ArrayList<>();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OllamaProperties properties;
+    private OllamaBackendPool pool;
+
+    @BeforeEach
+    void setUp() {
+        properties = new OllamaProperties();
+        properties.setHealthCheckInterval(Duration.ofMillis(300));
+        properties.setHealthCheckTimeout(Duration.ofSeconds(1));
+        properties.setMaxFailures(2);
+        properties.setHedgeEmbeddings(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        servers.forEach(FakeOllama::stop);
+    }
+
+    @Test
+    void routesToInstanceWithModelLoaded() throws Exception {
+        FakeOllama cold = start(1, "llama3:latest");
+        FakeOllama warm = start(2, CHAT_MODEL);
+        FakeOllama embedder = start(3, EMBEDDING_MODEL + ":latest");
+        startPool();
+        ChatClientRouter router = new ChatClientRouter(pool, properties, meterRegistry);
+
+        for (int i = 0; i < 10; i++) {
+            List<String> answer = router.stream("conversation-" + i, CHAT_MODEL,
+                            client -> client.prompt().user("你好").stream().content())
+                    .collectList()
+                    .block(Duration.ofSeconds(10));
+            assertThat(String.join("", answer)).isEqualTo("来自实例 2");
+        }
+        float[] vector = new PooledEmbeddingModel(pool, properties, meterRegistry).embed("文本");
+
+        assertThat(warm.chats.get()).isEqualTo(10);
+        assertThat(cold.chats.get() + embedder.chats.get()).isZero();
+        assertThat(vector[0]).isEqualTo(3f);
+        assertThat(embedder.embeds.get()).isEqualTo(1);
+    }
+
+    @Test
+    void failingInstanceIsEjectedAndReadmittedAfterHealthCheck() throws Exception {
+        // 间隔足够长，摘除后的断言不会被下一次健康检查抢先恢复
+        properties.setHealthCheckInterval(Duration.ofSeconds(1));
+        FakeOllama flaky = start(1, EMBEDDING_MODEL);
+        FakeOllama stable = start(2, EMBEDDING_MODEL);
+        startPool();
+        PooledEmbeddingModel model = new PooledEmbeddingModel(pool, properties, meterRegistry);
+        OllamaBackend flakyBackend = backend(flaky);
+
+        flaky.failing = true;
+        // 负载和耗时相同时首个实例优先，连续失败 maxFailures 次后摘除
+        for (int i = 0; i < properties.getMaxFailures(); i++) {
+            assertThatThrownBy(() -> model.embed("文本")).isInstanceOf(RuntimeException.class);
+        }
+        assertThat(flakyBackend.isHealthy()).isFalse();
+        assertThat(pool.available()).extracting(OllamaBackend::getBaseUrl).containsExactly(stable.baseUrl());
+        assertThat(model.embed("文本")[0]).isEqualTo(2f);
+        assertThat(meterRegistry.counter("ollama.backend.ejections").count()).isEqualTo(1);
+
+        // 健康检查（/api/ps 正常）通过后恢复
+        flaky.failing = false;
+        await(flakyBackend::isHealthy);
+        assertThat(pool.available()).hasSize(2);
+
+        // 实例整体不可用时由健康检查摘除，恢复后再次加入
+        flaky.down = true;
+        await(() -> !flakyBackend.isHealthy());
+        flaky.down = false;
+        await(flakyBackend::isHealthy);
+        assertThat(pool.available()).hasSize(2);
+    }
+
+    @Test
+    void slowPrimaryTriggersHedgeAndLoserIsCountedOnce() throws Exception {
+        properties.setHedgeEmbeddings(true);
+        properties.setHedgeDelay(Duration.ofMillis(100));
+        FakeOllama slow = start(1, EMBEDDING_MODEL);
+        FakeOllama fast = start(2, EMBEDDING_MODEL);
+        startPool();
+        PooledEmbeddingModel model = new PooledEmbeddingModel(pool, properties, meterRegistry);
+        slow.embedDelay = Duration.ofMillis(1500);
+
+        long start = System.nanoTime();
+        EmbeddingResponse response = model.call(new EmbeddingRequest(List.of("文本"), null));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(response.getResult().getOutput()[0]).isEqualTo(2f);
+        assertThat(elapsedMillis).isLessThan(1000);
+        assertThat(meterRegistry.counter("ollama.embedding.hedged").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("ollama.embedding.hedge.wins").count()).isEqualTo(1);
+
+        // 落败的请求在后台执行完毕：只发出一次，进行中请求数归零，不记为失败
+        OllamaBackend slowBackend = backend(slow);
+        assertThat(slowBackend.outstanding()).isEqualTo(1);
+        await(() -> slowBackend.outstanding() == 0);
+        assertThat(slow.embeds.get()).isEqualTo(1);
+        assertThat(fast.embeds.get()).isEqualTo(1);
+        assertThat(backend(fast).outstanding()).isZero();
+        assertThat(slowBackend.isHealthy()).isTrue();
+        assertThat(meterRegistry.counter("ollama.backend.ejections").count()).isZero();
+    }
+
+    @Test
+    void fastPrimaryIsNotHedged() throws Exception {
+        properties.setHedgeEmbeddings(true);
+        properties.setHedgeDelay(Duration.ofMillis(500));
+        FakeOllama primary = start(1, EMBEDDING_MODEL);
+        FakeOllama secondary = start(2, EMBEDDING_MODEL);
+        startPool();
+
+        float[] vector = new PooledEmbeddingModel(pool, properties, meterRegistry).embed("文本");
+        Thread.sleep(700);
+
+        assertThat(vector[0]).isEqualTo(1f);
+        assertThat(primary.embeds.get()).isEqualTo(1);
+        assertThat(secondary.embeds.get()).isZero();
+        assertThat(meterRegistry.counter("ollama.embedding.hedged").count()).isZero();
+    }
+
+    private FakeOllama start(int id, String loadedModel) throws IOException {
+        FakeOllama server = new FakeOllama(id, loadedModel);
+        servers.add(server);
+        return server;
+    }
+
+    // 创建实例池并等待首次健康检查取得各实例已加载的模型
+    private void startPool() throws InterruptedException {
+        properties.setInstances(servers.stream().map(FakeOllama::baseUrl).toList());
+        OllamaChatProperties chatProperties = new OllamaChatProperties();
+        chatProperties.setModel(CHAT_MODEL);
+        OllamaEmbeddingProperties embeddingProperties = new OllamaEmbeddingProperties();
+        embeddingProperties.setModel(EMBEDDING_MODEL);
+        pool = new OllamaBackendPool(properties, new OllamaConnectionProperties(), chatProperties,
+                embeddingProperties, null, null, WebClient.builder(), meterRegistry);
+        await(() -> pool.getBackends().stream().noneMatch(backend -> backend.hasLoaded("unknown:latest")));
+    }
+
+    private OllamaBackend backend(FakeOllama server) {
+        return pool.getBackends().stream()
+                .filter(backend -> backend.getBaseUrl().equals(server.baseUrl()))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("等待条件超时").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    /**
+     * 模拟的 Ollama 实例：向量的各维均为实例编号，对话回答为“来自实例 N”
+     */
+    private static final class FakeOllama {
+        private final int id;
+        private final String loadedModel;
+        private final HttpServer server;
+        private final AtomicInteger chats = new AtomicInteger();
+        private final AtomicInteger embeds = new AtomicInteger();
+        // 全部接口返回 500
+        private volatile boolean down;
+        // 对话及向量接口返回 500，/api/ps 正常
+        private volatile boolean failing;
+        private volatile Duration embedDelay = Duration.ZERO;
+
+        FakeOllama(int id, String loadedModel) throws IOException {
+            this.id = id;
+            this.loadedModel = loadedModel;
+            this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/api/ps", exchange -> respond(exchange, down, "application/json",
+                    "{\"models\":[{\"name\":\"" + this.loadedModel + "\"}]}"));
+            server.createContext("/api/chat", exchange -> {
+                exchange.getRequestBody().readAllBytes();
+                chats.incrementAndGet();
+                String created = "\"created_at\":\"2024-01-01T00:00:00Z\"";
+                respond(exchange, down || failing, "application/x-ndjson",
+                        "{\"model\":\"" + CHAT_MODEL + "\"," + created
+                                + ",\"message\":{\"role\":\"assistant\",\"content\":\"来自实例 " + id + "\"},\"done\":false}\n"
+                                + "{\"model\":\"" + CHAT_MODEL + "\"," + created
+                                + ",\"message\":{\"role\":\"assistant\",\"content\":\"\"},\"done\":true,"
+                                + "\"done_reason\":\"stop\",\"prompt_eval_count\":1,\"eval_count\":1}\n");
+            });
+            server.createContext("/api/embed", exchange -> {
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                embeds.incrementAndGet();
+                sleep(embedDelay);
+                int inputs = Math.max(1, body.split("文本", -1).length - 1);
+                String vector = "[" + id + ".0," + id + ".0," + id + ".0]";
+                respond(exchange, down || failing, "application/json",
+                        "{\"model\":\"" + EMBEDDING_MODEL + "\",\"embeddings\":["
+                                + IntStream.range(0, inputs).mapToObj(i -> vector)
+                                .collect(Collectors.joining(",")) + "]}");
+            });
+            server.start();
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        private static void respond(HttpExchange exchange, boolean error, String contentType, String body)
+                throws IOException {
+            byte[] bytes = (error ? "{\"error\":\"unavailable\"}" : body).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", error ? "application/json" : contentType);
+            exchange.sendResponseHeaders(error ? 500 : 200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        private static void sleep(Duration duration) {
+            try {
+                Thread.sleep(duration.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
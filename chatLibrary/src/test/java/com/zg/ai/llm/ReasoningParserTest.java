@@ -0,0 +1,107 @@
+package com.zg.ai.llm;
+
+import com.zg.ai.entity.dto.chat.ChatDelta;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReasoningParserTest {
+
+    @Test
+    void splitsReasoningFromAnswer() {
+        List<ChatDelta> deltas = split("<think>先查文档</think>\n\n答案是 42");
+
+        assertThat(text(deltas, ChatDelta.Type.REASONING)).isEqualTo("先查文档");
+        assertThat(text(deltas, ChatDelta.Type.ANSWER)).isEqualTo("答案是 42");
+    }
+
+    @Test
+    void tagsSplitAcrossDeltas() {
+        List<ChatDelta> deltas = split("\n", "<th", "ink>", "推理", "</th", "in", "k>", "\n回答");
+
+        assertThat(text(deltas, ChatDelta.Type.REASONING)).isEqualTo("推理");
+        assertThat(text(deltas, ChatDelta.Type.ANSWER)).isEqualTo("回答");
+    }
+
+    @Test
+    void everyCharacterInItsOwnDelta() {
+        String output = "<think>a < b</think>x</y";
+        String[] chars = output.chars().mapToObj(c -> String.valueOf((char) c)).toArray(String[]::new);
+
+        List<ChatDelta> deltas = split(chars);
+
+        assertThat(text(deltas, ChatDelta.Type.REASONING)).isEqualTo("a < b");
+        assertThat(text(deltas, ChatDelta.Type.ANSWER)).isEqualTo("x</y");
+    }
+
+    @Test
+    void partialCloseTagThatIsNotATag() {
+        List<ChatDelta> deltas = split("<think>看 </thi", "nking> 标签</think>好");
+
+        assertThat(text(deltas, ChatDelta.Type.REASONING)).isEqualTo("看 </thinking> 标签");
+        assertThat(text(deltas, ChatDelta.Type.ANSWER)).isEqualTo("好");
+    }
+
+    @Test
+    void partialOpenTagAtEndOfStreamIsAnswer() {
+        List<ChatDelta> deltas = split("<thi");
+
+        assertThat(deltas).containsExactly(ChatDelta.answer("<thi"));
+    }
+
+    @Test
+    void partialCloseTagAtEndOfStreamIsReasoning() {
+        List<ChatDelta> deltas = split("<think>想", "</thi");
+
+        assertThat(text(deltas, ChatDelta.Type.REASONING)).isEqualTo("想</thi");
+        assertThat(text(deltas, ChatDelta.Type.ANSWER)).isEmpty();
+    }
+
+    @Test
+    void unterminatedThinkIsAllReasoning() {
+        List<ChatDelta> deltas = split("<think>还在想", "，没有结束");
+
+        assertThat(text(deltas, ChatDelta.Type.REASONING)).isEqualTo("还在想，没有结束");
+        assertThat(text(deltas, ChatDelta.Type.ANSWER)).isEmpty();
+    }
+
+    @Test
+    void thinkTagInsideAnswerIsKept() {
+        List<ChatDelta> deltas = split("用 ", "<think>", " 标签包裹推理，", "以 </think> 结束");
+
+        assertThat(deltas).allMatch(ChatDelta::isAnswer);
+        assertThat(text(deltas, ChatDelta.Type.ANSWER)).isEqualTo("用 <think> 标签包裹推理，以 </think> 结束");
+    }
+
+    @Test
+    void thinkTagAfterReasoningBlockIsKept() {
+        List<ChatDelta> deltas = split("<think>r</think>", "答：", "<think>", "x");
+
+        assertThat(text(deltas, ChatDelta.Type.REASONING)).isEqualTo("r");
+        assertThat(text(deltas, ChatDelta.Type.ANSWER)).isEqualTo("答：<think>x");
+    }
+
+    @Test
+    void stripRemovesOnlyLeadingBlock() {
+        assertThat(ReasoningParser.strip("<think>推理</think>\n\n回答")).isEqualTo("回答");
+        assertThat(ReasoningParser.strip("\n<think>推理")).isEmpty();
+        assertThat(ReasoningParser.strip("回答里的 <think> 标签</think> 保留")).isEqualTo("回答里的 <think> 标签</think> 保留");
+        assertThat(ReasoningParser.strip("<think>a</think>b<think>c</think>")).isEqualTo("b<think>c</think>");
+        assertThat(ReasoningParser.strip(null)).isEmpty();
+    }
+
+    private static List<ChatDelta> split(String... deltas) {
+        List<ChatDelta> result = ReasoningParser.split(Flux.fromArray(deltas)).collectList().block();
+        return result == null ? new ArrayList<>() : result;
+    }
+
+    private static String text(List<ChatDelta> deltas, ChatDelta.Type type) {
+        StringBuilder text = new StringBuilder();
+        deltas.stream().filter(delta -> delta.type() == type).forEach(delta -> text.append(delta.text()));
+        return text.toString();
+    }
+}
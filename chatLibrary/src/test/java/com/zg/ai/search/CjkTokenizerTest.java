@@ -0,0 +1,45 @@
+package com.zg.ai.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CjkTokenizerTest {
+
+    @Test
+    void mixedCjkAndLatin() {
+        assertThat(CjkTokenizer.tokenize("使用Spring AI构建RAG系统"))
+                .containsExactly("使用", "spring", "ai", "构建", "rag", "系统");
+    }
+
+    @Test
+    void cjkRunsBecomeBigrams() {
+        assertThat(CjkTokenizer.tokenize("向量数据库")).containsExactly("向量", "量数", "数据", "据库");
+        assertThat(CjkTokenizer.tokenize("A和B")).containsExactly("a", "和", "b");
+    }
+
+    @Test
+    void repeatedTermsAreKept() {
+        assertThat(CjkTokenizer.tokenize("数据数据")).containsExactly("数据", "据数", "数据");
+        assertThat(CjkTokenizer.tokenize("cache Cache CACHE")).containsExactly("cache", "cache", "cache");
+    }
+
+    @Test
+    void fullWidthIsNormalized() {
+        assertThat(CjkTokenizer.tokenize("ＧＰＵ１２３")).containsExactly("gpu123");
+    }
+
+    @Test
+    void compoundWordsAreAlsoSplit() {
+        assertThat(CjkTokenizer.tokenize("升级到v1.2.3-beta版"))
+                .containsExactly("升级", "级到", "v1.2.3-beta", "v1", "2", "3", "beta", "版");
+        assertThat(CjkTokenizer.tokenize("file_name.txt")).containsExactly("file_name.txt", "file", "name", "txt");
+    }
+
+    @Test
+    void trailingConnectorsAndPunctuationAreDropped() {
+        assertThat(CjkTokenizer.tokenize("abc- 你好！")).containsExactly("abc", "你好");
+        assertThat(CjkTokenizer.tokenize("，。")).isEmpty();
+        assertThat(CjkTokenizer.tokenize(null)).isEmpty();
+    }
+}
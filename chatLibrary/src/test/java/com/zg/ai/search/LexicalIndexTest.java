@@ -0,0 +1,216 @@
+package com.zg.ai.search;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zg.ai.common.DocumentMetadata;
+import com.zg.ai.config.properties.RetrievalProperties;
+import com.zg.ai.repository.DocumentChunkRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LexicalIndexTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<LexicalIndex> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(LexicalIndex::shutdown);
+    }
+
+    @Test
+    void searchOnlySeesOwnAndSharedChunks() throws Exception {
+        LexicalIndex index = open();
+        index.addAll(List.of(
+                chunk("a-1", "doc-a", "alice", false, "向量数据库的索引结构"),
+                chunk("b-1", "doc-b", "bob", false, "向量数据库的索引结构"),
+                chunk("s-1", "doc-s", "admin", true, "向量数据库的索引结构")));
+
+        assertThat(ids(index.search("向量数据库", "alice", List.of(), 10))).containsExactlyInAnyOrder("a-1", "s-1");
+        assertThat(ids(index.search("向量数据库", "bob", List.of(), 10))).containsExactlyInAnyOrder("b-1", "s-1");
+        assertThat(ids(index.search("向量数据库", null, List.of(), 10))).containsExactly("s-1");
+        assertThat(ids(index.search("向量数据库", "alice", List.of("doc-s"), 10))).containsExactly("s-1");
+        assertThat(ids(index.search("向量数据库", "alice", List.of("doc-b"), 10))).isEmpty();
+    }
+
+    @Test
+    void repeatedTermsScoreHigher() throws Exception {
+        LexicalIndex index = open();
+        index.addAll(List.of(
+                chunk("once", "doc", "alice", false, "缓存 设计 说明 文档 其他 内容"),
+                chunk("twice", "doc", "alice", false, "缓存 设计 缓存 文档 其他 内容")));
+
+        List<LexicalIndex.Hit> hits = index.search("缓存", "alice", List.of(), 10);
+
+        assertThat(ids(hits)).containsExactly("twice", "once");
+        assertThat(hits.get(0).coverage()).isEqualTo(1.0);
+    }
+
+    @Test
+    void coverageCountsDistinctQueryTerms() throws Exception {
+        LexicalIndex index = open();
+        index.addAll(List.of(chunk("c", "doc", "alice", false, "redis cluster")));
+
+        List<LexicalIndex.Hit> hits = index.search("redis redis sentinel", "alice", List.of(), 10);
+
+        assertThat(hits).hasSize(1);
+        assertThat(hits.get(0).coverage()).isEqualTo(0.5);
+    }
+
+    @Test
+    void removedDocumentsDisappearBeforeAndAfterCompaction() throws Exception {
+        LexicalIndex index = open();
+        index.addAll(List.of(
+                chunk("a-1", "doc-a", "alice", false, "kafka 分区 副本"),
+                chunk("a-2", "doc-a", "alice", false, "kafka 消费者组"),
+                chunk("b-1", "doc-b", "alice", false, "kafka 生产者")));
+        long version = index.version("alice");
+
+        index.removeDocument("doc-a");
+
+        assertThat(ids(index.search("kafka", "alice", List.of(), 10))).containsExactly("b-1");
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.count("alice")).isEqualTo(1);
+        assertThat(index.version("alice")).isGreaterThan(version);
+
+        index.compact(false);
+        // 压缩后回收的编号被新分块复用，不应带出已删除分块的倒排项
+        index.addAll(List.of(chunk("c-1", "doc-c", "alice", false, "rabbitmq 队列")));
+
+        assertThat(ids(index.search("kafka", "alice", List.of(), 10))).containsExactly("b-1");
+        assertThat(ids(index.search("rabbitmq", "alice", List.of(), 10))).containsExactly("c-1");
+        assertThat(ids(index.search("分区", "alice", List.of(), 10))).isEmpty();
+    }
+
+    @Test
+    void rewritingAVectorIdReplacesIt() throws Exception {
+        LexicalIndex index = open();
+        index.addAll(List.of(chunk("a-1", "doc-a", "alice", false, "旧的内容")));
+        index.addAll(List.of(chunk("a-1", "doc-a", "alice", false, "新的文本")));
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(ids(index.search("旧的", "alice", List.of(), 10))).isEmpty();
+        assertThat(ids(index.search("新的", "alice", List.of(), 10))).containsExactly("a-1");
+    }
+
+    @Test
+    void journalReplayRestoresIndex() throws Exception {
+        LexicalIndex index = open();
+        index.addAll(List.of(
+                chunk("a-1", "doc-a", "alice", false, "elasticsearch 倒排索引"),
+                chunk("s-1", "doc-s", "admin", true, "elasticsearch 分片")));
+        index.removeDocument("doc-a");
+        index.addAll(List.of(chunk("a-2", "doc-a2", "alice", false, "elasticsearch 映射")));
+
+        // 不关闭旧实例，模拟进程退出前未压缩：快照为首次导入时的空快照，内容全在日志中
+        LexicalIndex reopened = open();
+
+        assertThat(reopened.isReady()).isTrue();
+        assertThat(reopened.size()).isEqualTo(2);
+        assertThat(ids(reopened.search("elasticsearch", "alice", List.of(), 10)))
+                .containsExactlyInAnyOrder("a-2", "s-1");
+    }
+
+    @Test
+    void snapshotRoundTrip() throws Exception {
+        LexicalIndex index = open();
+        index.addAll(List.of(
+                chunk("a-1", "doc-a", "alice", false, "mysql 事务 隔离级别"),
+                chunk("s-1", "doc-s", "admin", true, "mysql 索引 下推")));
+        index.shutdown();
+        opened.remove(index);
+
+        LexicalIndex reopened = open();
+        List<LexicalIndex.Hit> hits = reopened.search("mysql 事务", "alice", List.of(), 10);
+
+        assertThat(ids(hits)).containsExactly("a-1", "s-1");
+        IndexedChunk chunk = hits.get(0).chunk();
+        assertThat(chunk.documentId()).isEqualTo("doc-a");
+        assertThat(chunk.userId()).isEqualTo("alice");
+        assertThat(chunk.shared()).isFalse();
+        assertThat(chunk.originalFilename()).isEqualTo("doc-a.pdf");
+        assertThat(chunk.text()).isEqualTo("mysql 事务 隔离级别");
+        assertThat(hits.get(1).chunk().shared()).isTrue();
+    }
+
+    @Test
+    void concurrentCompactionsKeepSnapshotConsistent() throws Exception {
+        LexicalIndex index = open();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        index.addAll(List.of(chunk("v-" + thread + "-" + i, "doc-" + thread, "alice", false,
+                                "并发 压缩 " + i)));
+                        index.compact(true);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        index.shutdown();
+        opened.remove(index);
+
+        LexicalIndex reopened = open();
+
+        assertThat(reopened.size()).isEqualTo(200);
+        assertThat(reopened.search("并发", "alice", List.of(), 500)).hasSize(200);
+    }
+
+    private LexicalIndex open() throws InterruptedException {
+        RetrievalProperties properties = new RetrievalProperties();
+        properties.getLexical().setPath(directory.toString());
+        DocumentChunkRepository repository = mock(DocumentChunkRepository.class);
+        when(repository.findAll()).thenReturn(Flux.empty());
+        LexicalIndex index = new LexicalIndex(properties, repository, new ObjectMapper(), new SimpleMeterRegistry());
+        opened.add(index);
+        index.bootstrap();
+        // 首次导入在后台线程完成
+        for (int i = 0; i < 500 && !index.isReady(); i++) {
+            Thread.sleep(10);
+        }
+        assertThat(index.isReady()).isTrue();
+        return index;
+    }
+
+    private static Document chunk(String vectorId, String documentId, String userId, boolean shared, String text) {
+        return Document.builder()
+                .id(vectorId)
+                .text(text)
+                .metadata(Map.of(
+                        DocumentMetadata.DOCUMENT_ID, documentId,
+                        DocumentMetadata.USER_ID, userId,
+                        DocumentMetadata.SHARED, shared,
+                        DocumentMetadata.ORIGINAL_FILENAME, documentId + ".pdf"))
+                .build();
+    }
+
+    private static List<String> ids(List<LexicalIndex.Hit> hits) {
+        return hits.stream().map(hit -> hit.chunk().vectorId()).toList();
+    }
+}
@@ -0,0 +1,89 @@
+package com.zg.ai.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopKTest {
+
+    @Test
+    void matchesNaiveSortOnRandomData() {
+        Random random = new Random(42);
+        for (int n : new int[]{0, 1, 7, 64, 1000}) {
+            for (int k : new int[]{1, 5, 64, 2000}) {
+                float[] scores = new float[n];
+                for (int i = 0; i < n; i++) {
+                    scores[i] = random.nextFloat() * 2 - 1;
+                }
+                check(scores, k);
+            }
+        }
+    }
+
+    @Test
+    void kLargerThanInputReturnsEverything() {
+        float[] scores = {0.3f, -0.1f, 0.9f};
+        TopK top = new TopK(10);
+        for (int i = 0; i < scores.length; i++) {
+            top.offer(scores[i], i);
+        }
+        float[] out = new float[scores.length];
+
+        int[] ids = top.drainDescending(out);
+
+        assertThat(ids).containsExactly(2, 0, 1);
+        assertThat(out).containsExactly(0.9f, 0.3f, -0.1f);
+    }
+
+    @Test
+    void tiesKeepScoresAndDistinctIds() {
+        Random random = new Random(7);
+        float[] scores = new float[500];
+        for (int i = 0; i < scores.length; i++) {
+            // 只有 5 种得分，大量并列
+            scores[i] = random.nextInt(5) / 4f;
+        }
+        for (int k : new int[]{1, 10, 99, 100, 101, 500}) {
+            check(scores, k);
+        }
+    }
+
+    @Test
+    void drainEmptiesTheHeap() {
+        TopK top = new TopK(3);
+        top.offer(1, 1);
+        top.offer(2, 2);
+
+        assertThat(top.drainDescending(new float[2])).containsExactly(2, 1);
+        assertThat(top.drainDescending(new float[0])).isEmpty();
+    }
+
+    private static void check(float[] scores, int k) {
+        TopK top = new TopK(k);
+        for (int i = 0; i < scores.length; i++) {
+            top.offer(scores[i], i);
+        }
+        int expectedSize = Math.min(k, scores.length);
+        float[] out = new float[expectedSize];
+        int[] ids = top.drainDescending(out);
+
+        float[] sorted = scores.clone();
+        Arrays.sort(sorted);
+        float[] expected = new float[expectedSize];
+        for (int i = 0; i < expectedSize; i++) {
+            expected[i] = sorted[sorted.length - 1 - i];
+        }
+        assertThat(out).as("n=%d k=%d", scores.length, k).containsExactly(expected);
+        // 并列时编号可以任意，但必须各不相同且得分对得上
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < ids.length; i++) {
+            assertThat(seen.add(ids[i])).isTrue();
+            assertThat(scores[ids[i]]).isEqualTo(out[i]);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.zg.ai.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class VectorBlockTest {
+
+    private final Random random = new Random(2024);
+
+    @Test
+    void floatScanMatchesNaiveDotProduct() {
+        // 维度不是 4 的倍数，分块数跨过批大小
+        int count = 130;
+        int dimensions = 37;
+        List<float[]> vectors = randomVectors(count, dimensions);
+        VectorBlock block = VectorBlock.of(chunks(count), vectors, 1, false);
+        float[] query = VectorBlock.normalize(randomVector(dimensions));
+
+        for (int k : new int[]{1, 10, count, count + 50}) {
+            float[] scores = new float[Math.min(k, count)];
+            int[] ids = scan(block, query, null, k, scores);
+
+            double[] naive = naiveScores(vectors, query);
+            assertThat(ids).hasSize(Math.min(k, count));
+            for (int i = 0; i < ids.length; i++) {
+                assertThat((double) scores[i]).isCloseTo(naive[ids[i]], within(1e-5));
+            }
+            assertDescendingAndComplete(scores, naive, 1e-5);
+        }
+    }
+
+    @Test
+    void int8ScanStaysCloseToFloatScores() {
+        int count = 200;
+        int dimensions = 64;
+        List<float[]> vectors = randomVectors(count, dimensions);
+        VectorBlock block = VectorBlock.of(chunks(count), vectors, 1, true);
+        float[] query = VectorBlock.normalize(randomVector(dimensions));
+
+        float[] scores = new float[count];
+        int[] ids = scan(block, query, null, count, scores);
+
+        double[] naive = naiveScores(vectors, query);
+        for (int i = 0; i < ids.length; i++) {
+            assertThat((double) scores[i]).isCloseTo(naive[ids[i]], within(0.02));
+        }
+        assertThat(block.bytes()).isEqualTo((long) count * dimensions);
+    }
+
+    @Test
+    void identicalVectorsTie() {
+        float[] vector = randomVector(16);
+        VectorBlock block = VectorBlock.of(chunks(3), List.of(vector, vector.clone(), vector.clone()), 1, false);
+
+        float[] scores = new float[3];
+        int[] ids = scan(block, VectorBlock.normalize(vector), null, 3, scores);
+
+        assertThat(ids).containsExactlyInAnyOrder(0, 1, 2);
+        for (float score : scores) {
+            assertThat(score).isCloseTo(1f, within(1e-5f));
+        }
+    }
+
+    @Test
+    void documentFilterAndBaseOffset() {
+        List<float[]> vectors = randomVectors(10, 8);
+        VectorBlock block = VectorBlock.of(chunks(10), vectors, 1, false);
+
+        float[] scores = new float[10];
+        TopK top = new TopK(10);
+        block.scan(VectorBlock.normalize(randomVector(8)), Set.of("doc-1", "doc-3"), top, 100);
+        int[] ids = top.drainDescending(scores);
+
+        assertThat(ids).containsExactlyInAnyOrder(101, 103);
+    }
+
+    @Test
+    void mismatchedDimensionsAndEmptyBlockScoreNothing() {
+        VectorBlock block = VectorBlock.of(chunks(4), randomVectors(4, 8), 1, false);
+        TopK top = new TopK(4);
+
+        block.scan(new float[7], null, top, 0);
+        VectorBlock.of(List.of(), List.of(), 1, true).scan(new float[8], null, top, 0);
+
+        assertThat(top.drainDescending(new float[0])).isEmpty();
+    }
+
+    @Test
+    void zeroVectorNormalizesToZero() {
+        assertThat(VectorBlock.normalize(new float[3])).containsExactly(0f, 0f, 0f);
+        VectorBlock block = VectorBlock.of(chunks(1), List.of(new float[4]), 1, true);
+        float[] scores = new float[1];
+        scan(block, VectorBlock.normalize(new float[]{1, 0, 0, 0}), null, 1, scores);
+
+        assertThat(scores[0]).isZero();
+    }
+
+    private static int[] scan(VectorBlock block, float[] query, Set<String> documentIds, int k, float[] scores) {
+        TopK top = new TopK(k);
+        block.scan(query, documentIds, top, 0);
+        return top.drainDescending(scores);
+    }
+
+    // 得分降序，且与按朴素点积排序后的前若干个一致
+    private static void assertDescendingAndComplete(float[] scores, double[] naive, double tolerance) {
+        double[] sorted = naive.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < scores.length; i++) {
+            if (i > 0) {
+                assertThat(scores[i]).isLessThanOrEqualTo(scores[i - 1]);
+            }
+            assertThat((double) scores[i]).isCloseTo(sorted[sorted.length - 1 - i], within(tolerance));
+        }
+    }
+
+    private static double[] naiveScores(List<float[]> vectors, float[] query) {
+        double[] scores = new double[vectors.size()];
+        for (int i = 0; i < scores.length; i++) {
+            float[] vector = vectors.get(i);
+            double norm = 0;
+            double dot = 0;
+            for (int d = 0; d < vector.length; d++) {
+                norm += (double) vector[d] * vector[d];
+                dot += (double) vector[d] * query[d];
+            }
+            scores[i] = norm == 0 ? 0 : dot / Math.sqrt(norm);
+        }
+        return scores;
+    }
+
+    private List<float[]> randomVectors(int count, int dimensions) {
+        List<float[]> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            vectors.add(randomVector(dimensions));
+        }
+        return vectors;
+    }
+
+    private float[] randomVector(int dimensions) {
+        float[] vector = new float[dimensions];
+        for (int d = 0; d < dimensions; d++) {
+            vector[d] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static List<IndexedChunk> chunks(int count) {
+        List<IndexedChunk> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            chunks.add(new IndexedChunk("v-" + i, "doc-" + i, "alice", false, null, "chunk " + i));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,68 @@
+package com.zg.ai.service.impl;
+
+import com.zg.ai.config.properties.RetrievalProperties;
+import com.zg.ai.search.IndexedChunk;
+import com.zg.ai.search.LexicalIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RetrievalServiceImplTest {
+
+    private final RetrievalProperties.Lexical config = new RetrievalProperties().getLexical();
+
+    @Test
+    void fuseRanksChunksFoundByBothPathsFirst() {
+        List<Document> vector = List.of(vector("v-only", 0.9), vector("both", 0.7));
+        List<LexicalIndex.Hit> lexical = List.of(hit("lex-only", 12, 1.0), hit("both", 10, 0.5));
+
+        List<Document> fused = RetrievalServiceImpl.fuse(vector, lexical, 10, 60);
+
+        assertThat(fused).extracting(Document::getId).containsExactlyInAnyOrder("both", "v-only", "lex-only");
+        assertThat(fused.get(0).getId()).isEqualTo("both");
+    }
+
+    @Test
+    void fuseKeepsTheHigherRelevanceScore() {
+        List<Document> fused = RetrievalServiceImpl.fuse(List.of(vector("both", 0.4)),
+                List.of(hit("both", 10, 0.8), hit("lex-only", 5, 0.6)), 10, 60);
+
+        assertThat(fused.get(0).getId()).isEqualTo("both");
+        assertThat(fused.get(0).getScore()).isCloseTo(0.8, within(1e-9));
+        // 只有词法命中的分块以覆盖率作为得分，并带上元数据
+        assertThat(fused.get(1).getScore()).isCloseTo(0.6, within(1e-9));
+        assertThat(fused.get(1).getText()).isEqualTo("text of lex-only");
+    }
+
+    @Test
+    void fuseLimitsToTopK() {
+        List<Document> vector = List.of(vector("a", 0.9), vector("b", 0.8), vector("c", 0.7));
+
+        assertThat(RetrievalServiceImpl.fuse(vector, List.of(), 2, 60))
+                .extracting(Document::getId)
+                .containsExactly("a", "b");
+        assertThat(RetrievalServiceImpl.fuse(List.of(), List.of(), 5, 60)).isEmpty();
+    }
+
+    @Test
+    void confidentNeedsCoverageAndMargin() {
+        assertThat(RetrievalServiceImpl.isConfident(List.of(), config)).isFalse();
+        assertThat(RetrievalServiceImpl.isConfident(List.of(hit("a", 5, 1.0)), config)).isTrue();
+        assertThat(RetrievalServiceImpl.isConfident(List.of(hit("a", 5, 0.5)), config)).isFalse();
+        assertThat(RetrievalServiceImpl.isConfident(List.of(hit("a", 15, 1.0), hit("b", 10, 1.0)), config)).isTrue();
+        assertThat(RetrievalServiceImpl.isConfident(List.of(hit("a", 12, 1.0), hit("b", 10, 1.0)), config)).isFalse();
+    }
+
+    private static Document vector(String id, double score) {
+        return Document.builder().id(id).text("text of " + id).score(score).build();
+    }
+
+    private static LexicalIndex.Hit hit(String id, double score, double coverage) {
+        return new LexicalIndex.Hit(new IndexedChunk(id, "doc", "alice", false, "doc.pdf", "text of " + id),
+                score, coverage);
+    }
+}
@@ -0,0 +1,137 @@
+package com.zg.ai.vectorstore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.stream.Stream;
+
+/**
+ * HNSW 召回率/延迟基准：在临时目录中用聚簇分布的随机向量（近似文本向量的分布）建图，
+ * 以暴力检索为准计算 recall@k，并对比不同 efSearch 下的延迟；另测带 10% 选择率过滤（模拟按用户过滤）、
+ * 删除并压缩后的召回率以及重新打开索引的耗时。
+ * <p>
+ * 位于测试源码中，不随应用打包。运行：
+ * mvn -Pbenchmark test-compile exec:java -Dexec.args="[向量数] [维度] [查询数] [k] [m] [efConstruction]"
+ */
+public final class HnswBenchmark {
+
+    private static final int[] EF_SEARCH = {16, 32, 64, 128, 256};
+    private static final int CLUSTERS = 64;
+
+    private HnswBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int count = intArg(args, 0, 20_000);
+        int dimensions = intArg(args, 1, 768);
+        int queries = intArg(args, 2, 200);
+        int k = intArg(args, 3, 10);
+        int m = intArg(args, 4, 16);
+        int efConstruction = intArg(args, 5, 128);
+        Random random = new Random(42);
+        float[][] centers = new float[CLUSTERS][];
+        for (int i = 0; i < CLUSTERS; i++) {
+            centers[i] = gaussian(random, dimensions, 1f, null);
+        }
+        Path directory = Files.createTempDirectory("hnsw-benchmark");
+        try {
+            HnswIndex index = new HnswIndex(directory, dimensions, m, efConstruction);
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                index.insert(gaussian(random, dimensions, 0.5f, centers[random.nextInt(CLUSTERS)]));
+            }
+            double buildSeconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("向量 %d 个，维度 %d，m=%d，efConstruction=%d：建图 %.1f 秒（%.0f 个/秒）%n",
+                    count, dimensions, m, efConstruction, buildSeconds, count / buildSeconds);
+
+            float[][] queryVectors = new float[queries][];
+            for (int i = 0; i < queries; i++) {
+                queryVectors[i] = gaussian(random, dimensions, 0.5f, centers[random.nextInt(CLUSTERS)]);
+            }
+            report("无过滤", index, queryVectors, k, null);
+            IntPredicate tenPercent = node -> Math.floorMod(node * 0x9E3779B9, 10) == 0;
+            report("过滤 10%", index, queryVectors, k, tenPercent);
+
+            int deleted = count / 5;
+            for (int node = 0; node < deleted; node++) {
+                index.markDeleted(node * 5 % count);
+            }
+            start = System.nanoTime();
+            int reclaimed = 0;
+            while (index.deletedCount() > 0) {
+                reclaimed += index.compact(1024);
+            }
+            System.out.printf("%n删除 %d 个并压缩：回收 %d 个，耗时 %.1f 秒%n", deleted, reclaimed,
+                    (System.nanoTime() - start) / 1e9);
+            report("删除压缩后", index, queryVectors, k, null);
+
+            index.close();
+            start = System.nanoTime();
+            HnswIndex reopened = new HnswIndex(directory, dimensions, m, efConstruction);
+            System.out.printf("%n重新打开：%.1f 毫秒，%d 个向量%n", (System.nanoTime() - start) / 1e6, reopened.size());
+            reopened.close();
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static void report(String title, HnswIndex index, float[][] queries, int k, IntPredicate accept) {
+        long[] exactNanos = new long[queries.length];
+        List<Set<Integer>> truth = new ArrayList<>(queries.length);
+        for (int i = 0; i < queries.length; i++) {
+            long start = System.nanoTime();
+            List<HnswIndex.Neighbor> exact = index.exactSearch(queries[i], k, accept);
+            exactNanos[i] = System.nanoTime() - start;
+            Set<Integer> nodes = new HashSet<>();
+            exact.forEach(neighbor -> nodes.add(neighbor.node()));
+            truth.add(nodes);
+        }
+        System.out.printf("%n[%s] 暴力检索 p50 %.2f ms，p99 %.2f ms%n", title, percentile(exactNanos, 0.5),
+                percentile(exactNanos, 0.99));
+        System.out.printf("%-10s %-10s %-12s %-12s%n", "efSearch", "recall@" + k, "p50(ms)", "p99(ms)");
+        for (int ef : EF_SEARCH) {
+            long[] nanos = new long[queries.length];
+            double recall = 0;
+            for (int i = 0; i < queries.length; i++) {
+                long start = System.nanoTime();
+                List<HnswIndex.Neighbor> approximate = index.search(queries[i], k, ef, accept);
+                nanos[i] = System.nanoTime() - start;
+                Set<Integer> expected = truth.get(i);
+                long found = approximate.stream().filter(neighbor -> expected.contains(neighbor.node())).count();
+                recall += expected.isEmpty() ? 1 : (double) found / expected.size();
+            }
+            System.out.printf("%-10d %-10.4f %-12.3f %-12.3f%n", ef, recall / queries.length,
+                    percentile(nanos, 0.5), percentile(nanos, 0.99));
+        }
+    }
+
+    private static double percentile(long[] nanos, double quantile) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) (quantile * sorted.length))] / 1e6;
+    }
+
+    private static float[] gaussian(Random random, int dimensions, float scale, float[] center) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian() * scale + (center == null ? 0 : center[i]);
+        }
+        return vector;
+    }
+
+    private static int intArg(String[] args, int index, int defaultValue) {
+        return args.length > index ? Integer.parseInt(args[index]) : defaultValue;
+    }
+}
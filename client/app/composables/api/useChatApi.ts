@@ -1,5 +1,14 @@
 import { type ChatHistoryDTO, type ChatMessage } from "~/types";
 
+/**
+ * 模型请求排队已满，retryAfterMs 为服务端建议的重试等待时间
+ */
+export class RejectedError extends Error {
+  constructor(message: string, public retryAfterMs: number) {
+    super(message);
+  }
+}
+
 /**
  * 对话相关 API 接口
  * 对应后端 ChatController
@@ -55,7 +64,7 @@ export const useChatApi = () => {
    * @param chatId 会话ID
    * @param prompt 提示词
    * @param userId 用户ID
-   * @param callbacks 回调函数
+   * @param callbacks 回调函数；提供 onReasoning 时请求服务端附带模型的推理过程
    */
   const sendMessage = async (
     chatId: string,
@@ -63,26 +72,72 @@ export const useChatApi = () => {
     userId: string,
     callbacks: {
       onMessage: (text: string) => void;
+      onReasoning?: (text: string) => void;
+      onQueue?: (position: number) => void;
       onError: (err: any) => void;
       onComplete: () => void;
     }
   ) => {
-    try {
-      const url = `${baseURL}/ai/chat`;
-      const body = {
-        prompt,
-        chatId,
-        userId,
-      };
+    const url = `${baseURL}/ai/chat`;
+    const body = {
+      prompt,
+      chatId,
+      userId,
+      includeReasoning: !!callbacks.onReasoning,
+    };
+    // 最近收到的事件 ID，断线后携带 Last-Event-ID 续传，服务端不会重新生成
+    let lastEventId = "";
+
+    // 解析单个 SSE 事件：同一事件的多行 data 以换行拼接，心跳注释（以 ":" 开头）忽略；
+    // reasoning 事件为推理过程，queue 事件为排队位置，rejected 事件表示排队已满（retry 为建议的重试等待毫秒数），其余为回答正文
+    const emitEvent = (raw: string) => {
+      const data: string[] = [];
+      let eventType = "";
+      let retry = 0;
+      for (const line of raw.split("\n")) {
+        if (line.startsWith("data:")) {
+          data.push(line.substring(5));
+        } else if (line.startsWith("id:")) {
+          lastEventId = line.substring(3).trim();
+        } else if (line.startsWith("event:")) {
+          eventType = line.substring(6).trim();
+        } else if (line.startsWith("retry:")) {
+          retry = Number(line.substring(6).trim()) || 0;
+        } else if (line === "" || line.startsWith(":")) {
+          continue;
+        } else {
+          // 兼容非标准格式
+          data.push(line);
+        }
+      }
+      if (data.length === 0) {
+        return;
+      }
+      if (eventType === "rejected") {
+        throw new RejectedError(data.join("\n"), retry);
+      } else if (eventType === "queue") {
+        callbacks.onQueue?.(Number(data.join("")));
+      } else if (eventType === "reasoning") {
+        callbacks.onReasoning?.(data.join("\n"));
+      } else {
+        callbacks.onMessage(data.join("\n"));
+      }
+    };
 
-      console.log("[ChatAPI] Sending message:", { url, body });
+    const readStream = async () => {
+      console.log("[ChatAPI] Sending message:", { url, body, lastEventId });
+
+      const headers: Record<string, string> = {
+        Accept: "text/event-stream",
+        "Content-Type": "application/json",
+      };
+      if (lastEventId) {
+        headers["Last-Event-ID"] = lastEventId;
+      }
 
       const response = await fetch(url, {
         method: "POST",
-        headers: {
-          Accept: "text/event-stream",
-          "Content-Type": "application/json",
-        },
+        headers,
         credentials: "include",
         body: JSON.stringify(body),
       });
@@ -109,42 +164,46 @@ export const useChatApi = () => {
         if (done) break;
 
         const chunk = decoder.decode(value, { stream: true });
-        buffer += chunk;
-
-        // 处理 SSE 格式
-        const lines = buffer.split("\n");
-        // 保留最后一个可能不完整的行
-        buffer = lines.pop() || "";
-
-        for (const line of lines) {
-          if (line.trim() === "") continue;
-
-          if (line.startsWith("data:")) {
-            const data = line.substring(5);
-            // 如果data为空或只包含空白字符，可能是心跳或空行，视情况处理
-            if (data) {
-              callbacks.onMessage(data);
-            }
-          } else {
-            // 兼容非标准格式
-            callbacks.onMessage(line);
-          }
+        buffer += chunk.replace(/\r\n/g, "\n");
+
+        // 按事件（空行分隔）处理，保留最后一个可能不完整的事件
+        const events = buffer.split("\n\n");
+        buffer = events.pop() || "";
+
+        for (const event of events) {
+          emitEvent(event);
         }
       }
 
       // 处理剩余 buffer
       if (buffer.trim()) {
-        if (buffer.startsWith("data:")) {
-          callbacks.onMessage(buffer.substring(5));
-        } else {
-          callbacks.onMessage(buffer);
+        emitEvent(buffer);
+      }
+    };
+
+    const maxResumes = 3;
+    for (let attempt = 0; ; attempt++) {
+      try {
+        await readStream();
+        callbacks.onComplete();
+        return;
+      } catch (error) {
+        // 已收到过事件时断线重连续传；HTTP 错误（如 410 生成已过期）及排队已满不再重试
+        const httpError =
+          error instanceof Error && error.message.startsWith("HTTP error!");
+        if (
+          !lastEventId ||
+          httpError ||
+          error instanceof RejectedError ||
+          attempt >= maxResumes
+        ) {
+          console.error("Stream Error:", error);
+          callbacks.onError(error);
+          return;
         }
+        console.warn("[ChatAPI] Stream interrupted, resuming from", lastEventId);
+        await new Promise((resolve) => setTimeout(resolve, 1000));
       }
-
-      callbacks.onComplete();
-    } catch (error) {
-      console.error("Stream Error:", error);
-      callbacks.onError(error);
     }
   };
 